@@ -0,0 +1,94 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The altitude tables against the computed decode, per code. The codes
+ * are random, so the Gillham and Q-bit branches can't be predicted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AltitudeBenchmark {
+
+    private static final int CODES = 1024;
+    //
+    private final int[] ac13 = new int[CODES];
+    private final int[] ac12 = new int[CODES];
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(21L);
+
+        for (int i = 0; i < CODES; i++) {
+            ac13[i] = rand.nextInt(8192) & ~0x0040;     // feet, the metre bit is rare
+            ac12[i] = rand.nextInt(4096);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public int tableAC13() {
+        int x = 0;
+
+        for (int i = 0; i < CODES; i++) {
+            x += Altitude.decodeAltitude(ac13[i], true);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public int computedAC13() {
+        int x = 0;
+
+        for (int i = 0; i < CODES; i++) {
+            x += ComputedAltitude.decodeAltitude(ac13[i], true);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public int tableAC12() {
+        int x = 0;
+
+        for (int i = 0; i < CODES; i++) {
+            x += Altitude.decodeAltitude(ac12[i], false);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public int computedAC12() {
+        int x = 0;
+
+        for (int i = 0; i < CODES; i++) {
+            x += ComputedAltitude.decodeAltitude(ac12[i], false);
+        }
+
+        return x;
+    }
+}
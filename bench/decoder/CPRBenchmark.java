@@ -0,0 +1,123 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * The double precision CPR decoder against the single precision one it
+ * replaced, which made a LatLon for each decode and found NL with a
+ * linear scan. The positions are random, so each decode is in a
+ * different latitude band.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CPRBenchmark implements IConstants {
+
+    private static final int FRAMES = 1024;
+    //
+    private final int[][] even = new int[FRAMES][];
+    private final int[][] odd = new int[FRAMES][];
+    private final double[] refLat = new double[FRAMES];
+    private final double[] refLon = new double[FRAMES];
+    private final LatLon[] ref = new LatLon[FRAMES];
+    private final double[] latlon = new double[2];
+    //
+    private CPR cpr;
+    private FloatCPR old;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(24L);
+
+        cpr = new CPR();
+        old = new FloatCPR();
+
+        for (int i = 0; i < FRAMES; i++) {
+            double lat = (rand.nextDouble() * 170.0) - 85.0;
+            double lon = (rand.nextDouble() * 360.0) - 180.0;
+
+            even[i] = CPREncoder.encode(lat, lon, EVEN, false);
+            odd[i] = CPREncoder.encode(lat, lon, ODD, false);
+            refLat[i] = lat + 0.5;
+            refLon[i] = lon - 0.5;
+            ref[i] = new LatLon((float) refLat[i], (float) refLon[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void airborneDouble(Blackhole bh) {
+        for (int i = 0; i < FRAMES; i++) {
+            bh.consume(cpr.decodeCPRairborne(even[i][0], even[i][1], odd[i][0], odd[i][1], ODD, latlon));
+            bh.consume(latlon[0] + latlon[1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void airborneFloat(Blackhole bh) {
+        for (int i = 0; i < FRAMES; i++) {
+            bh.consume(old.decodeCPRairborne(even[i][0], even[i][1], odd[i][0], odd[i][1], ODD));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void relativeDouble(Blackhole bh) {
+        for (int i = 0; i < FRAMES; i++) {
+            bh.consume(cpr.decodeCPRrelative(refLat[i], refLon[i], odd[i][0], odd[i][1], ODD, false, latlon));
+            bh.consume(latlon[0] + latlon[1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void relativeFloat(Blackhole bh) {
+        for (int i = 0; i < FRAMES; i++) {
+            bh.consume(old.decodeCPRrelative(ref[i], odd[i][0], odd[i][1], ODD, false));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int nlBinarySearch() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x += cpr.cprNLFunction(refLat[i]);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int nlLinearScan() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x += old.cprNLFunction((float) refLat[i]);
+        }
+
+        return x;
+    }
+}
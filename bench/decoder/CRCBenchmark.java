@@ -0,0 +1,93 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The table driven CRC against the bit serial CRC, per frame
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CRCBenchmark {
+
+    private static final int FRAMES = 1024;
+    //
+    private final long[] data0 = new long[FRAMES];
+    private final long[] data1 = new long[FRAMES];
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(18L);
+
+        for (int i = 0; i < FRAMES; i++) {
+            data0[i] = rand.nextLong() & 0xFFFFFFFFFFFFFFL;
+            data1[i] = rand.nextLong() & 0xFFFFFFFFFFFFFFL;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int tableShort() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x ^= CRC.crcCompute(data0[i]);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int bitSerialShort() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x ^= BitSerialCRC.crcCompute(data0[i]);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int tableLong() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x ^= CRC.crcCompute(data0[i], data1[i]);
+        }
+
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int bitSerialLong() {
+        int x = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            x ^= BitSerialCRC.crcCompute(data0[i], data1[i]);
+        }
+
+        return x;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * The eight bytes at a time escape scan against the byte at a time
+ * parser, on 64 KB of Beast frames. Real data has an <esc> in about one
+ * frame byte in 256, and the worst case is a stream full of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BeastMessageParserBenchmark {
+
+    @Param({"0.004", "0.25"})
+    public double escapes;
+    //
+    private byte[] stream;
+    private BeastMessageParser swar;
+    private ScalarBeastParser scalar;
+
+    @Setup
+    public void setup() {
+        byte[] frames = BeastStream.make(new Random(15L), 4000, escapes, false);
+
+        stream = new byte[65536];
+        System.arraycopy(frames, 0, stream, 0, Math.min(frames.length, stream.length));
+        swar = new BeastMessageParser();
+        scalar = new ScalarBeastParser();
+    }
+
+    @Benchmark
+    public void swar(Blackhole bh) {
+        swar.parse(stream, 0, stream.length, (type, signal, mlat, data0, data1) -> bh.consume(data0 ^ data1));
+    }
+
+    @Benchmark
+    public void scalar(Blackhole bh) {
+        scalar.parse(stream, 0, stream.length, (type, signal, mlat, data0, data1) -> bh.consume(data0 ^ data1));
+    }
+}
@@ -3,66 +3,137 @@
  */
 package decoder;
 
+/*
+ * The altitude decoders are static and keep no state, so one
+ * frame can not leave bits behind for the next.
+ *
+ * Every altitude code is decoded once, when the class is loaded, into
+ * a table, with the metre and Q-bit cases folded in. Decoding is then
+ * one array load. The tables are 8192 entries for the 13-bit AC field,
+ * 4096 for the 12-bit ADS-B altitude, 4096 for a Mode-C reply, and
+ * 2048 for the 11-bit Gillham code in a TCAS threat, 72 KB in all.
+ */
 public final class Altitude {
 
-    private boolean mbit1;
-    private boolean qbit1;
-    private int ac11;
+    private static final int[] AC13 = new int[8192];
+    private static final int[] AC12 = new int[4096];
+    private static final int[] MODEC = new int[4096];
+    private static final int[] GILLHAM = new int[2048];
+
+    static {
+        for (int i = 0; i < AC13.length; i++) {
+            AC13[i] = altitude(i, true);
+        }
+
+        for (int i = 0; i < AC12.length; i++) {
+            AC12[i] = altitude(i, false);
+            MODEC[i] = modeC(i);
+        }
 
-    public int getAltitude11Bits() {
-        return ac11;
+        for (int i = 0; i < GILLHAM.length; i++) {
+            GILLHAM[i] = computeAltitude(i, false);
+        }
     }
 
-    public boolean getMBit() {
-        return mbit1;
+    /**
+     * Method to decode altitude in feet
+     *
+     * @param bits an int representing the 13-bit AC field, or the 12-bit
+     * altitude field of the ADS-B ME
+     * @param hasMBit a boolean representing the altitude has the metre bit
+     * which is true for DF00, DF04, DF16, and DF20, but false for DF17 and DF18,
+     *
+     * @return an int representing the altitude or -9999 for null
+     */
+    public static int decodeAltitude(int bits, boolean hasMBit) {
+        if (hasMBit == true) {
+            return AC13[bits & 0x1FFF];
+        }
+
+        return AC12[bits & 0x0FFF];
+    }
+
+    /**
+     * Method to decode the 13-bit AC field of DF00, DF04, DF16, and DF20
+     *
+     * @param ac13 an int representing the AC field
+     * @return an int representing the altitude in feet or -9999 for null
+     */
+    public static int decodeAC13(int ac13) {
+        return AC13[ac13 & 0x1FFF];
+    }
+
+    /**
+     * Method to decode the 12-bit altitude of the DF17 and DF18 ME field
+     *
+     * @param ac12 an int representing the altitude field
+     * @return an int representing the altitude in feet or -9999 for null
+     */
+    public static int decodeAC12(int ac12) {
+        return AC12[ac12 & 0x0FFF];
     }
 
-    public boolean getQBit() {
-        return qbit1;
+    /**
+     * Method to return altitude given an SSR Mode-C squawk
+     * The X-bit has already been removed.
+     *
+     * @param raw12 an int representing the Mode-C reply
+     * @return an int representing the altitude in feet or -9999 if illegal
+     */
+    public static int convertModeCtoAltitude(int raw12) {
+        return MODEC[raw12 & 0x0FFF];
+    }
+
+    /**
+     * Method to return altitude given the raw coded 11 bits
+     * This is used by TCAS, with bit D1 and the X bit removed
+     *
+     * @param ac11 an int representing the coded altitude
+     * @return an int representing the altitude in feet
+     */
+    public static int computeAltitude(int ac11) {
+        return GILLHAM[ac11 & 0x07FF];
     }
 
     /*
-     * Method to decode altitude in feet
+     * Method to work out an altitude in feet, for the tables
      *
-     * @param raw32 a string representing the raw (8 hex) bits to decode
+     * @param bits an int representing the 13-bit AC field, or the 12-bit
+     * altitude field of the ADS-B ME
      * @param hasMBit a boolean representing the altitude has the metre bit
      * which is true for DF00, DF04, DF16, and DF20, but false for DF17 and DF18,
      *
      * @return an int representing the altitude or -9999 for null
      */
-    public int decodeAltitude(String raw32, boolean hasMBit) {
+    private static int altitude(int bits, boolean hasMBit) {
         int altitude;
         int altbits;
+        int ac11;
+        boolean qbit1;
+        boolean mbit1;
+
+        if (hasMBit == true) {
+            // 13 bits
+            altbits = bits & 0x1FFF;
+
+            qbit1 = ((altbits & 0x0010) == 0x10);      // Q-Bit true means 25ft resolution
+            mbit1 = ((altbits & 0x0040) == 0x40);      // M-Bit 26 and Q-Bit 28 0 0000 0X0X 0000 m = 0 feet, m = 1 metres
+
+            ac11 = (altbits & 0x000F) | ((altbits & 0x0020) >>> 1) | ((altbits & 0x1F80) >>> 2); // raw 11 bits now
+        } else {
+            // 12 bits
+            altbits = bits & 0x0FFF;
+
+            qbit1 = ((altbits & 0x10) == 0x10); // Q-Bit true 25ft resolution
+            mbit1 = false;
+
+            ac11 = ((altbits >>> 5) << 4) | (altbits & 0xF); // 11 bits
+        }
 
-        try {
-            if (hasMBit == true) {
-                // 13 bits
-                int acmsb1 = Integer.parseInt(raw32.substring(4, 5), 16) & 0x1;
-                int aclsb12 = Integer.parseInt(raw32.substring(5), 16) & 0xFFF;
-                altbits = ((acmsb1 << 12) | aclsb12) & 0x1FFF; // 13 bits
-                
-                qbit1 = ((altbits & 0x0010) == 0x10);      // Q-Bit true means 25ft resolution
-                mbit1 = ((altbits & 0x0040) == 0x40);      // M-Bit 26 and Q-Bit 28 0 0000 0X0X 0000 m = 0 feet, m = 1 metres
-                
-                ac11 = (altbits & 0x000F) | ((altbits & 0x0020) >>> 1) | ((altbits & 0x1F80) >>> 2); // raw 11 bits now
-            } else {
-                // 12 bits starting at substring 2
-                altbits = Integer.parseInt(raw32.substring(2, 5), 16) & 0x0FFF;
-                
-                qbit1 = ((altbits & 0x10) == 0x10); // Q-Bit true 25ft resolution
-                mbit1 = false;
-                
-                ac11 = ((altbits >>> 5) << 4) | (altbits & 0xF); // 11 bits
-            }
-
-            if (mbit1 == true) {
-                altitude = (int) ((float)ac11 * 3.2808f); // convert metres to feet
-            } else {
-                altitude = computeAltitude(ac11, qbit1);                
-            }
-        } catch (IndexOutOfBoundsException | NumberFormatException e) {
-            System.out.printf("Altitude::decodeAltitude exception [%s], %s%n", raw32, e.getMessage());
-            return -9999;       // return null
+        if (mbit1 == true) {
+            altitude = (int) ((float)ac11 * 3.2808f); // convert metres to feet
+        } else {
+            altitude = computeAltitude(ac11, qbit1);
         }
 
         return altitude;
@@ -77,7 +148,7 @@ public final class Altitude {
      *
      * 100 foot resolution C1 A1 C2 A2 | C4 A4 B1 D1 | B2 D2 B4 D4
      */
-    public int convertModeCtoAltitude(int raw12) {
+    private static int modeC(int raw12) {
         int a = ((((raw12 & 0x0100) << 1) | (raw12 & 0x0400) | ((raw12 & 0x0040) << 2)) >>> 8) & 0x07;    // A1 A2 A4
         int b = (((raw12 & 0x0002) >>> 1) | ((raw12 & 0x0008) >>> 2) | ((raw12 & 0x0020) >>> 3)) & 0x07;  // B1 B2 B4
         int c = (((raw12 & 0x0800) >>> 9) | ((raw12 & 0x0200) >>> 8) | ((raw12 & 0x0080) >>> 7)) & 0x07;  // C1 C2 C4
@@ -95,27 +166,6 @@ public final class Altitude {
         return modecDecode(a, b, c, d);
     }
 
-    /*
-     * Method to return altitude given the raw coded 11 bits
-     * This is used by TCAS which is a real shit-show
-     *
-     * Bit D1 and X bit removed
-     *
-     * @param ac11 an int representing the coded altitude
-     *
-     * @return an int representing the altitude in feet
-     */
-    public int computeAltitude(int ac11) {
-        // 100 foot resolution C1 A1 C2 | A2 C4 A4 B1 | B2 D2 B4 D4
-
-        int a = ((ac11 & 0x0200) >>> 7) | ((ac11 & 0x0080) >>> 6) | ((ac11 & 0x0020) >>> 5);  // A1 A2 A4
-        int b = ((ac11 & 0x0010) >>> 2) | ((ac11 & 0x0008) >>> 2) | ((ac11 & 0x0002) >>> 1);  // B1 B2 B4
-        int c = ((ac11 & 0x0400) >>> 8) | ((ac11 & 0x0100) >>> 7) | ((ac11 & 0x0040) >>> 6);  // C1 C2 C4
-        int d = ((ac11 & 0x0004) >>> 1) | (ac11 & 0x0001);                                    // XX D2 D4
-
-        return modecDecode(a, b, c, d);
-    }
-
     /*
      * Method to return altitude given the raw coded 11 bits
      *
@@ -125,7 +175,7 @@ public final class Altitude {
      * @param rvsm a boolean representing whether 25 foot resolution is being used
      * @return an int representing the altitude in feet or metres
      */
-    public int computeAltitude(int ac11, boolean rvsm) {
+    private static int computeAltitude(int ac11, boolean rvsm) {
         if (rvsm == true) {
             return (ac11 * 25) - 1000;
         } else {
@@ -155,7 +205,7 @@ public final class Altitude {
      * @param d an integer representing the D-bits
      * @return an int representing the altitude in feet with 100 foot resolution
      */
-    private int modecDecode(int a, int b, int c, int d) {
+    private static int modecDecode(int a, int b, int c, int d) {
         int alt;
         int dab = (grayToBinary((d << 6) + (a << 3) + b) * 500) - 1000;
 
@@ -190,7 +240,7 @@ public final class Altitude {
      * @param g an integer representing a gray code
      * @return an integer representing the binary value of the given gray code
      */
-    private int grayToBinary(int g) {
+    private static int grayToBinary(int g) {
         int val = g & 0x80;
 
         val = val | ((g & 0x40) ^ ((val & 0x80) >>> 1));
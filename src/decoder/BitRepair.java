@@ -0,0 +1,216 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * Repair bit errors in the frames that carry their address in the clear
+ *
+ * On DF11/17/18 the parity field should make the CRC syndrome zero. The
+ * CRC is linear, so a frame with a few bits wrong has the syndrome of
+ * those bits alone. The syndrome of every 1-bit, and 2-bit, error is
+ * worked out once and kept in a table, so a bad frame is a lookup and
+ * one or two bit flips.
+ *
+ * The Downlink Format bits are never changed, as they chose the table.
+ * DF17/18 can be repaired by one or two bits. DF11 is only repaired by
+ * one bit, and only when the syndrome can't be an interrogator code,
+ * which DF11 puts in the low bits of its parity.
+ *
+ * The tables are shared, but the counters and repaired words are not,
+ * so each receiver thread has its own BitRepair.
+ */
+public final class BitRepair {
+
+    private static final int FIRSTBIT = 5;          // after the DF field
+    private static final int LONGBITS = 112;
+    private static final int SHORTBITS = 56;
+    private static final int LONGSIZE = 16384;      // > 2 * (107 + 5671) entries
+    private static final int SHORTSIZE = 128;       // > 2 * 51 entries
+    private static final int AMBIGUOUS = -1;
+    //
+    private static final int[] longKey = new int[LONGSIZE];
+    private static final int[] longBits = new int[LONGSIZE];
+    private static final int[] shortKey = new int[SHORTSIZE];
+    private static final int[] shortBits = new int[SHORTSIZE];
+    //
+    private final int maxBits;
+    private long data0;
+    private long data1;
+    //
+    private long corrected1;
+    private long corrected2;
+    private long uncorrectable;
+
+    static {
+        int[] single = new int[LONGBITS];
+
+        for (int i = FIRSTBIT; i < LONGBITS; i++) {
+            if (i < 56) {
+                single[i] = CRC.crcCompute(1L << (55 - i), 0L);
+            } else {
+                single[i] = CRC.crcCompute(0L, 1L << (111 - i));
+            }
+        }
+
+        /*
+         * The CRC is linear, so the syndrome of two bits is the
+         * xor of their own syndromes
+         */
+        for (int i = FIRSTBIT; i < LONGBITS; i++) {
+            put(longKey, longBits, single[i], i + 1);
+
+            for (int j = i + 1; j < LONGBITS; j++) {
+                put(longKey, longBits, single[i] ^ single[j], (i + 1) | ((j + 1) << 8));
+            }
+        }
+
+        for (int i = FIRSTBIT; i < SHORTBITS; i++) {
+            put(shortKey, shortBits, CRC.crcCompute(1L << (55 - i)), i + 1);
+        }
+    }
+
+    /**
+     * Create a repairer
+     *
+     * @param bits an int representing the most bits repaired (0, 1 or 2)
+     */
+    public BitRepair(int bits) {
+        maxBits = Math.max(0, Math.min(bits, 2));
+        corrected1 = 0L;
+        corrected2 = 0L;
+        uncorrectable = 0L;
+    }
+
+    private static int slot(int syndrome, int size) {
+        return (syndrome * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(size));
+    }
+
+    /*
+     * Two errors with the same syndrome can't be told apart, so neither
+     * is repaired. The keys are never zero, which marks an empty slot.
+     */
+    private static void put(int[] keys, int[] bits, int syndrome, int value) {
+        int mask = keys.length - 1;
+
+        for (int s = slot(syndrome, keys.length); ; s = (s + 1) & mask) {
+            if (keys[s] == 0) {
+                keys[s] = syndrome;
+                bits[s] = value;
+                return;
+            } else if (keys[s] == syndrome) {
+                bits[s] = AMBIGUOUS;
+                return;
+            }
+        }
+    }
+
+    private static int get(int[] keys, int[] bits, int syndrome) {
+        int mask = keys.length - 1;
+
+        for (int s = slot(syndrome, keys.length); keys[s] != 0; s = (s + 1) & mask) {
+            if (keys[s] == syndrome) {
+                return bits[s];
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Check a frame, and repair it if it can be. The frame to use is then
+     * in getData0() and getData1(), repaired or not.
+     *
+     * @param isLong a boolean representing a 112-bit frame
+     * @param d0 a long representing bits 1 - 56 of the frame
+     * @param d1 a long representing bits 57 - 112 of a long frame
+     * @return a boolean representing the frame was repaired
+     */
+    public boolean repair(boolean isLong, long d0, long d1) {
+        data0 = d0;
+        data1 = d1;
+
+        if (maxBits == 0) {
+            return false;
+        }
+
+        int df = (int) (d0 >>> 51) & 0x1F;
+        int syndrome;
+        int bits;
+
+        if (isLong == true) {
+            if ((df != 17) && (df != 18)) {
+                return false;
+            }
+
+            syndrome = CRC.crcCompute(d0, d1);
+
+            if (syndrome == 0) {
+                return false;
+            }
+
+            bits = get(longKey, longBits, syndrome);
+
+            if ((bits <= 0) || ((bits > 0xFF) && (maxBits < 2))) {
+                uncorrectable++;
+                return false;
+            }
+        } else {
+            if (df != 11) {
+                return false;
+            }
+
+            syndrome = CRC.crcCompute(d0);
+
+            if ((syndrome & 0xFFFF00) == 0) {
+                return false;               // good, or an interrogator code
+            }
+
+            bits = get(shortKey, shortBits, syndrome);
+
+            if (bits <= 0) {
+                uncorrectable++;
+                return false;
+            }
+        }
+
+        flip((bits & 0xFF) - 1);
+
+        if (bits > 0xFF) {
+            flip((bits >>> 8) - 1);
+            corrected2++;
+        } else {
+            corrected1++;
+        }
+
+        return true;
+    }
+
+    private void flip(int bit) {
+        if (bit < 56) {
+            data0 ^= 1L << (55 - bit);
+        } else {
+            data1 ^= 1L << (111 - bit);
+        }
+    }
+
+    public long getData0() {
+        return data0;
+    }
+
+    public long getData1() {
+        return data1;
+    }
+
+    public long getCorrected1Count() {
+        return corrected1;
+    }
+
+    public long getCorrected2Count() {
+        return corrected2;
+    }
+
+    public long getUncorrectableCount() {
+        return uncorrectable;
+    }
+}
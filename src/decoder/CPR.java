@@ -8,54 +8,76 @@
  */
 package decoder;
 
-public class CPR implements IConstants {
+/*
+ * Compact Position Reporting decoder
+ *
+ * The work is done in double precision, as a float has only 24 bits, and
+ * loses metres on a 17-bit position. The results are written into an array
+ * the caller passes in, [0] latitude and [1] longitude, rather than making
+ * a new object for every decode. A decode returns false if the frames can't
+ * give a position.
+ *
+ * The number of longitude zones (NL) changes at 58 latitudes, which are
+ * worked out once. A latitude is found among them by a binary search.
+ */
+public final class CPR implements IConstants {
 
-    private static final float NL[] = new float[59];       // NL[0..58] Number of Longitude Zones
+    private static final double BINS = 131072.0;                // 2^17
+    private static final double[] NL = new double[59];         // NL[0..58] Number of Longitude Zones
 
     /*
      * Initialize the NL Table (Number of Longitude Zones as a function of
      * latitude)
      *
+     * NL[i] is the highest latitude with i + 1 zones.
+     *
      * This has been verified with a published ICAO fixed table.
      */
-    public CPR() {
-        float tmp = (1.0f - (float) Math.cos(Math.PI / 30.0));
+    static {
+        double tmp = 1.0 - Math.cos(Math.PI / 30.0);
 
-        NL[0] = 90.0f;
+        NL[0] = 90.0;
 
         for (int i = 2; i < 60; i++) {
-            NL[i - 1] = (float) Math.toDegrees(Math.acos(Math.sqrt(tmp / (1.0 - Math.cos(TAU / (float) i)))));
+            NL[i - 1] = Math.toDegrees(Math.acos(Math.sqrt(tmp / (1.0 - Math.cos(2.0 * Math.PI / i)))));
         }
     }
 
-    public int cprNLFunction(float lat) {
-        int i = 58;
-
+    public int cprNLFunction(double lat) {
         lat = Math.abs(lat);
 
-        if (Float.compare(lat, 0.0f) == 0) {
+        if (lat == 0.0) {
             return 59;                  // Equator
-        } else if (Float.compare(lat, 87.0f) == 0) {
+        } else if (lat == 87.0) {
             return 2;
-        } else if (Float.compare(lat, 87.0f) > 0) {
+        } else if (lat > 87.0) {
             return 1;                   // Pole
         }
 
-        while (Float.compare(lat, NL[i]) > 0) {
-            i--;
+        /*
+         * The table falls as the index rises, so find the
+         * last entry the latitude is not above
+         */
+        int lo = 0;
+        int hi = 58;
+
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+
+            if (lat <= NL[mid]) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
         }
 
-        return (i + 1);     // Java is Arabic - starts at zero...
+        return (lo + 1);    // Java is Arabic - starts at zero...
     }
 
-    private int cprNFunction(float lat, boolean fflag) {
-        int nl = cprNLFunction(lat) - ((fflag == ODD) ? 1 : 0);
+    private int cprNFunction(int nl, boolean fflag) {
+        int n = nl - ((fflag == ODD) ? 1 : 0);
 
-        if (nl < 1) {
-            nl = 1;
-        }
-
-        return nl;
+        return (n < 1) ? 1 : n;
     }
 
     /*
@@ -71,96 +93,114 @@ public class CPR implements IConstants {
         return res;
     }
 
-    public float cprModFloat(float a, float b) {
-        if (Float.compare(b, 0.0f) == 0) {
-            return Float.NaN;
-        }
-        
-        float res = (float) Math.IEEEremainder(a, b);
+    private double cprModDouble(double a, double b) {
+        double res = a % b;
 
-        if (Float.compare(res, 0.0f) < 0) {
+        if (res < 0.0) {
             res += b;
         }
 
         return res;
     }
 
-    private float cprDlonFunction(float lat, boolean fflag, boolean surface) {
-        return ((surface == true) ? 90.0f : 360.0f) / cprNFunction(lat, fflag);
+    public float cprModFloat(float a, float b) {
+        if (Float.compare(b, 0.0f) == 0) {
+            return Float.NaN;
+        }
+        
+        return (float) cprModDouble(a, b);
     }
 
-    public LatLon decodeCPRairborne(int even_cprlat, int even_cprlon,
-            int odd_cprlat, int odd_cprlon, boolean fflag) {
-        float AirDlat0 = 360.0f / 60.0f;
-        float AirDlat1 = 360.0f / 59.0f;
-        float lat0 = even_cprlat;
-        float lat1 = odd_cprlat;
-        float lon0 = even_cprlon;
-        float lon1 = odd_cprlon;
-
-        float rlat, rlon;
+    /**
+     * Decode an airborne position from an even and an odd frame
+     *
+     * @param even_cprlat an int representing the 17-bit even latitude
+     * @param even_cprlon an int representing the 17-bit even longitude
+     * @param odd_cprlat an int representing the 17-bit odd latitude
+     * @param odd_cprlon an int representing the 17-bit odd longitude
+     * @param fflag a boolean representing the newest frame is ODD or EVEN
+     * @param latlon a double[2] the latitude and longitude are written into
+     * @return a boolean representing a position was decoded
+     */
+    public boolean decodeCPRairborne(int even_cprlat, int even_cprlon,
+            int odd_cprlat, int odd_cprlon, boolean fflag, double[] latlon) {
+        double lat0 = even_cprlat;
+        double lat1 = odd_cprlat;
+        double lon0 = even_cprlon;
+        double lon1 = odd_cprlon;
 
         // Compute the Latitude Index "j"
-        int j = (int) (float) Math.floor(((59.0 * lat0 - 60.0 * lat1) / 131072.0) + 0.5);
-        float rlat0 = AirDlat0 * (cprModInt(j, 60) + lat0 / 131072.0f);
-        float rlat1 = AirDlat1 * (cprModInt(j, 59) + lat1 / 131072.0f);
+        int j = (int) Math.floor(((59.0 * lat0 - 60.0 * lat1) / BINS) + 0.5);
+        double rlat0 = (360.0 / 60.0) * (cprModInt(j, 60) + lat0 / BINS);
+        double rlat1 = (360.0 / 59.0) * (cprModInt(j, 59) + lat1 / BINS);
 
-        if (Float.compare(rlat0, 270.0f) >= 0) {
-            rlat0 -= 360.0f;
+        if (rlat0 >= 270.0) {
+            rlat0 -= 360.0;
         }
 
-        if (Float.compare(rlat1, 270.0f) >= 0) {
-            rlat1 -= 360.0f;
+        if (rlat1 >= 270.0) {
+            rlat1 -= 360.0;
         }
 
         // Check to see that the latitude is in range: -90 .. +90
-        if (Float.compare(rlat0, -90.0f) < 0 || Float.compare(rlat0, 90.0f) > 0 ||
-                Float.compare(rlat1, -90.0f) < 0 || Float.compare(rlat1, 90.0f) > 0) {
-            return new LatLon(0.0f, 0.0f); // bad data
+        if (rlat0 < -90.0 || rlat0 > 90.0 || rlat1 < -90.0 || rlat1 > 90.0) {
+            return false; // bad data
         }
-        
+
         // Check that both are in the same latitude zone, or abort.
-        if (cprNLFunction(rlat0) != cprNLFunction(rlat1)) {
-            return new LatLon(0.0f, 0.0f); // positions crossed a latitude zone, try again later
+        int nl = cprNLFunction(rlat0);
+
+        if (nl != cprNLFunction(rlat1)) {
+            return false; // positions crossed a latitude zone, try again later
         }
-        
+
         // Compute ni and the Longitude Index "m"
+        int m = (int) Math.floor(((lon0 * (nl - 1) - lon1 * nl) / BINS) + 0.5);
+        int ni = cprNFunction(nl, fflag);
+        double rlon;
+
         if (fflag == ODD) { // Use odd packet.
-            int ni = cprNFunction(rlat1, ODD);
-            int m = (int) (float) Math.floor((((lon0 * (cprNLFunction(rlat1) - 1))
-                    - (lon1 * cprNLFunction(rlat1))) / 131072.0) + 0.5);
-            rlon = cprDlonFunction(rlat1, ODD, false) * (cprModInt(m, ni) + lon1 / 131072.0f);
-            rlat = rlat1;
+            rlon = (360.0 / ni) * (cprModInt(m, ni) + lon1 / BINS);
+            latlon[0] = rlat1;
         } else {     // Use even packet.
-            int ni = cprNFunction(rlat0, EVEN);
-            int m = (int) (float) Math.floor((((lon0 * (cprNLFunction(rlat0) - 1))
-                    - (lon1 * cprNLFunction(rlat0))) / 131072.0) + 0.5);
-            rlon = cprDlonFunction(rlat0, EVEN, false) * (cprModInt(m, ni) + lon0 / 131072.0f);
-            rlat = rlat0;
+            rlon = (360.0 / ni) * (cprModInt(m, ni) + lon0 / BINS);
+            latlon[0] = rlat0;
         }
 
         // Renormalize to -180 .. +180
-        rlon -= (float) Math.floor((rlon + 180.0) / 360.0) * 360.0f;
+        latlon[1] = rlon - Math.floor((rlon + 180.0) / 360.0) * 360.0;
 
-        return new LatLon(rlat, rlon);
+        return true;
     }
 
-    public LatLon decodeCPRsurface(LatLon receiverLatLon,
+    /**
+     * Decode a surface position from an even and an odd frame. A surface
+     * frame only gives the position within a quadrant, so the one nearest
+     * the reference is used.
+     *
+     * @param refLat a double representing the reference latitude
+     * @param refLon a double representing the reference longitude
+     * @param even_cprlat an int representing the 17-bit even latitude
+     * @param even_cprlon an int representing the 17-bit even longitude
+     * @param odd_cprlat an int representing the 17-bit odd latitude
+     * @param odd_cprlon an int representing the 17-bit odd longitude
+     * @param fflag a boolean representing the newest frame is ODD or EVEN
+     * @param latlon a double[2] the latitude and longitude are written into
+     * @return a boolean representing a position was decoded
+     */
+    public boolean decodeCPRsurface(double refLat, double refLon,
             int even_cprlat, int even_cprlon,
             int odd_cprlat, int odd_cprlon,
-            boolean fflag) {
-        float AirDlat0 = 90.0f / 60.0f;
-        float AirDlat1 = 90.0f / 59.0f;
-        float lat0 = even_cprlat;
-        float lat1 = odd_cprlat;
-        float lon0 = even_cprlon;
-        float lon1 = odd_cprlon;
-        float rlon, rlat;
+            boolean fflag, double[] latlon) {
+        double lat0 = even_cprlat;
+        double lat1 = odd_cprlat;
+        double lon0 = even_cprlon;
+        double lon1 = odd_cprlon;
 
         // Compute the Latitude Index "j"
-        int j = (int) (float) Math.floor(((59.0 * lat0 - 60.0 * lat1) / 131072.0) + 0.5);
-        float rlat0 = AirDlat0 * (cprModInt(j, 60) + lat0 / 131072.0f);
-        float rlat1 = AirDlat1 * (cprModInt(j, 59) + lat1 / 131072.0f);
+        int j = (int) Math.floor(((59.0 * lat0 - 60.0 * lat1) / BINS) + 0.5);
+        double rlat0 = (90.0 / 60.0) * (cprModInt(j, 60) + lat0 / BINS);
+        double rlat1 = (90.0 / 59.0) * (cprModInt(j, 59) + lat1 / BINS);
 
         /*
          * Pick the quadrant that's closest to the reference location -
@@ -190,50 +230,49 @@ public class CPR implements IConstants {
          * As a special case, -90, 0 and +90 all encode to zero, so
          * there's a little extra work to do there.
          */
-        if (Float.compare(rlat0, 0.0f) == 0) {
-            if (Float.compare(receiverLatLon.getLat(), -45.0f) < 0) {
-                rlat0 = -90.0f;
-            } else if (Float.compare(receiverLatLon.getLat(), 45.0f) > 0) {
-                rlat0 = 90.0f;
+        if (rlat0 == 0.0) {
+            if (refLat < -45.0) {
+                rlat0 = -90.0;
+            } else if (refLat > 45.0) {
+                rlat0 = 90.0;
             }
-        } else if (Float.compare((rlat0 - receiverLatLon.getLat()), 45.0f) > 0) {
-            rlat0 -= 90.0f;
+        } else if ((rlat0 - refLat) > 45.0) {
+            rlat0 -= 90.0;
         }
 
-        if (Float.compare(rlat1, 0.0f) == 0) {
-            if (Float.compare(receiverLatLon.getLat(), -45.0f) < 0) {
-                rlat1 = -90.0f;
-            } else if (Float.compare(receiverLatLon.getLat(), 45.0f) > 0) {
-                rlat1 = 90.0f;
+        if (rlat1 == 0.0) {
+            if (refLat < -45.0) {
+                rlat1 = -90.0;
+            } else if (refLat > 45.0) {
+                rlat1 = 90.0;
             }
-        } else if (Float.compare((rlat1 - receiverLatLon.getLat()), 45.0f) > 0) {
-            rlat1 -= 90.0f;
+        } else if ((rlat1 - refLat) > 45.0) {
+            rlat1 -= 90.0;
         }
-        
+
         // Check to see that the latitude is in range: -90 .. +90
-        if (Float.compare(rlat0, -90.0f) < 0 || Float.compare(rlat0, 90.0f) > 0 ||
-                Float.compare(rlat1, -90.0f) < 0 || Float.compare(rlat1, 90.0f) > 0) {
-            return new LatLon(0.0f, 0.0f); // bad data
+        if (rlat0 < -90.0 || rlat0 > 90.0 || rlat1 < -90.0 || rlat1 > 90.0) {
+            return false; // bad data
         }
 
         // Check that both are in the same latitude zone, or abort.
-        if (cprNLFunction(rlat0) != cprNLFunction(rlat1)) {
-            return new LatLon(0.0f, 0.0f); // positions crossed a latitude zone, try again later
+        int nl = cprNLFunction(rlat0);
+
+        if (nl != cprNLFunction(rlat1)) {
+            return false; // positions crossed a latitude zone, try again later
         }
 
         // Compute ni and the Longitude Index "m"
+        int m = (int) Math.floor(((lon0 * (nl - 1) - lon1 * nl) / BINS) + 0.5);
+        int ni = cprNFunction(nl, fflag);
+        double rlon;
+
         if (fflag == ODD) { // Use odd packet.
-            int ni = cprNFunction(rlat1, ODD);
-            int m = (int) (float) Math.floor((((lon0 * (cprNLFunction(rlat1) - 1))
-                    - (lon1 * cprNLFunction(rlat1))) / 131072.0f) + 0.5f);
-            rlon = cprDlonFunction(rlat1, ODD, true) * (cprModInt(m, ni) + lon1 / 131072.0f);
-            rlat = rlat1;
+            rlon = (90.0 / ni) * (cprModInt(m, ni) + lon1 / BINS);
+            latlon[0] = rlat1;
         } else {     // Use even packet.
-            int ni = cprNFunction(rlat0, EVEN);
-            int m = (int) (float) Math.floor((((lon0 * (cprNLFunction(rlat0) - 1))
-                    - (lon1 * cprNLFunction(rlat0))) / 131072.0f) + 0.5f);
-            rlon = cprDlonFunction(rlat0, EVEN, true) * (cprModInt(m, ni) + lon0 / 131072.0f);
-            rlat = rlat0;
+            rlon = (90.0 / ni) * (cprModInt(m, ni) + lon0 / BINS);
+            latlon[0] = rlat0;
         }
 
         /*
@@ -245,57 +284,74 @@ public class CPR implements IConstants {
          * if reflon is more than 45 degrees away, move some multiple
          * of 90 degrees towards it.
          */
-        rlon += (float) Math.floor((receiverLatLon.getLon() - rlon + 45.0) / 90.0) * 90.0f;  // this might move us outside (-180..+180), we fix this below
+        rlon += Math.floor((refLon - rlon + 45.0) / 90.0) * 90.0;  // this might move us outside (-180..+180), we fix this below
 
         // Renormalize to -180 .. +180
-        rlon -= (float) Math.floor((rlon + 180.0) / 360.0) * 360.0f;
+        latlon[1] = rlon - Math.floor((rlon + 180.0) / 360.0) * 360.0;
 
-        return new LatLon(rlat, rlon);
+        return true;
     }
 
-    public LatLon decodeCPRrelative(LatLon ref, int cprlat, int cprlon, boolean fflag, boolean surface) {
-        float fractional_lat = cprlat / 131072.0f;
-        float fractional_lon = cprlon / 131072.0f;
+    /**
+     * Decode a position from one frame, given a reference position that
+     * is within half a zone of it
+     *
+     * @param refLat a double representing the reference latitude
+     * @param refLon a double representing the reference longitude
+     * @param cprlat an int representing the 17-bit latitude
+     * @param cprlon an int representing the 17-bit longitude
+     * @param fflag a boolean representing the frame is ODD or EVEN
+     * @param surface a boolean representing a surface frame
+     * @param latlon a double[2] the latitude and longitude are written into
+     * @return a boolean representing a position was decoded
+     */
+    public boolean decodeCPRrelative(double refLat, double refLon, int cprlat, int cprlon,
+            boolean fflag, boolean surface, double[] latlon) {
+        double fractional_lat = cprlat / BINS;
+        double fractional_lon = cprlon / BINS;
 
-        float AirDlat = ((surface == true) ? 90.0f : 360.0f) / ((fflag == ODD) ? 59.0f : 60.0f);
+        double AirDlat = ((surface == true) ? 90.0 : 360.0) / ((fflag == ODD) ? 59.0 : 60.0);
 
         // Compute the Latitude Index "j"
-        int j = (int) ((float) Math.floor(ref.getLat() / AirDlat)
-                + (float) Math.floor(0.5 + cprModFloat(ref.getLat(), AirDlat) / AirDlat - fractional_lat));
+        int j = (int) (Math.floor(refLat / AirDlat)
+                + Math.floor(0.5 + cprModDouble(refLat, AirDlat) / AirDlat - fractional_lat));
 
-        float rlat = AirDlat * (j + fractional_lat);
+        double rlat = AirDlat * (j + fractional_lat);
 
-        if (Float.compare(rlat, 270.0f) >= 0) {
-            rlat -= 360.0f;
+        if (rlat >= 270.0) {
+            rlat -= 360.0;
         }
 
         // Check to see that the latitude is in range: -90 .. +90
-        if (Float.compare(rlat, -90.0f) < 0 || Float.compare(rlat, 90.0f) > 0) {
-            return new LatLon(0.0f, 0.0f);  // Time to give up - Latitude error
+        if (rlat < -90.0 || rlat > 90.0) {
+            return false;  // Time to give up - Latitude error
         }
 
         // Check to see that answer is reasonable - ie no more than 1/2 cell away
-        if (Float.compare((float) Math.abs(rlat - ref.getLat()), (AirDlat / 2.0f)) > 0) {
-            return new LatLon(0.0f, 0.0f); // Time to give up - Latitude error
+        if (Math.abs(rlat - refLat) > (AirDlat / 2.0)) {
+            return false; // Time to give up - Latitude error
         }
 
         // Compute the Longitude Index "m"
-        float AirDlon = cprDlonFunction(rlat, fflag, surface);
+        double AirDlon = ((surface == true) ? 90.0 : 360.0) / cprNFunction(cprNLFunction(rlat), fflag);
 
-        int m = (int) (Math.floor(ref.getLon() / AirDlon)
-                + Math.floor(0.5 + cprModFloat(ref.getLon(), AirDlon) / AirDlon - fractional_lon));
+        int m = (int) (Math.floor(refLon / AirDlon)
+                + Math.floor(0.5 + cprModDouble(refLon, AirDlon) / AirDlon - fractional_lon));
 
-        float rlon = AirDlon * (m + fractional_lon);
+        double rlon = AirDlon * (m + fractional_lon);
 
-        if (Float.compare(rlon, 180.0f) > 0) {
-            rlon -= 360.0f;
+        if (rlon > 180.0) {
+            rlon -= 360.0;
         }
 
         // Check to see that answer is reasonable - ie no more than 1/2 cell away
-        if (Float.compare(Math.abs(rlon - ref.getLon()), (AirDlon / 2.0f)) > 0) {
-            return new LatLon(0.0f, 0.0f);   // Time to give up - Longitude error
+        if (Math.abs(rlon - refLon) > (AirDlon / 2.0)) {
+            return false;   // Time to give up - Longitude error
         }
 
-        return new LatLon(rlat, rlon);
+        latlon[0] = rlat;
+        latlon[1] = rlon;
+
+        return true;
     }
 }
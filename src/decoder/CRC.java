@@ -3,86 +3,132 @@
  */
 package decoder;
 
-public final class CRC implements ICRC {
-
-    private static final long POLY = 0xFFFA0480;        // Polynomial
-
-    @Override
-    public String crcCompute(String raw) {
-        int hexid, data, data1, data2;
-        
-        switch (raw.length()) {
-            case 14 -> {    // Short
-                /*
-                 * Convert the first 8 hex characters into a 32 bit result
-                 */
-                data = Integer.parseInt(raw.substring(0, 8), 16);
-
-                /*
-                 * Convert the 6 hexid characters into a 32 bit result It is
-                 * shifted left 8 bits to align
-                 */
-                hexid = Integer.parseInt(raw.substring(8), 16) << 8;
-
-                /*
-                 * Run the data through the polynomial
-                 */
-                for (int i = 0; i < 32; i++) {
-                    if ((data & 0x80000000) != 0) {
-                        data ^= POLY;
-                    }
-
-                    data <<= 1;
-                }
+/*
+ * The Mode-S parity field is a 24-bit CRC, and on most formats it is
+ * also overlaid with the aircraft address. These are static, so the
+ * decoders share them without making an object per frame.
+ *
+ * The CRC is table driven. It starts from zero, so it is linear in the
+ * data, and the CRC of a frame is the xor of the CRC of each byte moved
+ * to its place in the frame. There is a 256 entry table for each of the
+ * 11 byte places of a long frame, so a frame is 4 or 11 lookups that do
+ * not wait on each other, rather than 32 or 88 shifts. The tables are
+ * 11 KB in all.
+ */
+public final class CRC {
+
+    private static final int POLY = 0xFFF409;          // Generator polynomial (x^24 implied)
+    private static final int PLACES = 11;               // data bytes in a long frame
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    //
+    private static final int[] TABLE = makeTable();
+
+    /*
+     * TABLE[(n << 8) | b] is the CRC of byte b followed by n zero bytes
+     */
+    private static int[] makeTable() {
+        int[] table = new int[PLACES * 256];
+
+        for (int b = 0; b < 256; b++) {
+            int crc = b << 16;
+
+            for (int i = 0; i < 8; i++) {
+                crc = ((crc & 0x800000) != 0) ? (crc << 1) ^ POLY : (crc << 1);
             }
-            case 28 -> { // Long
-                /*
-                * Convert the 22 hex characters frame into a 88 bit result Java
-                * barfs if the msb is 1 in a 32-bit number during parse so I use
-                * an (int) cast on the msb numbers
-                */
-                
-                data = (int) Long.parseLong(raw.substring(0, 8), 16);           // Bytes 1 - 4
-                data1 = (int) Long.parseLong(raw.substring(8, 16), 16);         // Bytes 5 - 8
-                data2 = Integer.parseInt(raw.substring(16, 22), 16) << 8;       // Bytes 9 - 11
-
-                /*
-                * Convert the 6 hexid characters into a 32 bit result.
-                * It is shifted left 8 bits to align
-                */
-                hexid = Integer.parseInt(raw.substring(22), 16) << 8;
-
-                /*
-                * Run the data through the polynomial
-                */
-                for (int i = 0; i < 88; i++) {
-                    if ((data & 0x80000000) != 0) {
-                        data ^= POLY;
-                    }
-
-                    data <<= 1;
-
-                    if ((data1 & 0x80000000) != 0) {
-                        data |= 1;
-                    }
-
-                    data1 <<= 1;
-
-                    if ((data2 & 0x80000000) != 0) {
-                        data1 = data1 | 1;
-                    }
-
-                    data2 <<= 1;
-                }
+
+            table[b] = crc & 0xFFFFFF;
+        }
+
+        for (int n = 1; n < PLACES; n++) {
+            for (int b = 0; b < 256; b++) {
+                int crc = table[((n - 1) << 8) | b];
+
+                table[(n << 8) | b] = ((crc << 8) & 0xFFFFFF) ^ table[crc >>> 16];
             }
-            default -> {
-                return "BAD";
+        }
+
+        return table;
+    }
+
+    /**
+     * A polynomial CRC algorithm for validating short mode-s packets
+     *
+     * @param data56 a long representing the raw 56-bit packet
+     * @return an int representing the 24-bit CRC xor the parity field
+     */
+    public static int crcCompute(long data56) {
+        int data = (int) (data56 >>> 24);               // Bytes 1 - 4
+
+        int crc = TABLE[(3 << 8) | (data >>> 24)]
+                ^ TABLE[(2 << 8) | ((data >>> 16) & 0xFF)]
+                ^ TABLE[(1 << 8) | ((data >>> 8) & 0xFF)]
+                ^ TABLE[data & 0xFF];
+
+        return crc ^ ((int) data56 & 0xFFFFFF);
+    }
+
+    /**
+     * A polynomial CRC algorithm for validating long mode-s packets
+     *
+     * @param data0 a long representing bits 1 - 56 of the packet
+     * @param data1 a long representing bits 57 - 112 of the packet
+     * @return an int representing the 24-bit CRC xor the parity field
+     */
+    public static int crcCompute(long data0, long data1) {
+        int crc = TABLE[(10 << 8) | ((int) (data0 >>> 48) & 0xFF)]      // Bytes 1 - 7
+                ^ TABLE[(9 << 8) | ((int) (data0 >>> 40) & 0xFF)]
+                ^ TABLE[(8 << 8) | ((int) (data0 >>> 32) & 0xFF)]
+                ^ TABLE[(7 << 8) | ((int) (data0 >>> 24) & 0xFF)]
+                ^ TABLE[(6 << 8) | ((int) (data0 >>> 16) & 0xFF)]
+                ^ TABLE[(5 << 8) | ((int) (data0 >>> 8) & 0xFF)]
+                ^ TABLE[(4 << 8) | ((int) data0 & 0xFF)]
+                ^ TABLE[(3 << 8) | ((int) (data1 >>> 48) & 0xFF)]       // Bytes 8 - 11
+                ^ TABLE[(2 << 8) | ((int) (data1 >>> 40) & 0xFF)]
+                ^ TABLE[(1 << 8) | ((int) (data1 >>> 32) & 0xFF)]
+                ^ TABLE[(int) (data1 >>> 24) & 0xFF];
+
+        return crc ^ ((int) data1 & 0xFFFFFF);
+    }
+
+    /**
+     * String wrapper for callers that still hold the packet as hex
+     *
+     * @param raw a String representing a 14 or 28 hex digit packet
+     * @return a String representing the CRC xor the parity field, or BAD
+     */
+    public static String crcCompute(String raw) {
+        try {
+            switch (raw.length()) {
+                case 14 -> {    // Short
+                    return toHex(crcCompute(Long.parseLong(raw, 16)));
+                }
+                case 28 -> {    // Long
+                    return toHex(crcCompute(Long.parseLong(raw.substring(0, 14), 16),
+                            Long.parseLong(raw.substring(14), 16)));
+                }
+                default -> {
+                    return "BAD";
+                }
             }
+        } catch (NumberFormatException e) {
+            return "BAD";
+        }
+    }
+
+    /**
+     * Method to format a 24-bit address or parity as six hex digits
+     *
+     * @param val an int representing the 24-bit value
+     * @return a string representing the value in uppercase hex
+     */
+    public static String toHex(int val) {
+        char[] hexChars = new char[6];
+
+        for (int i = 5; i >= 0; i--) {
+            hexChars[i] = HEX[val & 0x0F];
+            val >>>= 4;
         }
 
-        /*
-         * The result is shifted 8 bits to the right for final value
-         */
-        return String.format("%06X", (data ^ hexid) >>> 8);
+        return new String(hexChars);
     }
 }
@@ -3,7 +3,34 @@
  */
 package decoder;
 
-public final class Callsign implements ICallsign {
+/*
+ * Decode the eight 6-bit characters of a callsign
+ *
+ * The same few hundred callsigns are heard over and over, so the Strings
+ * are kept in a cache keyed by the 48 raw bits. A repeat callsign is then
+ * a lookup, and the same bits always give the same String, so a changed
+ * callsign can be seen by reference.
+ *
+ * The cache is 4-way set associative, and each set evicts by the clock
+ * method. Every entry has a used bit set on a hit, and the clock hand
+ * passes over, and clears, the used entries to find one to replace.
+ *
+ * Only the DataBlockParser thread decodes callsigns, so it is not locked.
+ */
+public final class Callsign {
+
+    private static final int SETS = 256;            // must be a power of 2
+    private static final int WAYS = 4;              // must be a power of 2
+    private static final long EMPTY = -1L;          // not a 48-bit value
+    //
+    private static final long[] keys = new long[SETS * WAYS];
+    private static final String[] values = new String[SETS * WAYS];
+    private static final boolean[] used = new boolean[SETS * WAYS];
+    private static final int[] hand = new int[SETS];
+    //
+    private static long hits;
+    private static long misses;
+    private static long evictions;
 
     private static final char[] Alpha = {
         ' ', 'A', 'B', 'C', 'D', 'E', 'F', 'G',
@@ -16,30 +43,85 @@ public final class Callsign implements ICallsign {
         '8', '9', ' ', ' ', ' ', ' ', ' ', ' '
     };
 
-    @Override
-    public String callsignDecode(long data56) {
-        char c8 = Alpha[(int) (data56 & 0x3FL)];
-        char c7 = Alpha[(int) ((data56 >>> 6) & 0x3FL)];
-        char c6 = Alpha[(int) ((data56 >>> 12) & 0x3FL)];
-        char c5 = Alpha[(int) ((data56 >>> 18) & 0x3FL)];
-        char c4 = Alpha[(int) ((data56 >>> 24) & 0x3FL)];
-        char c3 = Alpha[(int) ((data56 >>> 30) & 0x3FL)];
-        char c2 = Alpha[(int) ((data56 >>> 36) & 0x3FL)];
-        char c1 = Alpha[(int) ((data56 >>> 42) & 0x3FL)];
-        
-        char[] result = {c1, c2, c3, c4, c5, c6, c7, c8};
+    static {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = EMPTY;
+        }
+    }
+
+    /**
+     * Given 56 bits, return a Callsign string
+     *
+     * @param data56 a long representing the raw data bits
+     * @return a string representing the callsign text
+     */
+    public static String callsignDecode(long data56) {
+        long key = data56 & 0xFFFFFFFFFFFFL;        // 8 characters of 6 bits
+        int base = (int) ((key * 0x9E3779B97F4A7C15L) >>> 56) & (SETS - 1);
+
+        base *= WAYS;
+
+        for (int way = 0; way < WAYS; way++) {
+            if (keys[base + way] == key) {
+                used[base + way] = true;
+                hits++;
+                return values[base + way];
+            }
+        }
+
+        misses++;
 
         /*
-         * Callsign might be gimped with garbled bits
-         *
-         * Perform a NullPointer check, and punt if thrown
+         * Move the clock hand past the entries used since it last came by
          */
+        int set = base / WAYS;
+        int way = hand[set];
+
+        while (used[base + way] == true) {
+            used[base + way] = false;
+            way = (way + 1) & (WAYS - 1);
+        }
+
+        if (keys[base + way] != EMPTY) {
+            evictions++;
+        }
+
+        String callsign = decode(key);
+
+        keys[base + way] = key;
+        values[base + way] = callsign;
+        used[base + way] = true;
+        hand[set] = (way + 1) & (WAYS - 1);
+
+        return callsign;
+    }
+
+    private static String decode(long data48) {
+        char[] result = new char[8];
+
+        for (int i = 7; i >= 0; i--) {
+            result[i] = Alpha[(int) (data48 & 0x3FL)];
+            data48 >>>= 6;
+        }
+
         String callsign = new String(result).trim();
-        
-        if (callsign == null) {
+
+        if (callsign.isEmpty() == true) {
             return "";
-        } else {
-            return callsign;
         }
+
+        return callsign;
+    }
+
+    public static long getHitCount() {
+        return hits;
+    }
+
+    public static long getMissCount() {
+        return misses;
+    }
+
+    public static long getEvictionCount() {
+        return evictions;
     }
 }
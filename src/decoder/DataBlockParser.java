@@ -8,16 +8,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
-import parser.BufferDataBlocks;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import parser.Config;
 import parser.DataBlock;
-import parser.ZuluMillis;
+import parser.DataBlockQueue;
+import parser.IClock;
 
 /*
  * A class to decode the received data blocks
@@ -27,46 +27,68 @@ public final class DataBlockParser extends Thread {
 
     private static final long RATE1 = 60L * 1000L;              // 60 seconds
     private static final long RATE2 = 5L * 1000L;               // 5 seconds
+    private static final long QUEUETIMEOUT = 1000L;             // 1 second
     //
     private final ConcurrentHashMap<String, Track> tracks;
-    private final ConcurrentHashMap<String, DataBlock> shortDetects;
+    private final ArrayList<DataBlock> shortDetects;
     private final ArrayList<DataBlock> longDetects;
+    private final ArrayList<DataBlock> detects;
     //
     private final Thread process;
-    private final BufferDataBlocks buf;
+    private final Thread scanner;
+    private final DataBlockQueue queue;
     private final LatLon receiverLatLon;
     private final PositionManager pm;
+    //
+    private final ModeSFrame frame;
+    private final IcaoBitmap confirmed;
+    private final DownlinkFormat00 df00;
+    private final DownlinkFormat04 df04;
+    private final DownlinkFormat05 df05;
+    private final DownlinkFormat11 df11;
+    private final DownlinkFormat16 df16;
+    private final DownlinkFormat17 df17;
+    private final DownlinkFormat18 df18;
+    private final DownlinkFormat20 df20;
+    private final DownlinkFormat21 df21;
     private final NConverter nconverter;
-    private final ZuluMillis zulu;
+    private final IClock clock;
     private final PressureAltitude pa;
     //
     private final Connection db;
+    private final ConcurrentLinkedQueue<String> statements;    // for the RadarScan thread
     private final Config config;
     //
-    private final int radar_site;
     private final long trackTimeout;
     private final long radarscan;
+    private final int backlog;
+    private final AtomicInteger pendingBlocks;
+    private volatile boolean scanRequested;
+    private volatile boolean scanEOF;
     //
-    private static boolean EOF;
+    private static volatile boolean EOF;
     private final String airport;
     private final int elevation;
     //
-    private final Timer timer1;
-    private final Timer timer2;
-    //
-    private final TimerTask task1;
-    private final TimerTask task2;
+    private final Runnable task1;
+    private final Runnable task2;
+    private long nextTask1;
+    private long nextTask2;
     
-    public DataBlockParser(Config cf, LatLon ll, BufferDataBlocks bd, Connection dbc, PressureAltitude p) {
-        zulu = new ZuluMillis();
+    public DataBlockParser(Config cf, LatLon ll, DataBlockQueue q, Connection dbc, PressureAltitude p, IClock c) {
+        clock = c;
         config = cf;
         receiverLatLon = ll;
-        buf = bd;
+        queue = q;
         db = dbc;
+        statements = new ConcurrentLinkedQueue<>();
         pa = p;
 
         radarscan = (long) cf.getRadarScanTime() * 1000L;
-        radar_site = cf.getRadarSite();
+        backlog = cf.getRadarBacklog();
+        pendingBlocks = new AtomicInteger(0);
+        scanRequested = false;
+        scanEOF = false;
         
         if (pa == null) {
             airport = "";
@@ -77,26 +99,43 @@ public final class DataBlockParser extends Thread {
         }      
 
         tracks = new ConcurrentHashMap<>();
-        shortDetects = new ConcurrentHashMap<>();
+        shortDetects = new ArrayList<>();
         longDetects = new ArrayList<>();
+        detects = new ArrayList<>();
 
-        pm = new PositionManager(receiverLatLon, this);
+        pm = new PositionManager(receiverLatLon, config.getStationRange(), this, clock);
+
+        /*
+         * The blocks are all decoded on the DataBlockParser thread, so one
+         * frame view and one decoder for each format are reused for all of them.
+         */
+        frame = new ModeSFrame();
+        df00 = new DownlinkFormat00();
+        df04 = new DownlinkFormat04();
+        df05 = new DownlinkFormat05();
+        df11 = new DownlinkFormat11();
+        df16 = new DownlinkFormat16();
+        df17 = new DownlinkFormat17(pm);
+        df18 = new DownlinkFormat18(pm);
+        df20 = new DownlinkFormat20();
+        df21 = new DownlinkFormat21();
         nconverter = new NConverter();
 
         trackTimeout = config.getDatabaseTrackTimeout() * 60L * 1000L;
+        confirmed = new IcaoBitmap(trackTimeout);
 
         task1 = new UpdateActiveTracksTask();
         task2 = new UpdateTrackQualityTask();
+        nextTask1 = 0L;
+        nextTask2 = 0L;
 
-        timer1 = new Timer();
-        timer1.scheduleAtFixedRate(task1, 0L, RATE1);
-        
-        timer2 = new Timer();
-        timer2.scheduleAtFixedRate(task2, 10L, RATE2);
-        
         process = new Thread(this);
         process.setName("DataBlockParser");
         process.setPriority(Thread.NORM_PRIORITY);
+
+        scanner = new Thread(new RadarScanTask());
+        scanner.setName("RadarScan");
+        scanner.setPriority(Thread.NORM_PRIORITY);
     }
 
     @Override
@@ -104,20 +143,39 @@ public final class DataBlockParser extends Thread {
         EOF = false;
         initializeTracks();
         process.start();
+        scanner.start();
     }
 
     public void close() {
         EOF = true;
+
+        queue.close();
+
+        /*
+         * The decoder finishes the blocks still queued, then the RadarScan
+         * thread writes the tracks a last time. It is the only one using
+         * the database, so it has to be finished before it is closed.
+         */
+        try {
+            process.join();
+
+            scanEOF = true;
+            LockSupport.unpark(scanner);
+            scanner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         
         try {
             db.close();
         } catch (NullPointerException | SQLException e) {
         }
 
-        timer1.cancel();
-        timer2.cancel();
-
         pm.close();
+
+        System.out.println("DataBlockParser::close callsign cache " + Callsign.getHitCount()
+                + " hits, " + Callsign.getMissCount() + " misses, "
+                + Callsign.getEvictionCount() + " evictions");
     }
 
     /*
@@ -158,6 +216,13 @@ public final class DataBlockParser extends Thread {
         }
     }
 
+    /*
+     * Method to return the addresses confirmed by DF11/17/18 lately
+     */
+    public IcaoBitmap getConfirmed() {
+        return confirmed;
+    }
+
     public boolean hasTrack(String icao) throws NullPointerException {
         synchronized (tracks) {
             return tracks.containsKey(icao);
@@ -209,18 +274,31 @@ public final class DataBlockParser extends Thread {
         *
         * Set the database track inactive, and quality to 0.
         */
-        String queryString = String.format("UPDATE modes.tracks SET active = 0,"
-                + "quality = 0 WHERE icao_number='%s'", icao);
+        statements.offer(String.format("UPDATE modes.tracks SET active = 0,"
+                + "quality = 0 WHERE icao_number='%s'", icao));
+    }
 
-        try (Statement query = db.createStatement()) {
-            query.executeUpdate(queryString);
-        } catch (SQLException e77) {
+    /*
+     * Run the statements the other threads have queued. This is only
+     * called on the RadarScan thread, as the connection is not shared.
+     */
+    private void flushStatements() {
+        String queryString;
+
+        while ((queryString = statements.poll()) != null) {
+            try (Statement query = db.createStatement()) {
+                query.executeUpdate(queryString);
+            } catch (SQLException e78) {
+                System.out.println("DataBlockParser::flushStatements SQL Error: " + queryString + " " + e78.getMessage());
+            }
         }
     }
 
     /*
      * Method to add a new TCAS alert for this track
      * into the database table
+     *
+     * The insert is queued for the RadarScan thread.
      */
     public void insertTCASAlert(String hexid, int df5, long data56, long time) {
         /*
@@ -276,11 +354,7 @@ public final class DataBlockParser extends Thread {
                     tcas.getThreatIdentityData(),
                     tcas.getThreatTypeData());
 
-            try (Statement query = db.createStatement()) {
-                query.executeUpdate(queryString);
-            } catch (SQLException t3) {
-                System.out.println("DataBlockParser::insertTCASAlert insert SQL Error: " + queryString + " " + t3.getMessage());
-            }
+            statements.offer(queryString);
         }
     }
 
@@ -294,14 +368,14 @@ public final class DataBlockParser extends Thread {
      * First the database entry is marked inactive, and then the local
      * track is removed from the queue.
      */
-    private class UpdateActiveTracksTask extends TimerTask {
+    private class UpdateActiveTracksTask implements Runnable {
 
         private List<Track> tracks;
         private long tracktime;
 
         @Override
         public void run() {
-            long currentTime = zulu.getUTCTime();
+            long currentTime = clock.getUTCTime();
             long delta;
 
             try {
@@ -340,7 +414,7 @@ public final class DataBlockParser extends Thread {
      *
      * Note: It doesn't run against inactive tracks.
      */
-    private class UpdateTrackQualityTask extends TimerTask {
+    private class UpdateTrackQualityTask implements Runnable {
 
         private List<Track> tracks;
         private long delta;
@@ -348,7 +422,7 @@ public final class DataBlockParser extends Thread {
 
         @Override
         public void run() {
-            currentTime = zulu.getUTCTime();
+            currentTime = clock.getUTCTime();
             delta = 0L;
             String icao;
 
@@ -367,8 +441,11 @@ public final class DataBlockParser extends Thread {
                         delta = Math.abs(currentTime - track.getUpdatedPositionTime());
 
                         if (delta >= RATE1) {
-                            track.decrementTrackQuality();
-                            track.setUpdatedTime(currentTime);
+                            synchronized (track) {
+                                track.decrementTrackQuality();
+                                track.setUpdatedTime(currentTime);
+                            }
+
                             addTrack(icao, track);   // overwrite
                         }
                     }
@@ -379,11 +456,20 @@ public final class DataBlockParser extends Thread {
         }
     }
 
-    private void updateTrackAmplitude(String hexid, int val, long time) {
+    /*
+     * Each update locks the track, so the RadarScan thread copies
+     * either all of it or none of it
+     */
+    private void updateTrackAmplitude(String hexid, int val, int site, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAmplitude(val);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAmplitude(val);
+                track.setRadarSite(site);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -392,10 +478,14 @@ public final class DataBlockParser extends Thread {
     private void updateTrackMagneticHeadingIAS(String hexid, float head, float ias, int vvel, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setHeading(head);
-            track.setIAS(ias);
-            track.setVerticalRate(vvel);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setHeading(head);
+                track.setIAS(ias);
+                track.setVerticalRate(vvel);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -405,10 +495,14 @@ public final class DataBlockParser extends Thread {
     private void updateTrackMagneticHeadingTAS(String hexid, float head, float tas, int vvel, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setHeading(head);
-            track.setTAS(tas);
-            track.setVerticalRate(vvel);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setHeading(head);
+                track.setTAS(tas);
+                track.setVerticalRate(vvel);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -418,8 +512,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackCallsign(String hexid, String cs, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setCallsign(cs);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setCallsign(cs);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -429,9 +527,13 @@ public final class DataBlockParser extends Thread {
     private void updateTrackCallsign(String hexid, String cs, int category, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setCallsign(cs);
-            track.setCategory(category);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setCallsign(cs);
+                track.setCategory(category);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -441,8 +543,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF00(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF00(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF00(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -452,8 +558,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF04(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF04(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF04(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -463,8 +573,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF16(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF16(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF16(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -474,8 +588,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF17(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF17(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF17(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -485,8 +603,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF18(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF18(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF18(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -496,8 +618,12 @@ public final class DataBlockParser extends Thread {
     private void updateTrackAltitudeDF20(String hexid, int alt, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAltitudeDF20(alt);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAltitudeDF20(alt);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -507,10 +633,14 @@ public final class DataBlockParser extends Thread {
     private void updateTrackGroundSpeedTrueHeading(String hexid, float gs, float th, int vs, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setGroundSpeed(gs);
-            track.setGroundTrack(th);
-            track.setVerticalRate(vs);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setGroundSpeed(gs);
+                track.setGroundTrack(th);
+                track.setVerticalRate(vs);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -520,20 +650,28 @@ public final class DataBlockParser extends Thread {
     private void updateTrackRadarID(String hexid, int iid, boolean si, long time) {
         try {
             Track trk = getTrack(hexid);
-            trk.setRadarIID(iid);
-            trk.setSI(si);
-            trk.setUpdatedTime(time);
+
+            synchronized (trk) {
+                trk.setRadarIID(iid);
+                trk.setSI(si);
+                trk.setUpdatedTime(time);
+            }
+
             addTrack(hexid, trk);
         } catch (NullPointerException np) {
             System.err.println(np);
         }
     }
 
-    private void updateTrackSquawk(String hexid, String sq, long time) {
+    private void updateTrackSquawk(String hexid, int sq, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setSquawk(sq);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setSquawk(sq);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -543,9 +681,13 @@ public final class DataBlockParser extends Thread {
     private void updateTrackBoolean(String hexid, boolean onground, boolean emergency, boolean alert, boolean spi, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setAlert(alert, emergency, spi);
-            track.setOnGround(onground);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setAlert(alert, emergency, spi);
+                track.setOnGround(onground);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
@@ -555,20 +697,28 @@ public final class DataBlockParser extends Thread {
     private void updateTrackOnGround(String hexid, boolean onground, long time) {
         try {
             Track track = getTrack(hexid);
-            track.setOnGround(onground);
-            track.setUpdatedTime(time);
+
+            synchronized (track) {
+                track.setOnGround(onground);
+                track.setUpdatedTime(time);
+            }
+
             addTrack(hexid, track);
         } catch (NullPointerException np) {
             System.err.println(np);
         }
     }
 
-    public void updateTrackLatLon(String hexid, LatLon latlon, int mode, long time) {
+    public void updateTrackLatLon(String hexid, float lat, float lon, int mode, long time) {
         if (hasTrack(hexid) == true) {
             try {
                 Track track = getTrack(hexid);
-                track.setPosition(latlon, mode, time);
-                track.setUpdatedTime(time);
+
+                synchronized (track) {
+                    track.setPosition(lat, lon, mode, time);
+                    track.setUpdatedTime(time);
+                }
+
                 addTrack(hexid, track);
             } catch (NullPointerException np) {
                 System.err.println(np);
@@ -580,640 +730,716 @@ public final class DataBlockParser extends Thread {
      * Track detection processing and adding to the Track library.
      *
      * Decode Mode-S Short (56-Bit) and Long (112-Bit) Packets
+     *
+     * The blocks are decoded as soon as they arrive. The database is
+     * updated separately by the RadarScan thread.
      */
     @Override
     public void run() {
-        DataBlock block;
+        int count;
+
+        while (EOF == false) {
+            /*
+             * This parks until a BufferDataBlocks thread queues a block,
+             * or a second goes by for the timeouts.
+             */
+            if (queue.await(QUEUETIMEOUT) == false) {
+                housekeeping();
+                continue;
+            }
+
+            count = decodeQueued();
+
+            /*
+             * If a lot of blocks have come in since the last database
+             * update, then don't wait for the radar scan.
+             */
+            if ((backlog > 0) && (pendingBlocks.addAndGet(count) >= backlog)) {
+                if (scanRequested == false) {
+                    scanRequested = true;
+                    LockSupport.unpark(scanner);
+                }
+            }
+
+            housekeeping();
+        } // while
+
+        /*
+         * Closing, so decode what is left
+         */
+        while (decodeQueued() > 0) {
+        }
+    }
+
+    /*
+     * Decode the blocks waiting on the queue
+     */
+    private int decodeQueued() {
+        int count;
+
+        /*
+         * The short blocks have already had the duplicates
+         * removed by BufferDataBlocks.
+         */
+        shortDetects.clear();
+        detects.clear();
+
+        count = queue.drainTo(detects, queue.getCapacity());
+
+        for (DataBlock block : detects) {
+            if (block.getBlockType() == DataBlock.SHORTBLOCK) {
+                shortDetects.add(block);
+            } else {
+                longDetects.add(block);
+            }
+        }
+
+        detects.clear();
+
+        parseShortDetects();
+        parseLongDetects();
+
+        return count;
+    }
+
+    /*
+     * The track, position and confirmed address timeouts are run on this
+     * thread, from the program clock, rather than from wall clock timers.
+     * In a replay the clock is the recorded time, so tracks age the same
+     * at any speed.
+     */
+    private void housekeeping() {
+        long now = clock.getUTCTime();
+
+        if (now >= nextTask1) {
+            nextTask1 = now + RATE1;
+            task1.run();
+        }
+
+        if (now >= nextTask2) {
+            nextTask2 = now + RATE2;
+            task2.run();
+        }
+
+        confirmed.tick(now);
+        pm.tick();
+    }
+
+    /*
+     * Copy the updated tracks to the database
+     *
+     * This is called by the RadarScan thread every radar.scan seconds,
+     * or sooner if the backlog of decoded blocks gets too large.
+     */
+    private void updateDatabase() {
         String queryString;
-        String mdhash;
         String icao_number;
-        boolean updated;
+        int radar_site;
         int ground;
         int exists;
         long time;
 
-        while (EOF == false) {
-            int qsize = buf.getQueueSize();
+        flushStatements();
 
-            if (qsize == 0) {
-                continue;
-            }
+        /*
+         * We now have tracks to process
+         */
+        List<Track> table = getAllTracks();
+
+        if (table.isEmpty() == false) {
+            for (Track trk : table) {
+                /*
+                 * Copy the track and reset its updated flags for the next
+                 * processing pass, in one step under the track lock. An
+                 * update from the decoder thread is either in this row,
+                 * or sets the flags again for the next pass.
+                 *
+                 * We only want to add updated data
+                 * to the database
+                 */
+                TrackRow row = trk.takeUpdate();
+
+                if (row != null) {
+                    icao_number = row.getAircraftICAO();
+                    time = row.getUpdatedTime();
+                    radar_site = row.getRadarSite();     // the receiver that last heard it
 
-            /*
-             * The compression rate for duplicates is pretty large.
-             * For 3000 track reports, about 2000 are duplicates.
-             *
-             * Start with a fresh sheet each radar scan
-             */
-            shortDetects.clear();
+                    /*
+                     * See if this ICAO exists yet in the track table, and
+                     * has our radar ID. If it does, we can do an update, and
+                     * if not we will do an insert.
+                     */
+                    queryString = String.format("SELECT count(*) AS TC FROM modes.tracks WHERE icao_number='%s' AND radar_site=%d",
+                            icao_number, radar_site);
 
-            for (int i = 0; i < qsize; i++) {
-                try {
-                    block = buf.popData();
-                    mdhash = block.getDataHash();
-                    
-                    if (block.getBlockType() == DataBlock.SHORTBLOCK) {
-                        /*
-                         * This will put the short data blocks on the keyed queue
-                         * and duplicates will be overwritten. The duplicates
-                         * have to be within the radar.scan number of seconds.
-                         */
-                        shortDetects.put(mdhash, block);
-                    } else {
-                        longDetects.add(block);
+                    exists = 0;
+
+                    try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                        if (rs.next() == true) {
+                            exists = rs.getInt("TC");
+                        }
+                    } catch (SQLException e3) {
                     }
-                } catch (IndexOutOfBoundsException dbk3) {
-                }
-            }
 
-            parseShortDetects();
-            parseLongDetects();
+                    if (row.getOnGround() == true) {
+                        ground = 1;
+                    } else {
+                        ground = 0;
+                    }
 
-            /*
-             * We now have tracks to process
-             */
-            List<Track> table = getAllTracks();
-
-            if (table.isEmpty() == false) {
-                for (Track trk : table) {
-                    icao_number = trk.getAircraftICAO();
-                    time = trk.getUpdatedTime();
-                    updated = trk.getUpdated();
-                    
                     /*
-                     * reset the updated boolean for the next
-                     * processing pass.
+                     * Not much in tracks table anymore
                      */
-                    trk.setUpdated(false);
-                    
+                    if (exists > 0) {         // track exists
+                        queryString = String.format("UPDATE modes.tracks SET "
+                                + "utcupdate=%d,"
+                                + "quality=%d,"
+                                + "active='1'"
+                                + " WHERE icao_number='%s' AND radar_site=%d",
+                                time,
+                                row.getTrackQuality(),
+                                icao_number,
+                                radar_site);
+                    } else {                // track doesn't exist
+                        queryString = String.format("INSERT INTO modes.tracks ("
+                                + "icao_number,"
+                                + "radar_site,"
+                                + "utcdetect,"
+                                + "utcupdate,"
+                                + "quality,"
+                                + "active"
+                                + ") VALUES ('%s',%d,%d,%d,%d,'1')",
+                                icao_number,
+                                radar_site,
+                                time,
+                                time,
+                                row.getTrackQuality());
+                    }
+
+                    try (Statement query = db.createStatement()) {
+                        query.executeUpdate(queryString);
+                    } catch (SQLException t3) {
+                        System.out.println("DataBlockParser::run insert/update tracks table Error: " + queryString + " " + t3.getMessage());
+                    }
+
+                    if (row.getUpdatePosition() == true) {
+                        if ((row.getLatitude() != -999.0F) && (row.getLongitude() != -999.0F)) {
+                            queryString = String.format("INSERT INTO modes.position_echo ("
+                                    + "icao_number,"
+                                    + "radar_site,"
+                                    + "utcdetect,"
+                                    + "latitude,"
+                                    + "longitude,"
+                                    + "verticalTrend,"
+                                    + "onground"
+                                    + ") VALUES ('%s',%d,%d,"
+                                    + "NULLIF(%f, -999.0),"
+                                    + "NULLIF(%f, -999.0),"
+                                    + "%d, %d)",
+                                    icao_number,
+                                    radar_site,
+                                    time,
+                                    row.getLatitude(),
+                                    row.getLongitude(),
+                                    row.getVerticalTrend(),
+                                    ground);
+
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e6) {
+                                System.out.println("DataBlockParser::run query position_echo Error: " + queryString + " " + e6.getMessage());
+                            }
+                        }
+                    }
+
                     /*
-                     * We only want to add updated data
-                     * to the database
+                     * We now process squawks
+                     *
+                     * First see if squawk is null, and skip if it is.
+                     *
+                     * See if this ICAO exists yet in the squawk table, and
+                     * only if the squawk is new, drop it in.
                      */
-                    if (updated == true) {
-                        /*
-                         * See if this ICAO exists yet in the track table, and
-                         * has our radar ID. If it does, we can do an update, and
-                         * if not we will do an insert.
-                         */
-                        queryString = String.format("SELECT count(*) AS TC FROM modes.tracks WHERE icao_number='%s' AND radar_site=%d",
-                                icao_number, radar_site);
+                    String squawk = row.getSquawk();
+
+                    if (squawk.equals("") == false) {
+                        queryString = String.format("SELECT count(*) AS SK"
+                                + " FROM modes.squawk_list "
+                                + "WHERE icao_number='%s' AND squawk='%s'",
+                                icao_number, squawk);
 
                         exists = 0;
 
                         try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
                             if (rs.next() == true) {
-                                exists = rs.getInt("TC");
+                                exists = rs.getInt("SK");
                             }
                         } catch (SQLException e3) {
                         }
 
-                        if ((trk.getOnGround() == true) || (trk.getVirtualOnGround() == true)) {
-                            ground = 1;
-                        } else {
-                            ground = 0;
-                        }
-
-                        /*
-                         * Not much in tracks table anymore
-                         */
-                        if (exists > 0) {         // track exists
-                            queryString = String.format("UPDATE modes.tracks SET "
-                                    + "utcupdate=%d,"
-                                    + "quality=%d,"
-                                    + "active='1'"
-                                    + " WHERE icao_number='%s' AND radar_site=%d",
-                                    time,
-                                    trk.getTrackQuality(),
-                                    icao_number,
-                                    radar_site);
-                        } else {                // track doesn't exist
-                            queryString = String.format("INSERT INTO modes.tracks ("
+                        if (exists == 0) {
+                            queryString = String.format("INSERT INTO modes.squawk_list ("
                                     + "icao_number,"
-                                    + "radar_site,"
                                     + "utcdetect,"
-                                    + "utcupdate,"
-                                    + "quality,"
-                                    + "active"
-                                    + ") VALUES ('%s',%d,%d,%d,%d,'1')",
+                                    + "squawk) VALUES ('%s',%d,'%s')",
                                     icao_number,
-                                    radar_site,
                                     time,
-                                    time,
-                                    trk.getTrackQuality());
-                        }
-
-                        try (Statement query = db.createStatement()) {
-                            query.executeUpdate(queryString);
-                        } catch (SQLException t3) {
-                            System.out.println("DataBlockParser::run insert/update tracks table Error: " + queryString + " " + t3.getMessage());
-                        }
+                                    squawk);
 
-                        if (trk.getUpdatePosition() == true) {
-                            trk.setUpdatePosition(false);
-
-                            if ((trk.getLatitude() != -999.0F) && (trk.getLongitude() != -999.0F)) {
-                                queryString = String.format("INSERT INTO modes.position_echo ("
-                                        + "icao_number,"
-                                        + "radar_site,"
-                                        + "utcdetect,"
-                                        + "latitude,"
-                                        + "longitude,"
-                                        + "verticalTrend,"
-                                        + "onground"
-                                        + ") VALUES ('%s',%d,%d,"
-                                        + "NULLIF(%f, -999.0),"
-                                        + "NULLIF(%f, -999.0),"
-                                        + "%d, %d)",
-                                        icao_number,
-                                        radar_site,
-                                        time,
-                                        trk.getLatitude(),
-                                        trk.getLongitude(),
-                                        trk.getVerticalTrend(),
-                                        ground);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e6) {
-                                    System.out.println("DataBlockParser::run query position_echo Error: " + queryString + " " + e6.getMessage());
-                                }
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e67) {
+                                System.out.println("DataBlockParser::run query squawk Error: " + queryString + " " + e67.getMessage());
                             }
                         }
+                    }
 
-                        /*
-                         * We now process squawks
-                         *
-                         * First see if squawk is null, and skip if it is.
-                         *
-                         * See if this ICAO exists yet in the squawk table, and
-                         * only if the squawk is new, drop it in.
-                         */
-                        String squawk = trk.getSquawk();
+                    /*
+                     * We now process alerts
+                     * Check for duplicates
+                     */
+                    queryString = String.format("SELECT count(*) AS AK FROM modes.alert_list "
+                            + "WHERE icao_number='%s' AND utcdetect=%d",
+                            icao_number,
+                            time);
 
-                        if (squawk.equals("") == false) {
-                            queryString = String.format("SELECT count(*) AS SK"
-                                    + " FROM modes.squawk_list "
-                                    + "WHERE icao_number='%s' AND squawk='%s'",
-                                    icao_number, squawk);
+                    exists = 0;
 
-                            exists = 0;
+                    try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                        if (rs.next() == true) {
+                            exists = rs.getInt("AK");
+                        }
+                    } catch (SQLException e77) {
+                        System.out.println("DataBlockParser::run query alert_list warn: " + queryString + " " + e77.getMessage());
+                    }
 
-                            try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                                if (rs.next() == true) {
-                                    exists = rs.getInt("SK");
-                                }
-                            } catch (SQLException e3) {
-                            }
+                    if (exists == 0) {
+                        boolean aa = row.getAlert();
+                        boolean ea = row.getEmergency();
+                        boolean sa = row.getSPI();
+                        boolean ja = row.getHijack();
+                        boolean ca = row.getCommOut();
 
-                            if (exists == 0) {
-                                queryString = String.format("INSERT INTO modes.squawk_list ("
-                                        + "icao_number,"
-                                        + "utcdetect,"
-                                        + "squawk) VALUES ('%s',%d,'%s')",
-                                        icao_number,
-                                        time,
-                                        squawk);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e67) {
-                                    System.out.println("DataBlockParser::run query squawk Error: " + queryString + " " + e67.getMessage());
-                                }
+                        if (aa == true || ea == true || sa == true || ja == true || ca == true) {
+                            queryString = String.format("INSERT INTO modes.alert_list ("
+                                    + "icao_number,"
+                                    + "utcdetect,"
+                                    + "alert,"
+                                    + "emergency,"
+                                    + "spi,"
+                                    + "hijack,"
+                                    + "comm_out"
+                                    + ") VALUES ("
+                                    + "'%s',"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "%d)",
+                                    icao_number,
+                                    time,
+                                    (aa == true) ? 1 : 0,
+                                    (ea == true) ? 1 : 0,
+                                    (sa == true) ? 1 : 0,
+                                    (ja == true) ? 1 : 0,
+                                    (ca == true) ? 1 : 0);
+
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e66) {
+                                System.out.println("DataBlockParser::run query alert Error: " + queryString + " " + e66.getMessage());
                             }
                         }
+                    }
 
-                        /*
-                         * We now process alerts
-                         * Check for duplicates
-                         */
-                        queryString = String.format("SELECT count(*) AS AK FROM modes.alert_list "
-                                + "WHERE icao_number='%s' AND utcdetect=%d",
+                    /*
+                     * We now process registrations
+                     * Check for duplicates
+                     */
+                    String registration = row.getRegistration();
+
+                    if (registration.equals("") == false) {
+                        queryString = String.format("SELECT count(*) AS RG FROM modes.icao_list "
+                                + "WHERE icao_number='%s' AND registration='%s'",
                                 icao_number,
-                                time);
+                                registration);
 
                         exists = 0;
 
                         try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
                             if (rs.next() == true) {
-                                exists = rs.getInt("AK");
+                                exists = rs.getInt("RG");
                             }
-                        } catch (SQLException e77) {
-                            System.out.println("DataBlockParser::run query alert_list warn: " + queryString + " " + e77.getMessage());
+                        } catch (SQLException e7) {
+                            System.out.println("DataBlockParser::run query icao_list warn: " + queryString + " " + e7.getMessage());
                         }
 
                         if (exists == 0) {
-                            boolean aa = trk.getAlert();
-                            boolean ea = trk.getEmergency();
-                            boolean sa = trk.getSPI();
-                            boolean ja = trk.getHijack();
-                            boolean ca = trk.getCommOut();
-
-                            if (aa == true || ea == true || sa == true || ja == true || ca == true) {
-                                queryString = String.format("INSERT INTO modes.alert_list ("
-                                        + "icao_number,"
-                                        + "utcdetect,"
-                                        + "alert,"
-                                        + "emergency,"
-                                        + "spi,"
-                                        + "hijack,"
-                                        + "comm_out"
-                                        + ") VALUES ("
-                                        + "'%s',"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "%d)",
-                                        icao_number,
-                                        time,
-                                        (aa == true) ? 1 : 0,
-                                        (ea == true) ? 1 : 0,
-                                        (sa == true) ? 1 : 0,
-                                        (ja == true) ? 1 : 0,
-                                        (ca == true) ? 1 : 0);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e66) {
-                                    System.out.println("DataBlockParser::run query alert Error: " + queryString + " " + e66.getMessage());
-                                }
-                            }
-                        }
-
-                        /*
-                         * We now process registrations
-                         * Check for duplicates
-                         */
-                        String registration = trk.getRegistration();
-
-                        if (registration.equals("") == false) {
-                            queryString = String.format("SELECT count(*) AS RG FROM modes.icao_list "
-                                    + "WHERE icao_number='%s' AND registration='%s'",
-                                    icao_number,
-                                    registration);
-
-                            exists = 0;
-
-                            try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                                if (rs.next() == true) {
-                                    exists = rs.getInt("RG");
-                                }
-                            } catch (SQLException e7) {
-                                System.out.println("DataBlockParser::run query icao_list warn: " + queryString + " " + e7.getMessage());
-                            }
-
-                            if (exists == 0) {
-                                queryString = String.format("UPDATE modes.icao_list SET "
-                                        + "registration = '%s' WHERE icao_number = '%s'",
-                                        registration,
-                                        icao_number);
+                            queryString = String.format("UPDATE modes.icao_list SET "
+                                    + "registration = '%s' WHERE icao_number = '%s'",
+                                    registration,
+                                    icao_number);
 
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e77) {
-                                    System.out.println("DataBlockParser::run query icao_list warn: " + queryString + " " + e77.getMessage());
-                                }
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e77) {
+                                System.out.println("DataBlockParser::run query icao_list warn: " + queryString + " " + e77.getMessage());
                             }
                         }
+                    }
 
-                        /*
-                         * We now process callsigns
-                         * Check for duplicates
-                         */
-                        String callsign = trk.getCallsign();
-
-                        if (callsign.equals("") == false) {     // false = has callsign
-                            queryString = String.format("SELECT count(*) AS CS FROM modes.callsign_list"
-                                    + " WHERE callsign='%s' AND icao_number='%s'",
-                                    callsign,
-                                    icao_number);
+                    /*
+                     * We now process callsigns
+                     * Check for duplicates
+                     */
+                    String callsign = row.getCallsign();
 
-                            exists = 0;
+                    if (callsign.equals("") == false) {     // false = has callsign
+                        queryString = String.format("SELECT count(*) AS CS FROM modes.callsign_list"
+                                + " WHERE callsign='%s' AND icao_number='%s'",
+                                callsign,
+                                icao_number);
 
-                            try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                                if (rs.next() == true) {
-                                    exists = rs.getInt("CS");
-                                }
-                            } catch (SQLException e89) {
-                            }
+                        exists = 0;
 
-                            if (exists == 0) {
-                                queryString = String.format("INSERT INTO modes.callsign_list ("
-                                        + "callsign,"
-                                        + "icao_number,"
-                                        + "utcdetect"
-                                        + ") VALUES ("
-                                        + "'%s',"
-                                        + "'%s',"
-                                        + "%d)",
-                                        callsign,
-                                        icao_number,
-                                        time);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e90) {
-                                    System.out.println("DataBlockParser::run query callsign_list warn: " + queryString + " " + e90.getMessage());
-                                }
+                        try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                            if (rs.next() == true) {
+                                exists = rs.getInt("CS");
                             }
+                        } catch (SQLException e89) {
                         }
 
-                        /*
-                         * We now process radar/si
-                         */
-                        int iid = trk.getRadarIID();
-                        int sib = trk.getRadarSI() ? 1 : 0;
-
-                        /*
-                         * Don't fill database up with NULL's
-                         */
-                        if (iid != -99) {
-                            queryString = String.format("SELECT count(*) AS RSK FROM modes.radar_list "
-                                    + "WHERE icao_number='%s' "
-                                    + "AND radar_site=%d "
-                                    + "AND radar_iid=%d "
-                                    + "AND radar_SI=%d "
-                                    + "AND utcdetect=%d",
+                        if (exists == 0) {
+                            queryString = String.format("INSERT INTO modes.callsign_list ("
+                                    + "callsign,"
+                                    + "icao_number,"
+                                    + "utcdetect"
+                                    + ") VALUES ("
+                                    + "'%s',"
+                                    + "'%s',"
+                                    + "%d)",
+                                    callsign,
                                     icao_number,
-                                    radar_site,
-                                    iid,
-                                    sib,
                                     time);
 
-                            exists = 0;
-
-                            try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                                if (rs.next() == true) {
-                                    exists = rs.getInt("RSK");
-                                }
-                            } catch (SQLException e79) {
-                                System.out.println("DataBlockParser::run query radar_list warn: " + queryString + " " + e79.getMessage());
-                            }
-
-                            if (exists == 0) {
-                                queryString = String.format("INSERT INTO modes.radar_list ("
-                                        + "icao_number,"
-                                        + "utcdetect,"
-                                        + "radar_site,"
-                                        + "radar_iid,"
-                                        + "radar_si"
-                                        + ") VALUES ("
-                                        + "'%s',"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "NULLIF(%d, -99),"
-                                        + "%d)",
-                                        icao_number,
-                                        time,
-                                        radar_site,
-                                        iid,
-                                        sib);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e92) {
-                                    System.out.println("DataBlockParser::run query radar_list warn: " + queryString + " " + e92.getMessage());
-                                }
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e90) {
+                                System.out.println("DataBlockParser::run query callsign_list warn: " + queryString + " " + e90.getMessage());
                             }
                         }
+                    }
 
-                        /*
-                         * We now process speed/track
-                         *
-                         * Limit the rows to one per utcdetect
-                         */
-                        queryString = String.format("SELECT count(*) AS STS FROM modes.speed_list "
+                    /*
+                     * We now process radar/si
+                     */
+                    int iid = row.getRadarIID();
+                    int sib = row.getRadarSI() ? 1 : 0;
+
+                    /*
+                     * Don't fill database up with NULL's
+                     */
+                    if (iid != -99) {
+                        queryString = String.format("SELECT count(*) AS RSK FROM modes.radar_list "
                                 + "WHERE icao_number='%s' "
                                 + "AND radar_site=%d "
+                                + "AND radar_iid=%d "
+                                + "AND radar_SI=%d "
                                 + "AND utcdetect=%d",
                                 icao_number,
                                 radar_site,
+                                iid,
+                                sib,
                                 time);
 
                         exists = 0;
 
                         try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
                             if (rs.next() == true) {
-                                exists = rs.getInt("STS");
+                                exists = rs.getInt("RSK");
                             }
-                        } catch (SQLException e799) {
-                            System.out.println("DataBlockParser::run query speed_list warn: " + queryString + " " + e799.getMessage());
+                        } catch (SQLException e79) {
+                            System.out.println("DataBlockParser::run query radar_list warn: " + queryString + " " + e79.getMessage());
                         }
 
                         if (exists == 0) {
-                            float spd = trk.getGroundSpeed();
-                            float gt = trk.getGroundTrack();
-                            float cspd = trk.getComputedGroundSpeed();
-                            float cgt = trk.getComputedGroundTrack();
-
-                            /*
-                             * If no speed transmitted (null), skip the database write
-                             * unless computed values are available
-                             */
-                            boolean skip = false;
+                            queryString = String.format("INSERT INTO modes.radar_list ("
+                                    + "icao_number,"
+                                    + "utcdetect,"
+                                    + "radar_site,"
+                                    + "radar_iid,"
+                                    + "radar_si"
+                                    + ") VALUES ("
+                                    + "'%s',"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "NULLIF(%d, -99),"
+                                    + "%d)",
+                                    icao_number,
+                                    time,
+                                    radar_site,
+                                    iid,
+                                    sib);
 
-                            if ((spd == -999.0f) && (gt == -999.0f)) {
-                                if ((cspd == -999.0f) && (cgt == -999.0f)) {
-                                    skip = true;
-                                }
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e92) {
+                                System.out.println("DataBlockParser::run query radar_list warn: " + queryString + " " + e92.getMessage());
                             }
+                        }
+                    }
 
-                            if (skip == false) {
-                                if ((cspd == -999.0f) && (cgt == -999.0f)) {
-                                    cspd = cgt = 0.0f;   // write 0 rather than null
-                                }
-
-                                queryString = String.format("INSERT INTO modes.speed_list ("
-                                        + "icao_number,"
-                                        + "utcdetect,"
-                                        + "radar_site,"
-                                        + "groundSpeed,"
-                                        + "groundTrack,"
-                                        + "gsComputed,"
-                                        + "gtComputed"
-                                        + ") VALUES ("
-                                        + "'%s',"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "NULLIF(%.1f, -999.0),"
-                                        + "NULLIF(%.1f, -999.0),"
-                                        + "NULLIF(%.1f, -999.0),"
-                                        + "NULLIF(%.1f, -999.0))",
-                                        icao_number,
-                                        time,
-                                        radar_site,
-                                        spd,
-                                        gt,
-                                        cspd,
-                                        cgt);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e93) {
-                                    System.out.println("DataBlockParser::run query speed_list warn: " + queryString + " " + e93.getMessage());
-                                }
-                            }
+                    /*
+                     * We now process speed/track
+                     *
+                     * Limit the rows to one per utcdetect
+                     */
+                    queryString = String.format("SELECT count(*) AS STS FROM modes.speed_list "
+                            + "WHERE icao_number='%s' "
+                            + "AND radar_site=%d "
+                            + "AND utcdetect=%d",
+                            icao_number,
+                            radar_site,
+                            time);
+
+                    exists = 0;
+
+                    try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                        if (rs.next() == true) {
+                            exists = rs.getInt("STS");
                         }
+                    } catch (SQLException e799) {
+                        System.out.println("DataBlockParser::run query speed_list warn: " + queryString + " " + e799.getMessage());
+                    }
+
+                    if (exists == 0) {
+                        float spd = row.getGroundSpeed();
+                        float gt = row.getGroundTrack();
+                        float cspd = row.getComputedGroundSpeed();
+                        float cgt = row.getComputedGroundTrack();
 
                         /*
-                         * We now process altitude
-                         *
-                         * Limit the rows to one per utcdetect
+                         * If no speed transmitted (null), skip the database write
+                         * unless computed values are available
                          */
-                        queryString = String.format("SELECT count(*) AS ASK FROM modes.altitude_list "
-                                + "WHERE icao_number='%s' "
-                                + "AND radar_site=%d "
-                                + "AND utcdetect=%d",
-                                icao_number,
-                                radar_site,
-                                time);
-
-                        exists = 0;
+                        boolean skip = false;
 
-                        try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                            if (rs.next() == true) {
-                                exists = rs.getInt("ASK");
+                        if ((spd == -999.0f) && (gt == -999.0f)) {
+                            if ((cspd == -999.0f) && (cgt == -999.0f)) {
+                                skip = true;
                             }
-                        } catch (SQLException e788) {
-                            System.out.println("DataBlockParser::run query altitude_list warn: " + queryString + " " + e788.getMessage());
                         }
 
-                        if (exists == 0) {
-                            /*
-                             * Don't load the database up with
-                             * a bunch of null crap.
-                             */
-                            int alt = trk.getAltitude();
-
-                            if (alt != -9999) {
-                                queryString = String.format("INSERT INTO modes.altitude_list ("
-                                        + "icao_number,"
-                                        + "utcdetect,"
-                                        + "radar_site,"
-                                        + "altitude,"
-                                        + "altitude_df00,"
-                                        + "altitude_df04,"
-                                        + "altitude_df16,"
-                                        + "altitude_df17,"
-                                        + "altitude_df18,"
-                                        + "altitude_df20,"
-                                        + "verticalRate,"
-                                        + "verticalTrend,"
-                                        + "onground"
-                                        + ") VALUES ("
-                                        + "'%s',"
-                                        + "%d,"
-                                        + "%d,"
-                                        + "NULLIF(%d, -9999)," // alt
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999),"
-                                        + "NULLIF(%d, -9999)," // vert rate
-                                        + "%d,"
-                                        + "%d)",
-                                        icao_number,
-                                        time,
-                                        radar_site,
-                                        alt,
-                                        trk.getAltitudeDF00(),
-                                        trk.getAltitudeDF04(),
-                                        trk.getAltitudeDF16(),
-                                        trk.getAltitudeDF17(),
-                                        trk.getAltitudeDF18(),
-                                        trk.getAltitudeDF20(),
-                                        trk.getVerticalRate(),
-                                        trk.getVerticalTrend(),
-                                        ground);
-
-                                try (Statement query = db.createStatement()) {
-                                    query.executeUpdate(queryString);
-                                } catch (SQLException e94) {
-                                    System.out.println("DataBlockParser::run query altitude_list warn: " + queryString + " " + e94.getMessage());
-                                }
+                        if (skip == false) {
+                            if ((cspd == -999.0f) && (cgt == -999.0f)) {
+                                cspd = cgt = 0.0f;   // write 0 rather than null
                             }
-                        }
-
-                        /*
-                         * We now process amplitude
-                         *
-                         * Limit the rows to one per utcdetect
-                         */
-                        queryString = String.format("SELECT count(*) AS AMP FROM modes.amplitude_list "
-                                + "WHERE icao_number='%s' "
-                                + "AND radar_site=%d "
-                                + "AND utcdetect=%d",
-                                icao_number,
-                                radar_site,
-                                time);
 
-                        exists = 0;
+                            queryString = String.format("INSERT INTO modes.speed_list ("
+                                    + "icao_number,"
+                                    + "utcdetect,"
+                                    + "radar_site,"
+                                    + "groundSpeed,"
+                                    + "groundTrack,"
+                                    + "gsComputed,"
+                                    + "gtComputed"
+                                    + ") VALUES ("
+                                    + "'%s',"
+                                    + "%d,"
+                                    + "%d,"
+                                    + "NULLIF(%.1f, -999.0),"
+                                    + "NULLIF(%.1f, -999.0),"
+                                    + "NULLIF(%.1f, -999.0),"
+                                    + "NULLIF(%.1f, -999.0))",
+                                    icao_number,
+                                    time,
+                                    radar_site,
+                                    spd,
+                                    gt,
+                                    cspd,
+                                    cgt);
 
-                        try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
-                            if (rs.next() == true) {
-                                exists = rs.getInt("AMP");
+                            try (Statement query = db.createStatement()) {
+                                query.executeUpdate(queryString);
+                            } catch (SQLException e93) {
+                                System.out.println("DataBlockParser::run query speed_list warn: " + queryString + " " + e93.getMessage());
                             }
-                        } catch (SQLException e789) {
-                            System.out.println("DataBlockParser::run query amplitude_list warn: " + queryString + " " + e789.getMessage());
                         }
+                    }
 
-                        if (exists == 0) {
-                            queryString = String.format("INSERT INTO modes.amplitude_list ("
+                    /*
+                     * We now process altitude
+                     *
+                     * Limit the rows to one per utcdetect
+                     */
+                    queryString = String.format("SELECT count(*) AS ASK FROM modes.altitude_list "
+                            + "WHERE icao_number='%s' "
+                            + "AND radar_site=%d "
+                            + "AND utcdetect=%d",
+                            icao_number,
+                            radar_site,
+                            time);
+
+                    exists = 0;
+
+                    try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                        if (rs.next() == true) {
+                            exists = rs.getInt("ASK");
+                        }
+                    } catch (SQLException e788) {
+                        System.out.println("DataBlockParser::run query altitude_list warn: " + queryString + " " + e788.getMessage());
+                    }
+
+                    if (exists == 0) {
+                        /*
+                         * Don't load the database up with
+                         * a bunch of null crap.
+                         */
+                        int alt = row.getAltitude();
+
+                        if (alt != -9999) {
+                            queryString = String.format("INSERT INTO modes.altitude_list ("
                                     + "icao_number,"
                                     + "utcdetect,"
                                     + "radar_site,"
-                                    + "amplitude"
+                                    + "altitude,"
+                                    + "altitude_df00,"
+                                    + "altitude_df04,"
+                                    + "altitude_df16,"
+                                    + "altitude_df17,"
+                                    + "altitude_df18,"
+                                    + "altitude_df20,"
+                                    + "verticalRate,"
+                                    + "verticalTrend,"
+                                    + "onground"
                                     + ") VALUES ("
                                     + "'%s',"
                                     + "%d,"
                                     + "%d,"
+                                    + "NULLIF(%d, -9999)," // alt
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999),"
+                                    + "NULLIF(%d, -9999)," // vert rate
+                                    + "%d,"
                                     + "%d)",
                                     icao_number,
                                     time,
                                     radar_site,
-                                    trk.getAmplitude());
+                                    alt,
+                                    row.getAltitudeDF00(),
+                                    row.getAltitudeDF04(),
+                                    row.getAltitudeDF16(),
+                                    row.getAltitudeDF17(),
+                                    row.getAltitudeDF18(),
+                                    row.getAltitudeDF20(),
+                                    row.getVerticalRate(),
+                                    row.getVerticalTrend(),
+                                    ground);
 
                             try (Statement query = db.createStatement()) {
                                 query.executeUpdate(queryString);
-                            } catch (SQLException e91) {
-                                System.out.println("DataBlockParser::run query callsign_list warn: " + queryString + " " + e91.getMessage());
+                            } catch (SQLException e94) {
+                                System.out.println("DataBlockParser::run query altitude_list warn: " + queryString + " " + e94.getMessage());
                             }
                         }
+                    }
 
-                        /*
-                         * Database might get closed
-                         * on exit or error, so kill thread
-                         */
-                        if (EOF == true) {
-                            break;
+                    /*
+                     * We now process amplitude
+                     *
+                     * Limit the rows to one per utcdetect
+                     */
+                    queryString = String.format("SELECT count(*) AS AMP FROM modes.amplitude_list "
+                            + "WHERE icao_number='%s' "
+                            + "AND radar_site=%d "
+                            + "AND utcdetect=%d",
+                            icao_number,
+                            radar_site,
+                            time);
+
+                    exists = 0;
+
+                    try (Statement query = db.createStatement(); ResultSet rs = query.executeQuery(queryString)) {
+                        if (rs.next() == true) {
+                            exists = rs.getInt("AMP");
                         }
-                    } // if updated
-                } // for loop
-            } // if empty
+                    } catch (SQLException e789) {
+                        System.out.println("DataBlockParser::run query amplitude_list warn: " + queryString + " " + e789.getMessage());
+                    }
 
-            /*
-             * Everything is copied to the database now
-             * Simulate radar RPM
-             */
-            try {
-                Thread.sleep(radarscan);
-            } catch (InterruptedException e9) {
+                    if (exists == 0) {
+                        queryString = String.format("INSERT INTO modes.amplitude_list ("
+                                + "icao_number,"
+                                + "utcdetect,"
+                                + "radar_site,"
+                                + "amplitude"
+                                + ") VALUES ("
+                                + "'%s',"
+                                + "%d,"
+                                + "%d,"
+                                + "%d)",
+                                icao_number,
+                                time,
+                                radar_site,
+                                row.getAmplitude());
+
+                        try (Statement query = db.createStatement()) {
+                            query.executeUpdate(queryString);
+                        } catch (SQLException e91) {
+                            System.out.println("DataBlockParser::run query callsign_list warn: " + queryString + " " + e91.getMessage());
+                        }
+                    }
+                } // if updated
+            } // for loop
+        } // if empty
+    }
+
+    /*
+     * Simulate radar RPM
+     *
+     * This thread sleeps for the radar scan time, and then copies the
+     * updated tracks to the database. The decoder thread can wake it up
+     * early if it has a backlog.
+     */
+    private class RadarScanTask implements Runnable {
+
+        @Override
+        public void run() {
+            long next = System.nanoTime() + (radarscan * 1000000L);
+
+            while (scanEOF == false) {
+                long remaining = next - System.nanoTime();
+
+                if ((remaining > 0L) && (scanRequested == false)) {
+                    LockSupport.parkNanos(this, remaining);
+                    continue;
+                }
+
+                scanRequested = false;
+                pendingBlocks.set(0);
+                next = System.nanoTime() + (radarscan * 1000000L);
+
+                updateDatabase();
             }
-        } // while
+
+            updateDatabase();       // the database is closed after this
+        }
     }
 
     private void parseShortDetects() {
-        Collection<DataBlock> scan = shortDetects.values();
-        Iterator<DataBlock> iterator = scan.iterator();
+        Iterator<DataBlock> iterator = shortDetects.iterator();
         DataBlock dbk;
-        String data;
+        long data0;
+        long data1;
         String icao_number;
-        String squawk;
+        int squawk;
         int amplitude;
+        int radarSite;
         int altitude;
         int radarIID;
         boolean isOnGround;
@@ -1227,30 +1453,28 @@ public final class DataBlockParser extends Thread {
 
             dbk = iterator.next();
             amplitude = dbk.getSignalLevel();
-            data = dbk.getData();
+            radarSite = dbk.getRadarSite();
+            data0 = dbk.getData0();
+            data1 = dbk.getData1();
             detectTime = dbk.getUTCTime();
 
-            int df5 = ((Integer.parseInt(data.substring(0, 2), 16)) >>> 3) & 0x1F;
+            frame.set(false, data0, data1, detectTime);
+            int df5 = frame.df();
 
             /*
              * Most decoders pass a lot of garble packets, so we first check if
-             * DF11 or DF17/18 have validated the packet by calling hasTrack().
-             * If not, then it is garbled.
+             * DF11 or DF17/18 have validated the address, in the confirmed
+             * bitmap. If not, then it is garbled, and isn't decoded.
              *
              * Note: The DF code itself may be garbled
              */
             switch (df5) {
                 case 0:
-                    /*
-                     * Check data for correct length
-                     * A short packet needs 56 bits/7 bytes/14 nibbles
-                     */
-                    if (data.length() < 14) {
-                        System.out.println("DF00 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat00 df00 = new DownlinkFormat00(data, detectTime);
+                    df00.decode(frame);
                     icao_number = df00.getICAO();
 
                     try {
@@ -1258,7 +1482,7 @@ public final class DataBlockParser extends Thread {
                             altitude = df00.getAltitude();
                             isOnGround = df00.getIsOnGround();      // true if vs1 == 1
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackAltitudeDF00(icao_number, altitude, detectTime);
                             updateTrackOnGround(icao_number, isOnGround, detectTime);
                         }
@@ -1270,16 +1494,11 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 4:
-                    /*
-                     * Check data for correct length
-                     * A short packet needs 56 bits/7 bytes/14 nibbles
-                     */
-                    if (data.length() < 14) {
-                        System.out.println("DF04 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat04 df04 = new DownlinkFormat04(data, detectTime);
+                    df04.decode(frame);
                     icao_number = df04.getICAO();
 
                     try {
@@ -1290,7 +1509,7 @@ public final class DataBlockParser extends Thread {
                             spi = df04.getIsSPI();
                             emergency = df04.getIsEmergency();
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackAltitudeDF04(icao_number, altitude, detectTime);
                             updateTrackBoolean(icao_number, isOnGround, emergency, alert, spi, detectTime);
                         }
@@ -1302,27 +1521,22 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 5:
-                    /*
-                     * Check data for correct length
-                     * A short packet needs 56 bits/7 bytes/14 nibbles
-                     */
-                    if (data.length() < 14) {
-                        System.out.println("DF05 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat05 df05 = new DownlinkFormat05(data, detectTime);
+                    df05.decode(frame);
                     icao_number = df05.getICAO();
 
                     try {
                         if (hasTrack(icao_number) == true) {
-                            squawk = df05.getSquawk();
+                            squawk = df05.getSquawkCode();
                             isOnGround = df05.getIsOnGround();
                             alert = df05.getIsAlert();
                             spi = df05.getIsSPI();
                             emergency = df05.getIsEmergency();
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackSquawk(icao_number, squawk, detectTime);
                             updateTrackBoolean(icao_number, isOnGround, emergency, alert, spi, detectTime);
                         }
@@ -1334,19 +1548,12 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 11:
-                    /*
-                     * Check data for correct length
-                     * A short packet needs 56 bits/7 bytes/14 nibbles
-                     */
-                    if (data.length() < 14) {
-                        System.out.println("DF11 Error " + data.length() + " Hex Length");
-                        break;
-                    }
-
-                    DownlinkFormat11 df11 = new DownlinkFormat11(data, detectTime);
+                    df11.decode(frame);
                     icao_number = df11.getICAO();
 
                     if (df11.isValid()) {
+                        confirmed.add(frame.address(), detectTime);
+
                         /*
                          * See if Track already exists
                          */
@@ -1367,7 +1574,7 @@ public final class DataBlockParser extends Thread {
                             break;
                         }
 
-                        updateTrackAmplitude(icao_number, amplitude, detectTime);
+                        updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
 
                         radarIID = df11.getRadarIID();
                         si = df11.getRadarSI();
@@ -1378,7 +1585,7 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 default:    // output CSV
-                    System.err.printf("%d,%d,%s%n", df5, amplitude, data);
+                    System.err.printf("%d,%d,%s%n", df5, amplitude, dbk.getData());
             }
         }
     }
@@ -1386,11 +1593,13 @@ public final class DataBlockParser extends Thread {
     private void parseLongDetects() {
         Iterator<DataBlock> iterator = longDetects.iterator();
         DataBlock dbk;
-        String data;
+        long data0;
+        long data1;
         String icao_number;
-        String squawk;
+        int squawk;
         String callsign;
         int amplitude;
+        int radarSite;
         int altitude;
         int vSpeed;
         int category;
@@ -1408,33 +1617,31 @@ public final class DataBlockParser extends Thread {
    
         while (iterator.hasNext()) {
             
-            dbk = longDetects.remove(0);
+            dbk = iterator.next();
             amplitude = dbk.getSignalLevel();
-            data = dbk.getData();
+            radarSite = dbk.getRadarSite();
+            data0 = dbk.getData0();
+            data1 = dbk.getData1();
             detectTime = dbk.getUTCTime();
 
-            int df5 = ((Integer.parseInt(data.substring(0, 2), 16)) >>> 3) & 0x1F;
+            frame.set(true, data0, data1, detectTime);
+            int df5 = frame.df();
 
             /*
              * Most decoders pass a lot of garble packets, so we
              * first check if DF11 or DF17/18 have validated
-             * the packet by calling hasTrack().  If not, then
-             * it is garbled.
+             * the address, in the confirmed bitmap.  If not,
+             * then it is garbled, and isn't decoded.
              *
              * Note: The DF code itself may be garbled
              */
             switch (df5) {
                 case 16:
-                    /*
-                     * Check data for correct length
-                     * A long packet needs 112 bits/14 bytes/28 nibbles
-                     */
-                    if (data.length() < 28) {
-                        System.out.println("DF16 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat16 df16 = new DownlinkFormat16(data, detectTime);
+                    df16.decode(frame);
                     icao_number = df16.getICAO();
 
                     try {
@@ -1442,7 +1649,7 @@ public final class DataBlockParser extends Thread {
                             isOnGround = df16.getIsOnGround();
                             altitude = df16.getAltitude();
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackAltitudeDF16(icao_number, altitude, detectTime);
                             updateTrackOnGround(icao_number, isOnGround, detectTime);
 
@@ -1465,19 +1672,12 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 17:
-                    /*
-                     * Check data for correct length
-                     * A long packet needs 112 bits/14 bytes/28 nibbles
-                     */
-                    if (data.length() < 28) {
-                        System.out.println("DF17 Error " + data.length() + " Hex Length");
-                        break;
-                    }
-
-                    DownlinkFormat17 df17 = new DownlinkFormat17(data, detectTime, pm);
+                    df17.decode(frame);
                     icao_number = df17.getICAO();
 
                     if (df17.isValid() == true) { // CRC passed
+                        confirmed.add(frame.address(), detectTime);
+
                         /*
                          * See if Track already exists
                          */
@@ -1498,7 +1698,7 @@ public final class DataBlockParser extends Thread {
                             break;
                         }
 
-                        updateTrackAmplitude(icao_number, amplitude, detectTime);
+                        updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
 
                         switch (df17.getFormatType()) {
                             case 0:
@@ -1584,19 +1784,12 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 18:
-                    /*
-                     * Check data for correct length
-                     * A long packet needs 112 bits/14 bytes/28 nibbles
-                     */
-                    if (data.length() < 28) {
-                        System.out.println("DF18 Error " + data.length() + " Hex Length");
-                        break;
-                    }
-
-                    DownlinkFormat18 df18 = new DownlinkFormat18(data, detectTime, pm);
+                    df18.decode(frame);
                     icao_number = df18.getICAO();
 
                     if (df18.isValid() == true) { // Passed CRC
+                        confirmed.add(frame.address(), detectTime);
+
                         /*
                          * See if Track already exists
                          */
@@ -1616,7 +1809,7 @@ public final class DataBlockParser extends Thread {
                             System.err.println(np.getMessage());
                         }
 
-                        updateTrackAmplitude(icao_number, amplitude, detectTime);
+                        updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
 
                         switch (df18.getFormatType()) {
                             case 0:
@@ -1703,16 +1896,11 @@ public final class DataBlockParser extends Thread {
                 case 19:  // Military Squitters
                    break; // Get a lot of these, but no way to decode
                 case 20:
-                    /*
-                     * Check data for correct length
-                     * A long packet needs 112 bits/14 bytes/28 nibbles
-                     */
-                    if (data.length() < 28) {
-                        System.out.println("DF20 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat20 df20 = new DownlinkFormat20(data, detectTime);
+                    df20.decode(frame);
                     icao_number = df20.getICAO();
 
                     try {
@@ -1723,7 +1911,7 @@ public final class DataBlockParser extends Thread {
                             alert = df20.getIsAlert();
                             spi = df20.getIsSPI();
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackAltitudeDF20(icao_number, altitude, detectTime);
                             updateTrackBoolean(icao_number, isOnGround, emergency, alert, spi, detectTime);
 
@@ -1751,27 +1939,22 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 case 21:
-                    /*
-                     * Check data for correct length
-                     * A long packet needs 112 bits/14 bytes/28 nibbles
-                     */
-                    if (data.length() < 28) {
-                        System.out.println("DF21 Error " + data.length() + " Hex Length");
-                        break;
+                    if (confirmed.contains(frame.icao()) == false) {
+                        break;      // garbled, or not heard on DF11/17/18
                     }
 
-                    DownlinkFormat21 df21 = new DownlinkFormat21(data, detectTime);
+                    df21.decode(frame);
                     icao_number = df21.getICAO();
 
                     try {
                         if (hasTrack(icao_number)) {
-                            squawk = df21.getSquawk();
+                            squawk = df21.getSquawkCode();
                             isOnGround = df21.getIsOnGround();
                             emergency = df21.getIsEmergency();
                             alert = df21.getIsAlert();
                             spi = df21.getIsSPI();
 
-                            updateTrackAmplitude(icao_number, amplitude, detectTime);
+                            updateTrackAmplitude(icao_number, amplitude, radarSite, detectTime);
                             updateTrackSquawk(icao_number, squawk, detectTime);
                             updateTrackBoolean(icao_number, isOnGround, emergency, alert, spi, detectTime);
 
@@ -1801,8 +1984,10 @@ public final class DataBlockParser extends Thread {
                     }
                     break;
                 default:    // output CSV
-                    System.err.printf("%d,%d,%s%n", df5, amplitude, data);
+                    System.err.printf("%d,%d,%s%n", df5, amplitude, dbk.getData());
             }
         }
+
+        longDetects.clear();
     }
 }
@@ -7,36 +7,36 @@ package decoder;
  * This is the DownlinkFormat00 object
  *
  * DF00 is used with TCAS/ACAS to exchange altitude information
+ *
+ * One object is reused for every DF00, and decode() replaces all of
+ * the fields from the frame.
  */
 public final class DownlinkFormat00 implements IDF00 {
 
-    private final CRC crc;
-    private final Altitude alt;
     private int altitude;
-    private final int ri4;
-    private final long timestamp;
+    private int ri4;
+    private long timestamp;
     private String icao;
     private boolean crosslinkCapable;
-    private final boolean isOnGround;
-    private final boolean cc1;
+    private boolean isOnGround;
+    private boolean cc1;
+
+    public DownlinkFormat00() {
+        icao = "";
+        altitude = -9999;
+    }
 
     /**
      * Decode the DF00 packets
      *
-     * @param raw56 a string of the raw 14 hex packet
-     * @param time a long representing the UTC time of detection
+     * @param f a ModeSFrame view of the raw 56-bit packet
      */
-    public DownlinkFormat00(String raw56, long time) {
-        crc = new CRC();
-        alt = new Altitude();
+    public void decode(ModeSFrame f) {
+        timestamp = f.getTime();
+        crosslinkCapable = false;
 
-        timestamp = time;
-        icao = "";
-        altitude = -9999;
+        altitude = Altitude.decodeAC13(f.altitudeCode());     // has the Metre Bit
 
-        // remove AP hex
-        altitude = alt.decodeAltitude(raw56.substring(0, 8), true);    // true == has the Metre Bit
-        
         /*
          * By running the first 32 bits into the CRC, and then XOR the last 24
          * bits, you arrive at the true 6 hex digits Aircraft ID
@@ -44,20 +44,18 @@ public final class DownlinkFormat00 implements IDF00 {
          * This is effected by interference and garbled bits, so you have to
          * validate this ACID with the list of DF11,DF17, and DF18 packets.
          */
-        icao = crc.crcCompute(raw56);
+        icao = f.icaoHex();
 
         /*
-         * The second hex digit is the vs1 and cc1 bits 0XX0
+         * Bits 6 and 7 are the vs1 and cc1 bits
          */
-        int tmp = Integer.parseInt(raw56.substring(1, 2), 16);
-        isOnGround = ((tmp & 0x04) == 0x04);             // true if vs1 == 1
-        cc1 = ((tmp & 0x02) == 0x02);                    // true if cc1 == 1
+        isOnGround = f.vs();         // true if vs1 == 1
+        cc1 = f.cc();                // true if cc1 == 1
 
         /*
-         * The 4th and 5th hex digits contain the ri4 bits 0XXX X000
+         * Bits 14 - 17 are the ri4 bits
          */
-        tmp = Integer.parseInt(raw56.substring(3, 5), 16);
-        ri4 = (tmp >>> 3) & 0x0F;
+        ri4 = f.ri();
     }
 
     @Override
@@ -7,12 +7,12 @@ package decoder;
  * This is the DownlinkFormat04 object
  *
  * DF04 is used to reply to ground interrogations with altitude information
+ *
+ * One object is reused for every DF04, and decode() replaces all of
+ * the fields from the frame.
  */
 public final class DownlinkFormat04 implements IDF04 {
 
-    private Altitude alt;
-    private CRC crc;
-    //
     private int altitude;
     private int fs3;
     private int dr5;
@@ -26,21 +26,20 @@ public final class DownlinkFormat04 implements IDF04 {
     private boolean isSPI;
     private boolean isEmergency;
 
+    public DownlinkFormat04() {
+        icao = "";
+        altitude = -9999;
+    }
+
     /**
      * Decode the DF04 packets
      *
-     * @param raw56 a string of the raw 56-bit packet in hexadecimal
-     * @param time a long representing the UTC time of detection
+     * @param f a ModeSFrame view of the raw 56-bit packet
      */
-    public DownlinkFormat04(String raw56, long time) {
-        alt = new Altitude();
-        crc = new CRC();
+    public void decode(ModeSFrame f) {
+        timestamp = f.getTime();
 
-        timestamp = time;
-        icao = "";
-        altitude = -9999;
-        
-        altitude = alt.decodeAltitude(raw56.substring(0, 8), true);    // true == has the Metre Bit
+        altitude = Altitude.decodeAC13(f.altitudeCode());     // has the Metre Bit
 
         /*
          * By running the first 32 bits into the CRC, and then XOR the last 24
@@ -49,11 +48,11 @@ public final class DownlinkFormat04 implements IDF04 {
          * This is effected by interference and garbled bits, so you have to
          * validate this ACID with the list of DF11,DF17, and DF18 packets.
          */
-        icao = crc.crcCompute(raw56);
+        icao = f.icaoHex();
 
-        fs3 = Integer.parseInt(raw56.substring(1, 2), 16) & 0x07;
-        dr5 = ((Integer.parseInt(raw56.substring(2, 4), 16) & 0xF8) >>> 3) & 0x1F; // DR 5 bits
-        um6 = (Integer.parseInt(raw56.substring(3, 5), 16) >> 1) & 0x3F;    // UM 6 bits
+        fs3 = f.fs();
+        dr5 = f.dr();    // DR 5 bits
+        um6 = f.um();    // UM 6 bits
 
         ids2 = um6 & 0x3;
         iis4 = (um6 >>> 2) & 0xF;
@@ -7,12 +7,13 @@ package decoder;
  * This is the DownlinkFormat05 object
  *
  * DF05 is used to reply to ground interrogations with squawk information
+ *
+ * One object is reused for every DF05, and decode() replaces all of
+ * the fields from the frame.
  */
 public final class DownlinkFormat05 implements IDF05 {
 
-    private CRC crc;
-    private Squawk sqk;
-    private String squawk;
+    private int squawk;
     private int fs3;
     private int dr5;
     private int um6;
@@ -25,21 +26,20 @@ public final class DownlinkFormat05 implements IDF05 {
     private boolean isSPI;
     private boolean isEmergency;
 
+    public DownlinkFormat05() {
+        icao = "";
+        squawk = Squawk.NONE;
+    }
+
     /**
      * Decode the DF05 packets
      *
-     * @param raw56 a string of the raw 56-bit packet in hexadecimal
-     * @param time a long representing the UTC time of detection
+     * @param f a ModeSFrame view of the raw 56-bit packet
      */
-    public DownlinkFormat05(String raw56, long time) {
-        crc = new CRC();
-        sqk = new Squawk();
+    public void decode(ModeSFrame f) {
+        timestamp = f.getTime();
 
-        timestamp = time;
-        icao = "";
-        squawk = "";
-
-        squawk = sqk.decodeSquawk(raw56.substring(0, 8));
+        squawk = Squawk.decodeCode(f.identityCode());
 
         /*
          * By running the first 32 bits into the CRC, and then XOR the last 24
@@ -48,11 +48,11 @@ public final class DownlinkFormat05 implements IDF05 {
          * This is effected by interference and garbled bits, so you have to
          * validate this ACID with the list of DF11,DF17, and DF18 packets.
          */
-        icao = crc.crcCompute(raw56);
+        icao = f.icaoHex();
 
-        fs3 = Integer.parseInt(raw56.substring(1, 2), 16) & 0x07;
-        dr5 = ((Integer.parseInt(raw56.substring(2, 4), 16) & 0xF8) >>> 3) & 0x1F; // DR 5 bits
-        um6 = (Integer.parseInt(raw56.substring(3, 5), 16) >> 1) & 0x3F;    // UM 6 bits
+        fs3 = f.fs();
+        dr5 = f.dr();    // DR 5 bits
+        um6 = f.um();    // UM 6 bits
         
         ids2 = um6 & 0x3;
         iis4 = (um6 >>> 2) & 0xF;
@@ -127,6 +127,11 @@ public final class DownlinkFormat05 implements IDF05 {
 
     @Override
     public String getSquawk() {
+        return Squawk.toString(squawk);
+    }
+
+    @Override
+    public int getSquawkCode() {
         return squawk;
     }
 
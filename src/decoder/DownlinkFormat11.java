@@ -7,34 +7,36 @@ package decoder;
  * This is the DownlinkFormat11 object
  *
  * DownlinkFormat11 is used as a Beacon AllCall transmission
+ *
+ * One object is reused for every DF11, and decode() replaces all of
+ * the fields from the frame.
  */
 public final class DownlinkFormat11 implements IDF11 {
 
-    private final CRC crc;
     private int radarIID;
     private int pi7;
     private int cl3;
-    private final int ca3;
-    private final String raw56;
+    private int ca3;
     private String icao;
-    private final String crcValue;
-    private final long timestamp;
+    private int crcValue;
+    private long timestamp;
     private boolean isSIcode;
     private boolean isOnGround;
-    private final boolean valid;
+    private boolean valid;
+
+    public DownlinkFormat11() {
+        icao = "";
+    }
 
     /**
      * Decode the DF11 Packets
      *
-     * @param raw a string of the raw 56-bit packet in hexadecimal
-     * @param time a long representing the UTC time of detection
+     * @param f a ModeSFrame view of the raw 56-bit packet
      */
-    public DownlinkFormat11(String raw, long time) {
-        crc = new CRC();
-        raw56 = raw;
-        timestamp = time;
+    public void decode(ModeSFrame f) {
+        timestamp = f.getTime();
         isSIcode = false;
-        icao = "";
+        radarIID = pi7 = cl3 = 0;
 
         /*
          * First we determine if this is a broadcast squitter from an aircraft,
@@ -45,11 +47,11 @@ public final class DownlinkFormat11 implements IDF11 {
          * The CL code (bits 50-52) come first and is 3 bits, then comes the IC
          * code (53-56) which is 4 bits.
          */
-        icao = raw56.substring(2, 8);
-        crcValue = crc.crcCompute(raw56); // 7 bytes 14 hex nibbles
+        icao = f.icaoHex();
+        crcValue = f.syndrome(); // 7 bytes 56 bits
 
         isOnGround = false;
-        ca3 = Integer.parseInt(raw56.substring(1, 2), 16) & 0x07;
+        ca3 = f.ca();
         
         if (ca3 == 4) {             // bunch of options I am not dealing with
             isOnGround = true;
@@ -59,17 +61,17 @@ public final class DownlinkFormat11 implements IDF11 {
          * If the PI parity comes back 000000 this means we probably have a
          * squitter, and the parity CRC is good.
          */
-        if (crcValue.equals("000000")) {
+        if (crcValue == 0) {
             radarIID = 0;
             isSIcode = false;
 
             valid = true;
-        } else if (crcValue.substring(0, 4).equals("0000")) {
+        } else if ((crcValue & 0xFFFF00) == 0) {
             /*
              * IID or SI overlayed returns
              */
 
-            pi7 = Integer.parseInt(crcValue.substring(4), 16);
+            pi7 = crcValue & 0xFF;
             radarIID = pi7 & 0x0F;
             cl3 = (pi7 >>> 4) & 0x07;
 
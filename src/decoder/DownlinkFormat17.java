@@ -8,10 +8,6 @@ package decoder;
  */
 public final class DownlinkFormat17 implements IDF17 {
 
-    private final Altitude alt;
-    private final CRC crc;
-    private final TrueHeading thead;
-    private final Callsign call;
     private final PositionManager pm;
     private int altitude;
     private int ca3;
@@ -31,7 +27,7 @@ public final class DownlinkFormat17 implements IDF17 {
     private long data56;
     private int lat17;
     private int lon17;
-    private final long timestamp;
+    private long timestamp;
     //
     private String callsign;
     private String vspeedSource;
@@ -57,43 +53,63 @@ public final class DownlinkFormat17 implements IDF17 {
     private float trueHeading;
     private float magneticHeading;
     //
-    private final String crcValue;
+    private int crcValue;
 
     /**
-     * Decode the DF17 packets
+     * One object decodes every DF17
      *
-     * @param raw112 a string of the raw 112-bit packet in hexadecimal
-     * @param time a long representing the UTC time of detection
      * @param p a PositionManager object
      */
-    public DownlinkFormat17(String raw112, long time, PositionManager p) {
-        alt = new Altitude();
-        crc = new CRC();
-        thead = new TrueHeading();
-        call = new Callsign();
-
+    public DownlinkFormat17(PositionManager p) {
         pm = p;
-        timestamp = time;
         icao = "";
-        callsign = "";
+        reset();
+    }
+
+    /*
+     * Clear what the last frame left behind
+     */
+    private void reset() {
         altitude = -9999;
+        ca3 = 0;
+        sss2 = alt12 = formatType5 = subType3 = nucp = categoryNumeric = 0;
+        vrsource = vSpeed = sign = diff = baroDiff = capability = 0;
+        data56 = 0L;
+        lat17 = lon17 = 0;
+        callsign = "";
+        vspeedSource = "";
+        singleAntenna = timeSync = qBit1 = isOnGround = isAlert = isSPI = false;
+        isEmergency = magneticFlag = tasFlag = supersonic = valid = cpr1 = false;
+        airspeed = indicatedAirspeed = trueAirspeed = 0.0f;
+        groundSpeed = trueHeading = magneticHeading = 0.0f;
+    }
+
+    /**
+     * Decode the DF17 packets
+     *
+     * @param f a ModeSFrame view of the raw 112-bit packet
+     */
+    public void decode(ModeSFrame f) {
+        reset();
+
+        timestamp = f.getTime();
 
         /*
          * By running the first 88 bits into the CRC, and then XOR the last 24
          * bits, you should get 000000.
          *
          * This is effected by interference and garbled bits, so you have to
-         * validate this ACID with the ACID in hex digits 2 through 7.
+         * validate this ACID with the ACID in bits 9 through 32.
          */
-        icao = raw112.substring(2, 8);
-        crcValue = crc.crcCompute(raw112);
+        icao = f.icaoHex();
+        crcValue = f.syndrome();
         valid = false;
 
-        if (crcValue.equals("000000")) {
-            decodeExtended(raw112.substring(8)); // starting at bit 33 (8 x 4 hex) of packet
+        if (crcValue == 0) {
+            decodeExtended(f.me()); // starting at bit 33 of packet
 
             isOnGround = false;
-            ca3 = Integer.parseInt(raw112.substring(1, 2), 16) & 0x07;
+            ca3 = f.ca();
 
             if (ca3 == 4) {             // bunch of options I am not dealing with
                 isOnGround = true;
@@ -108,27 +124,16 @@ public final class DownlinkFormat17 implements IDF17 {
      * There is also the 24-Bits on the end for Parity (PI) field (6 Hex)
      * That I don't deal with
      */
-    private void decodeExtended(String raw56) {
-        int[] dataBytes = new int[7];
-        
-        int loop = 0;
-        for (int j = 0; j < 14; j += 2) {
-            dataBytes[loop++] = Integer.parseInt(raw56.substring(j, j + 2), 16);    // ME
-        }
-        
-        /*
-         * I would have liked to use Long.parseLong() But Java wouldn't parse it
-         * without numberformat errors
-         */
-        data56 = ((long) dataBytes[0] << 48)
-                | ((long) dataBytes[1] << 40)
-                | ((long) dataBytes[2] << 32)
-                | ((long) dataBytes[3] << 24)
-                | ((long) dataBytes[4] << 16)
-                | ((long) dataBytes[5] << 8)
-                | ((long) dataBytes[6]);
-
-        formatType5 = (dataBytes[0] >>> 3) & 0x1F;           // 5 bits
+    private void decodeExtended(long me56) {
+        int byte0 = (int) (me56 >>> 48) & 0xFF;         // ME bytes
+        int byte1 = (int) (me56 >>> 40) & 0xFF;
+        int byte2 = (int) (me56 >>> 32) & 0xFF;
+        int byte3 = (int) (me56 >>> 24) & 0xFF;
+        int byte4 = (int) (me56 >>> 16) & 0xFF;
+
+        data56 = me56;
+
+        formatType5 = (byte0 >>> 3) & 0x1F;           // 5 bits
         magneticFlag = false;
 
         switch (formatType5) {
@@ -182,8 +187,8 @@ public final class DownlinkFormat17 implements IDF17 {
             case 4: // Cat A
 
                 // Identification and Category Type
-                categoryNumeric = dataBytes[0] & 0x7;
-                callsign = call.callsignDecode(data56);
+                categoryNumeric = byte0 & 0x7;
+                callsign = Callsign.callsignDecode(data56);
                 break;
             case 5:
             case 6:
@@ -192,9 +197,9 @@ public final class DownlinkFormat17 implements IDF17 {
                 // Surface Position
 
                 isOnGround = true;
-                timeSync = ((dataBytes[2] & 0x08) == 0x08);
+                timeSync = ((byte2 & 0x08) == 0x08);
 
-                cpr1 = (((dataBytes[2] >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
+                cpr1 = (((byte2 >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
                 lat17 = (int) (((data56 & 0x03FFFE0000L) >>> 17) & 0x01FFFFL);
                 lon17 = (int) (data56 & 0x01FFFFL);
                
@@ -214,18 +219,19 @@ public final class DownlinkFormat17 implements IDF17 {
                 // Airborne Position with barometric altitude
                 isOnGround = false;
 
-                altitude = alt.decodeAltitude(raw56.substring(0, 8), false); // false == no Metre bit
-                qBit1 = alt.getQBit();
+                alt12 = (int) (me56 >>> 36) & 0xFFF;
+                altitude = Altitude.decodeAC12(alt12); // no Metre bit
+                qBit1 = ((alt12 & 0x10) == 0x10);
 
-                sss2 = (dataBytes[0] >>> 1) & 0x03;                 // Surveillance Status Subfield
+                sss2 = (byte0 >>> 1) & 0x03;                 // Surveillance Status Subfield
                 isEmergency = (sss2 == 1);
                 isAlert = (sss2 == 2);
                 isSPI = (sss2 == 3);
 
-                singleAntenna = ((dataBytes[0] & 0x01) == 1);
-                timeSync = ((dataBytes[2] & 0x08) == 0x08); // not used
+                singleAntenna = ((byte0 & 0x01) == 1);
+                timeSync = ((byte2 & 0x08) == 0x08); // not used
 
-                cpr1 = (((dataBytes[2] >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
+                cpr1 = (((byte2 >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
                 lat17 = (int) (((data56 & 0x03FFFE0000L) >>> 17) & 0x01FFFFL);
                 lon17 = (int) (data56 & 0x01FFFFL);
 
@@ -235,24 +241,24 @@ public final class DownlinkFormat17 implements IDF17 {
                 // Airborne Velocity
                 // Format Type 19 has SubTypes
 
-                subType3 = dataBytes[0] & 0x07;
+                subType3 = byte0 & 0x07;
 
                 switch (subType3) {
                     case 1:     // gndspeed normal lsb=1knot
                     case 2:     // gndspeed supersonic lsb=4knots
                         
-                        int dire_w = ((dataBytes[1] & 0x04) >>> 2); // 0=east, 1=west
-                        int velocitye_w = (((dataBytes[1] & 0x03) << 8) | (dataBytes[2])) - 1;
+                        int dire_w = ((byte1 & 0x04) >>> 2); // 0=east, 1=west
+                        int velocitye_w = (((byte1 & 0x03) << 8) | (byte2)) - 1;
 
-                        int dirn_s = ((dataBytes[3] & 0x80) >>> 7); // 0=north, 1=south
-                        int velocityn_s = ((((dataBytes[3] & 0x7f) << 8) | (dataBytes[4] & 0xE0)) >>> 5) - 1;
+                        int dirn_s = ((byte3 & 0x80) >>> 7); // 0=north, 1=south
+                        int velocityn_s = ((((byte3 & 0x7f) << 8) | (byte4 & 0xE0)) >>> 5) - 1;
 
                         if (velocityn_s == -1 || velocitye_w == -1) {
                             groundSpeed = -1.0f;    // invalid
                             trueHeading = -1.0f;      // invalid
                         } else {
 
-                            trueHeading = thead.trueHeading(velocityn_s, velocitye_w, dirn_s, dire_w);
+                            trueHeading = TrueHeading.trueHeading(velocityn_s, velocitye_w, dirn_s, dire_w);
 
                             if (subType3 == 2) {
                                 velocitye_w *= 4;
@@ -296,11 +302,11 @@ public final class DownlinkFormat17 implements IDF17 {
                     case 4: // supersonic
 
                         // Decode Heading, Velocity over ground is not known
-                        if ((dataBytes[1] & 0x04) == 0x04) {
+                        if ((byte1 & 0x04) == 0x04) {
                             magneticFlag = true;
-                            magneticHeading = (((dataBytes[1] & 0x03) << 8) | dataBytes[2]) * 360.0f / 1024.0f;
-                            tasFlag = ((dataBytes[3] & 0x80) == 0x80);
-                            airspeed = (((dataBytes[3] & 0x7f) << 3) | ((dataBytes[4] & 0xE0) >>> 3)) - 1;
+                            magneticHeading = (((byte1 & 0x03) << 8) | byte2) * 360.0f / 1024.0f;
+                            tasFlag = ((byte3 & 0x80) == 0x80);
+                            airspeed = (((byte3 & 0x7f) << 3) | ((byte4 & 0xE0) >>> 3)) - 1;
 
                             supersonic = false;
 
@@ -8,10 +8,6 @@ package decoder;
  */
 public final class DownlinkFormat18 implements IDF18 {
 
-    private final Altitude alt;
-    private final CRC crc;
-    private final TrueHeading thead;
-    private final Callsign call;
     private final PositionManager pm;
     private int altitude;
     private int cf3;
@@ -32,7 +28,7 @@ public final class DownlinkFormat18 implements IDF18 {
     private long data56;
     private int lat17;
     private int lon17;
-    private final long timestamp;
+    private long timestamp;
     //
     private String callsign;
     private String vspeedSource;
@@ -58,40 +54,60 @@ public final class DownlinkFormat18 implements IDF18 {
     private float trueHeading;
     private float magneticHeading;
     //
-    private final String crcValue;
+    private int crcValue;
 
     /**
-     * Decode the DF18 packets
+     * One object decodes every DF18
      *
-     * @param raw112 a string of the raw 112-bit packet in hex
-     * @param time a long representing the UTC time of detection
      * @param p a PositionManager object
      */
-    public DownlinkFormat18(String raw112, long time, PositionManager p) {
-        alt = new Altitude();
-        crc = new CRC();
-        thead = new TrueHeading();
-        call = new Callsign();
-
+    public DownlinkFormat18(PositionManager p) {
+        pm = p;
         icao = "";
-        callsign = "";
+        reset();
+    }
+
+    /*
+     * Clear what the last frame left behind
+     */
+    private void reset() {
         altitude = -9999;
+        cf3 = imf = 0;
+        sss2 = alt12 = formatType5 = subType3 = nucp = categoryNumeric = 0;
+        vrsource = vSpeed = sign = diff = baroDiff = capability = 0;
+        data56 = 0L;
+        lat17 = lon17 = 0;
+        callsign = "";
+        vspeedSource = "";
+        singleAntenna = timeSync = qBit1 = isOnGround = isAlert = isSPI = false;
+        isEmergency = magneticFlag = tasFlag = supersonic = valid = cpr1 = false;
+        airspeed = indicatedAirspeed = trueAirspeed = 0.0f;
+        groundSpeed = trueHeading = magneticHeading = 0.0f;
+    }
 
-        pm = p;
-        timestamp = time;
+    /**
+     * Decode the DF18 packets
+     *
+     * @param f a ModeSFrame view of the raw 112-bit packet
+     */
+    public void decode(ModeSFrame f) {
+        reset();
+
+        timestamp = f.getTime();
 
         /*
          * By running the first 88 bits into the CRC, and then XOR the last 24
          * bits, you should get 000000.
          *
          * This is effected by interference and garbled bits, so you have to
-         * validate this ACID with the ACID in hex digits 2 through 7.
+         * validate this ACID with the ACID in bits 9 through 32.
          */
-        icao = raw112.substring(2, 8);
-        crcValue = crc.crcCompute(raw112);  // 14 bytes, 28 hex nibbles
+        icao = f.icaoHex();
+        long me56 = f.me();         // ME bits 33 - 88
+        crcValue = f.syndrome();    // 14 bytes, 28 hex nibbles
         valid = false;
 
-        if (crcValue.equals("000000")) {
+        if (crcValue == 0) {
             valid = true;
             isOnGround = false;
             /*
@@ -136,7 +152,7 @@ public final class DownlinkFormat18 implements IDF18 {
              * 7         N/A                      Reserved
              */
 
-            cf3 = Integer.parseInt(raw112.substring(1, 2), 16) & 0x07;  // bits 6-8
+            cf3 = f.ca();            // bits 6-8
 
             /*
              * IMF equal to ZERO (0) shall indicate that the TIS-B data is
@@ -144,7 +160,7 @@ public final class DownlinkFormat18 implements IDF18 {
              * indicates that the TIS-B data is identified by a Mode A Code.
              * A Mode A Code of all ZEROs indicates a primary radar target.
              */
-            imf = Integer.parseInt(raw112.substring(9, 10), 16) & 0x01; // ME bit 8
+            imf = (int) (me56 >>> 48) & 0x01; // ME bit 8
 
             if (cf3 == 1) {
                 isOnGround = true;
@@ -153,30 +169,23 @@ public final class DownlinkFormat18 implements IDF18 {
             /*
              * Decode the ME field based on the decoded CF3/IMF value
              */
-            decodeExtended(raw112.substring(8)); // starting at bit 33 (8 x 4 hex)
+            decodeExtended(me56); // starting at bit 33
         }
     }
 
     /*
      * This method decodes the 56 bit Message Extended (ME) field
      */
-    private void decodeExtended(String raw56) {
-        int[] dataBytes = new int[7];
-
-        int loop = 0;
-        for (int j = 0; j < 14; j += 2) {
-            dataBytes[loop++] = Integer.parseInt(raw56.substring(j, j + 2), 16);
-        }
+    private void decodeExtended(long me56) {
+        int byte0 = (int) (me56 >>> 48) & 0xFF;         // ME bytes
+        int byte1 = (int) (me56 >>> 40) & 0xFF;
+        int byte2 = (int) (me56 >>> 32) & 0xFF;
+        int byte3 = (int) (me56 >>> 24) & 0xFF;
+        int byte4 = (int) (me56 >>> 16) & 0xFF;
 
-        data56 = ((long) dataBytes[0] << 48)
-                | ((long) dataBytes[1] << 40)
-                | ((long) dataBytes[2] << 32)
-                | ((long) dataBytes[3] << 24)
-                | ((long) dataBytes[4] << 16)
-                | ((long) dataBytes[5] << 8)
-                | ((long) dataBytes[6]);
+        data56 = me56;
 
-        formatType5 = (dataBytes[0] >>> 3) & 0x1F;           // 5 bits
+        formatType5 = (byte0 >>> 3) & 0x1F;           // 5 bits
 
         if (cf3 == 6 || cf3 == 2) {
             magneticFlag = false;
@@ -232,8 +241,8 @@ public final class DownlinkFormat18 implements IDF18 {
                 case 4: // Cat A
                     // Identification and Category Type
 
-                    categoryNumeric = dataBytes[0] & 0x7;
-                    callsign = call.callsignDecode(data56);
+                    categoryNumeric = byte0 & 0x7;
+                    callsign = Callsign.callsignDecode(data56);
                     break;
                 case 5:
                 case 6:
@@ -242,9 +251,9 @@ public final class DownlinkFormat18 implements IDF18 {
                     // Surface Position
 
                     isOnGround = true;
-                    timeSync = ((dataBytes[2] & 0x08) == 0x08);
+                    timeSync = ((byte2 & 0x08) == 0x08);
 
-                    cpr1 = (((dataBytes[2] >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
+                    cpr1 = (((byte2 >>> 2) & 0x01) == 1);// 1 = ODD (true), 0 = EVEN (false)
                     lat17 = (int) (((data56 & 0x03FFFE0000L) >>> 17) & 0x01FFFFL);
                     lon17 = (int) (data56 & 0x01FFFFL);
 
@@ -264,18 +273,19 @@ public final class DownlinkFormat18 implements IDF18 {
                     // Airborne Position with barometric altitude
                     isOnGround = false;
 
-                    altitude = alt.decodeAltitude(raw56.substring(0, 8), false);       // false == no Metre bit
-                    qBit1 = alt.getQBit();
+                    alt12 = (int) (me56 >>> 36) & 0xFFF;
+                    altitude = Altitude.decodeAC12(alt12);       // no Metre bit
+                    qBit1 = ((alt12 & 0x10) == 0x10);
 
-                    sss2 = (dataBytes[0] >>> 1) & 0x03;                 // Surveillance Status Subfield
+                    sss2 = (byte0 >>> 1) & 0x03;                 // Surveillance Status Subfield
                     isEmergency = (sss2 == 1);
                     isAlert = (sss2 == 2);
                     isSPI = (sss2 == 3);
 
-                    singleAntenna = ((dataBytes[0] & 0x01) == 1);
-                    timeSync = ((dataBytes[2] & 0x08) == 0x08); // not used
+                    singleAntenna = ((byte0 & 0x01) == 1);
+                    timeSync = ((byte2 & 0x08) == 0x08); // not used
 
-                    cpr1 = (((dataBytes[2] >>> 2) & 0x01) == 1);   // 1 = ODD (true), 0 = EVEN (false)
+                    cpr1 = (((byte2 >>> 2) & 0x01) == 1);   // 1 = ODD (true), 0 = EVEN (false)
                     lat17 = (int) (((data56 & 0x03FFFE0000L) >>> 17) & 0x01FFFFL);
                     lon17 = (int) (data56 & 0x01FFFFL);
 
@@ -284,23 +294,23 @@ public final class DownlinkFormat18 implements IDF18 {
                 case 19:
                     // Airborne Velocity (has SubTypes)
 
-                    subType3 = dataBytes[0] & 0x07;
+                    subType3 = byte0 & 0x07;
 
                     switch (subType3) {
                         case 1:     // gndspeed normal lsb=1knot
                         case 2:     // gndspeed supersonic lsb=4knots
 
-                            int dire_w = ((dataBytes[1] & 0x04) >>> 2); // 0=east, 1=west
-                            int velocitye_w = (((dataBytes[1] & 0x03) << 8) | (dataBytes[2])) - 1;
+                            int dire_w = ((byte1 & 0x04) >>> 2); // 0=east, 1=west
+                            int velocitye_w = (((byte1 & 0x03) << 8) | (byte2)) - 1;
 
-                            int dirn_s = ((dataBytes[3] & 0x80) >>> 7); // 0=north, 1=south
-                            int velocityn_s = ((((dataBytes[3] & 0x7f) << 8) | (dataBytes[4] & 0xE0)) >>> 5) - 1;
+                            int dirn_s = ((byte3 & 0x80) >>> 7); // 0=north, 1=south
+                            int velocityn_s = ((((byte3 & 0x7f) << 8) | (byte4 & 0xE0)) >>> 5) - 1;
 
                             if (velocityn_s == -1 || velocitye_w == -1) {
                                 groundSpeed = -1.0f;    // invalid
                                 trueHeading = -1.0f;      // invalid
                             } else {
-                                trueHeading = thead.trueHeading(velocityn_s, velocitye_w, dirn_s, dire_w);
+                                trueHeading = TrueHeading.trueHeading(velocityn_s, velocitye_w, dirn_s, dire_w);
 
                                 if (subType3 == 2) {
                                     velocitye_w *= 4;
@@ -344,11 +354,11 @@ public final class DownlinkFormat18 implements IDF18 {
                         case 4: // supersonic
 
                             // Decode Heading, Velocity over ground is not known
-                            if ((dataBytes[1] & 0x04) == 0x04) {
+                            if ((byte1 & 0x04) == 0x04) {
                                 magneticFlag = true;
-                                magneticHeading = (((dataBytes[1] & 0x03) << 8) | dataBytes[2]) * 360.0f / 1024.0f;
-                                tasFlag = ((dataBytes[3] & 0x80) == 0x80);
-                                airspeed = (((dataBytes[3] & 0x7f) << 3) | ((dataBytes[4] & 0xE0) >>> 3)) - 1;
+                                magneticHeading = (((byte1 & 0x03) << 8) | byte2) * 360.0f / 1024.0f;
+                                tasFlag = ((byte3 & 0x80) == 0x80);
+                                airspeed = (((byte3 & 0x7f) << 3) | ((byte4 & 0xE0) >>> 3)) - 1;
 
                                 supersonic = false;
 
@@ -7,12 +7,12 @@ package decoder;
  * This is the DownlinkFormat20 object
  *
  * DF20 is used to reply to ground interrogations with altitude information
+ *
+ * One object is reused for every DF20, and decode() replaces all of
+ * the fields from the frame.
  */
 public final class DownlinkFormat20 implements IDF20 {
 
-    private final Altitude alt;
-    private final CRC crc;
-    private final Callsign call;
     private int altitude;
     private int fs3;
     private int dr5;
@@ -22,32 +22,29 @@ public final class DownlinkFormat20 implements IDF20 {
     private String icao;
     private String callsign;
     private long timestamp;
-    private final long data56;
-    private final int[] dataBytes;
-    private final int bds;
+    private long data56;
+    private int bds;
     private boolean isOnGround;
     private boolean isAlert;
     private boolean isSPI;
     private boolean isEmergency;
 
+    public DownlinkFormat20() {
+        icao = "";
+        callsign = "";
+        altitude = -9999;
+    }
+
     /**
      * Decode the DF20 packets
      *
-     * @param raw112 a string of the raw 112-bit packet in hexadecimal
-     * @param time a long representing the UTC time of detection
+     * @param f a ModeSFrame view of the raw 112-bit packet
      */
-    public DownlinkFormat20(String raw112, long time) {
-        alt = new Altitude();
-        crc = new CRC();
-        call = new Callsign();
-        dataBytes = new int[7];
-        icao = "";
+    public void decode(ModeSFrame f) {
+        timestamp = f.getTime();
         callsign = "";
-        altitude = -9999;
 
-        timestamp = time;
-        
-        altitude = alt.decodeAltitude(raw112.substring(0, 8), true);    // true ==  has Metre bit
+        altitude = Altitude.decodeAC13(f.altitudeCode());     // has the Metre Bit
 
         /*
          * By running the first 88 bits into the CRC, and then XOR the last 24
@@ -56,11 +53,11 @@ public final class DownlinkFormat20 implements IDF20 {
          * This is effected by interference and garbled bits, so you have to
          * validate this ACID with the list of DF11,DF17, and DF18 packets.
          */
-        icao = crc.crcCompute(raw112);
+        icao = f.icaoHex();
 
-        fs3 = Integer.parseInt(raw112.substring(1, 2), 16) & 0x07;
-        dr5 = ((Integer.parseInt(raw112.substring(2, 4), 16) & 0xF8) >>> 3) & 0x1F; // DR 5 bits
-        um6 = (Integer.parseInt(raw112.substring(3, 5), 16) >> 1) & 0x3F;    // UM 6 bits
+        fs3 = f.fs();
+        dr5 = f.dr();    // DR 5 bits
+        um6 = f.um();    // UM 6 bits
         ids2 = um6 & 0x3;
         iis4 = (um6 >>> 2) & 0xF;
 
@@ -86,23 +83,12 @@ public final class DownlinkFormat20 implements IDF20 {
             default:
         }
 
-        int loop = 0;
-        for (int j = 8; j < 22; j += 2) {
-            dataBytes[loop++] = Integer.parseInt(raw112.substring(j, j + 2), 16);   // MB
-        }
-        
-        data56 = ((long) dataBytes[0] << 48)
-                | ((long) dataBytes[1] << 40)
-                | ((long) dataBytes[2] << 32)
-                | ((long) dataBytes[3] << 24)
-                | ((long) dataBytes[4] << 16)
-                | ((long) dataBytes[5] << 8)
-                | ((long) dataBytes[6]);
+        data56 = f.mb();        // MB bits 33 - 88
 
-        bds = dataBytes[0];
+        bds = f.bds();
 
         if (bds == 0x20) {
-            callsign = call.callsignDecode(data56);
+            callsign = Callsign.callsignDecode(data56);
         }
     }
 
@@ -15,6 +15,8 @@ package decoder;
 public interface IDF05 extends IStatus, IAlert {
     
     public String getSquawk();
+
+    public int getSquawkCode();
     
     public long getUpdateTime();
 }
@@ -22,5 +22,7 @@ public interface IDF21 extends IStatus, IAlert {
 
     public String getSquawk();
 
+    public int getSquawkCode();
+
     public long getUpdateTime();
 }
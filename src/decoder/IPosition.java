@@ -50,4 +50,25 @@ public interface IPosition {
     public boolean getTimedOut();
 
     public void setTimedOut(boolean var);
+
+    /**
+     * Setter for the last decoded position, which is the reference
+     * used to decode a single frame
+     *
+     * @param lat a double representing the latitude in degrees
+     * @param lon a double representing the longitude in degrees
+     * @param time a long representing UTC time in milliseconds
+     */
+    public void setReference(double lat, double lon, long time);
+
+    public double getReferenceLat();
+
+    public double getReferenceLon();
+
+    /**
+     * Getter for the time of the last decoded position
+     *
+     * @return a long representing UTC time in milliseconds, or 0 if none
+     */
+    public long getReferenceTime();
 }
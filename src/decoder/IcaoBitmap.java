@@ -0,0 +1,126 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/*
+ * A set of the aircraft addresses heard in the clear lately
+ *
+ * The DF0/4/5/16/20/21 replies overlay the address on the parity, so
+ * any garbled frame gives some address. It is only believed if the
+ * same address has been confirmed by a DF11/17/18, which carry it in
+ * the clear with a good CRC.
+ *
+ * There is one bit for each of the 2^24 addresses, 2 MB, so checking
+ * an address is one array read. Addresses expire in two generations.
+ * The confirms go in the current one, and a lookup checks both. Each
+ * expiry time the older one is cleared and becomes the current, so an
+ * address is forgotten between one and two expiry times after it was
+ * last confirmed.
+ *
+ * Only one thread adds addresses and ticks, but any thread can look
+ * them up.
+ */
+public final class IcaoBitmap {
+
+    private static final int WORDS = (1 << 24) / 64;
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+    //
+    private final long expiry;
+    private volatile long[] current;
+    private volatile long[] previous;
+    private long rotated;
+    private volatile int count;
+    private volatile int lastCount;
+
+    /**
+     * Create an empty set
+     *
+     * @param ms a long representing the expiry time in milliseconds
+     */
+    public IcaoBitmap(long ms) {
+        expiry = Math.max(ms, 1000L);
+        current = new long[WORDS];
+        previous = new long[WORDS];
+        rotated = 0L;
+        count = 0;
+        lastCount = 0;
+    }
+
+    /**
+     * Add a confirmed address
+     *
+     * @param icao an int representing the 24-bit address
+     * @param time a long representing the UTC time it was heard
+     */
+    public void add(int icao, long time) {
+        tick(time);
+
+        long[] words = current;
+        int index = (icao >>> 6) & (WORDS - 1);
+        long bit = 1L << icao;
+
+        if (((long) WORD.getOpaque(words, index) & bit) == 0L) {
+            WORD.getAndBitwiseOr(words, index, bit);
+            count++;
+        }
+    }
+
+    /**
+     * Check an address
+     *
+     * @param icao an int representing the 24-bit address
+     * @return a boolean representing the address was confirmed lately
+     */
+    public boolean contains(int icao) {
+        int index = (icao >>> 6) & (WORDS - 1);
+        long bit = 1L << icao;
+
+        return ((((long) WORD.getOpaque(current, index) | (long) WORD.getOpaque(previous, index)) & bit) != 0L);
+    }
+
+    /**
+     * Expire the older generation when it is due. This is called by each
+     * add, and by the decoder housekeeping, so addresses still expire
+     * when no DF11/17/18 is heard for a while.
+     *
+     * @param time a long representing the UTC time now
+     */
+    public void tick(long time) {
+        if ((time - rotated) >= expiry) {
+            rotate(time);
+        }
+    }
+
+    /*
+     * Clear the older generation and make it the current. Until it is
+     * cleared, both generations are the same array, so an add is not lost.
+     */
+    private void rotate(long time) {
+        long[] old = previous;
+
+        previous = current;
+
+        for (int i = 0; i < WORDS; i++) {
+            WORD.setOpaque(old, i, 0L);
+        }
+
+        current = old;
+        lastCount = count;
+        count = 0;
+        rotated = time;
+    }
+
+    /**
+     * Method to return about how many aircraft are known. It is the larger
+     * of the two generations, so it counts each address once.
+     *
+     * @return an int representing the number of addresses
+     */
+    public int getCount() {
+        return Math.max(count, lastCount);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * This is a reusable view of one raw Mode-S frame
+ *
+ * The frame is kept as the two words from the DataBlock, and the fields
+ * are cut out of them by the accessors as they are asked for. Nothing is
+ * decoded until it is needed, and nothing is allocated per frame, as the
+ * one view is set to each new frame in turn.
+ *
+ * A short frame is the low 56 bits of data0. A long frame is bits 1 - 56
+ * in data0 and bits 57 - 112 in data1. Bit numbers below are the ones in
+ * the Mode-S documents, counting from 1 at the start of the frame.
+ *
+ * A view is not thread safe. Each decoding thread has its own.
+ */
+public final class ModeSFrame {
+
+    private static final int CACHESIZE = 4096;      // must be a power of 2
+    //
+    private final int[] cacheKey;
+    private final String[] cacheHex;
+    //
+    private long data0;
+    private long data1;
+    private long time;
+    private boolean longFrame;
+    private int syndrome;
+    private boolean hasSyndrome;
+
+    public ModeSFrame() {
+        cacheKey = new int[CACHESIZE];
+        cacheHex = new String[CACHESIZE];
+
+        for (int i = 0; i < CACHESIZE; i++) {
+            cacheKey[i] = -1;
+        }
+
+        set(false, 0L, 0L, 0L);
+    }
+
+    /**
+     * Point the view at a new frame
+     *
+     * @param isLong a boolean representing a 112-bit frame
+     * @param d0 a long representing bits 1 - 56 of the frame
+     * @param d1 a long representing bits 57 - 112 of a long frame
+     * @param t a long representing the UTC time of detection
+     * @return this view
+     */
+    public ModeSFrame set(boolean isLong, long d0, long d1, long t) {
+        longFrame = isLong;
+        data0 = d0;
+        data1 = d1;
+        time = t;
+        hasSyndrome = false;
+
+        return this;
+    }
+
+    public boolean isLong() {
+        return longFrame;
+    }
+
+    public long getData0() {
+        return data0;
+    }
+
+    public long getData1() {
+        return data1;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /*
+     * Bits 1 - 5 Downlink Format
+     */
+    public int df() {
+        return (int) (data0 >>> 51) & 0x1F;
+    }
+
+    /*
+     * The first 32 bits, which hold the fixed fields of every format
+     */
+    public int first32() {
+        return (int) (data0 >>> 24);
+    }
+
+    /*
+     * Bits 6 - 8 are CA on DF11/17, CF on DF18, and FS on DF04/05/20/21
+     */
+    public int ca() {
+        return (int) (data0 >>> 48) & 0x07;
+    }
+
+    public int fs() {
+        return ca();
+    }
+
+    /*
+     * Bit 6 is the VS bit on DF00 and DF16
+     */
+    public boolean vs() {
+        return (first32() & 0x04000000) != 0;
+    }
+
+    /*
+     * Bit 7 is the CC bit on DF00
+     */
+    public boolean cc() {
+        return (first32() & 0x02000000) != 0;
+    }
+
+    /*
+     * Bits 9 - 13 DR and 14 - 19 UM on DF04/05/20/21
+     */
+    public int dr() {
+        return (first32() >>> 19) & 0x1F;
+    }
+
+    public int um() {
+        return (first32() >>> 13) & 0x3F;
+    }
+
+    /*
+     * Bits 14 - 17 RI on DF00 and DF16
+     */
+    public int ri() {
+        return (first32() >>> 15) & 0x0F;
+    }
+
+    /*
+     * Bits 20 - 32 are the 13-bit altitude code on DF00/04/16/20
+     * and the identity (squawk) code on DF05/21
+     */
+    public int altitudeCode() {
+        return first32() & 0x1FFF;
+    }
+
+    public int identityCode() {
+        return first32() & 0x1FFF;
+    }
+
+    /*
+     * Bits 9 - 32 are the address in the clear on DF11/17/18
+     */
+    public int address() {
+        return first32() & 0xFFFFFF;
+    }
+
+    /*
+     * The last 24 bits are the parity field
+     */
+    public int parity() {
+        if (longFrame == true) {
+            return (int) data1 & 0xFFFFFF;
+        }
+
+        return (int) data0 & 0xFFFFFF;
+    }
+
+    /**
+     * The CRC of the frame xor its parity field. It is zero for a good
+     * DF11/17/18, and the aircraft address for the address/parity formats.
+     *
+     * @return an int representing the 24-bit syndrome
+     */
+    public int syndrome() {
+        if (hasSyndrome == false) {
+            if (longFrame == true) {
+                syndrome = CRC.crcCompute(data0, data1);
+            } else {
+                syndrome = CRC.crcCompute(data0);
+            }
+
+            hasSyndrome = true;
+        }
+
+        return syndrome;
+    }
+
+    /**
+     * The aircraft address, either in the clear or recovered from the parity
+     *
+     * @return an int representing the 24-bit aircraft address
+     */
+    public int icao() {
+        switch (df()) {
+            case 11, 17, 18 -> {
+                return address();
+            }
+            default -> {
+                return syndrome();
+            }
+        }
+    }
+
+    /**
+     * The aircraft address as six hex digits. The strings are kept in a
+     * small cache, as the same few hundred aircraft are heard over and over.
+     *
+     * @param val an int representing a 24-bit address
+     * @return a String representing the address in uppercase hex
+     */
+    public String hex(int val) {
+        int slot = (val ^ (val >>> 12)) & (CACHESIZE - 1);
+
+        if (cacheKey[slot] != val) {
+            cacheHex[slot] = CRC.toHex(val);
+            cacheKey[slot] = val;
+        }
+
+        return cacheHex[slot];
+    }
+
+    public String icaoHex() {
+        return hex(icao());
+    }
+
+    /*
+     * Bits 33 - 88 of a long frame are the ME field of DF17/18,
+     * the MB field of DF20/21, and the MV field of DF16.
+     */
+    public long me() {
+        return ((data0 & 0xFFFFFFL) << 32) | (data1 >>> 24);
+    }
+
+    public long mb() {
+        return me();
+    }
+
+    /*
+     * The first byte of the MB field is the BDS register number
+     */
+    public int bds() {
+        return (int) (data0 >>> 16) & 0xFF;
+    }
+
+    /*
+     * The first five bits of the ME field are the ADS-B type code,
+     * and the next three the sub type
+     */
+    public int typeCode() {
+        return (int) (data0 >>> 19) & 0x1F;
+    }
+
+    public int subType() {
+        return (int) (data0 >>> 16) & 0x07;
+    }
+}
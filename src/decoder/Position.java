@@ -17,6 +17,10 @@ public final class Position implements IPosition, IConstants {
     private int lonEven;
     private int lonOdd;
     //
+    private double refLat;            // last decoded position
+    private double refLon;
+    private long refTime;             // 0 if none yet
+    //
     private boolean timedout;
 
     // Constructor
@@ -25,6 +29,7 @@ public final class Position implements IPosition, IConstants {
         icao = ac;
         ptime = 0L;
         utctime = time;
+        refTime = 0L;
 
         // The new frame will either be even or odd when new object is created
         if (cpr1 == ODD) {
@@ -117,4 +122,26 @@ public final class Position implements IPosition, IConstants {
     public void setTimedOut(boolean val) {
         timedout = val;
     }
+
+    @Override
+    public void setReference(double lat, double lon, long time) {
+        refLat = lat;
+        refLon = lon;
+        refTime = time;
+    }
+
+    @Override
+    public double getReferenceLat() {
+        return refLat;
+    }
+
+    @Override
+    public double getReferenceLon() {
+        return refLon;
+    }
+
+    @Override
+    public long getReferenceTime() {
+        return refTime;
+    }
 }
@@ -3,16 +3,25 @@
  */
 package decoder;
 
-import parser.ZuluMillis;
+import parser.IClock;
 import java.util.Enumeration;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
 public final class PositionManager implements IConstants {
 
     private static final long RATE = 30L * 1000L;               // 30 Seconds
     //
+    private static final long REFTIME = 60L * 1000L;            // 60 Seconds
+    private static final int HALFZONE = 180;                    // NM, half an airborne zone
+    private static final double EARTH = 3440.065;               // Earth radius NM
+    //
+    private final int range;                                    // NM
+    //
+    /*
+     * The receiver position counted in CPR bins from 0 degrees, for each
+     * kind of position frame. The low 12 or 17 bits are the receiver
+     * position as it would be sent in a frame.
+     */
     private long receiverLatitudeTisbCourseEven;
     private long receiverLongitudeTisbCourseEven;
     private long receiverLatitudeAirborneEven;
@@ -27,32 +36,50 @@ public final class PositionManager implements IConstants {
     private long receiverLatitudeSurfaceOdd;
     private long receiverLongitudeSurfaceOdd;
     //
+    private int receiverZonesAirborneEven;                     // longitude zones at the receiver
+    private int receiverZonesAirborneOdd;
+    private int receiverZonesSurfaceEven;
+    private int receiverZonesSurfaceOdd;
+    //
     private LatLon receiverLatLon;
     //
     private final ConcurrentHashMap<String, Position> pos;      // Table needs synchronizaton
     //
-    private final ZuluMillis zulu;
+    private final IClock clock;
     private final CPR cpr;
+    final double[] latlon;                                      // CPR decode output
     private final DataBlockParser dbp;
-    private final Timer timer1;
-    private final TimerTask task1;
+    private long nextDrop;
 
-    public PositionManager(LatLon rxll, DataBlockParser d) {
+    public PositionManager(LatLon rxll, int nm, DataBlockParser d, IClock c) {
         pos = new ConcurrentHashMap<>();
-        zulu = new ZuluMillis();
+        range = nm;
+        clock = c;
         cpr = new CPR();
+        latlon = new double[2];
         dbp = d;
         receiverLatLon = rxll;
 
         encodeCPR();
 
-        task1 = new DropPosition();
-        timer1 = new Timer();
-        timer1.scheduleAtFixedRate(task1, 0L, RATE);
+        nextDrop = 0L;
     }
 
     public void close() {
-        timer1.cancel();
+    }
+
+    /**
+     * Method called often by the DataBlockParser thread, which runs the
+     * position timeouts every RATE on the program clock. In a replay that
+     * is the recorded time, so they happen the same at any speed.
+     */
+    public void tick() {
+        long now = clock.getUTCTime();
+
+        if (now >= nextDrop) {
+            nextDrop = now + RATE;
+            dropPositions(now);
+        }
     }
 
     /*
@@ -101,6 +128,12 @@ public final class PositionManager implements IConstants {
 
     /**
      * Store the lat/lon position on the table keyed by the Aircraft ID
+     *
+     * <p>
+     * A position is decoded from every frame. If there is an even and odd
+     * pair within MAXTIME it is a global decode. Otherwise the frame is
+     * decoded on its own, near the last position of the aircraft, or for a
+     * new aircraft near the receiver. The Position is changed in place.
      * 
      * @param icao the ICAO ID
      * @param lat17 the 17-bit latitude
@@ -112,158 +145,188 @@ public final class PositionManager implements IConstants {
      */
     public void addNewPosition(String icao, int lat17, int lon17, long zulu,
             boolean cpr1, boolean surface, boolean tis) {
-        Position oldpos;
-        LatLon latlon;
+        Position position;
+        boolean decoded;
+        boolean global;
         long time;
         int mode;
-        int longEven = 0;
-        int longOdd = 0;
-        int latEven = 0;
-        int latOdd = 0;
 
         if (lat17 != 0 && lon17 != 0) {
             /*
              * See if this track is on the table
              */
-            if (hasPosition(icao) == true) {
+            position = pos.get(icao);
 
+            if (position == (Position) null) {
                 /*
-                 * Yes, it is on the table
+                 * Track wasn't on the table so create a new object
                  */
-                oldpos = removePosition(icao);      // might become null if it gets deleted in dropPosition
-
-                if (oldpos != (Position) null) {    // Timer Thread goo
-
-                    if (cpr1 == ODD) {
-                        // odd frame
-
-                        oldpos.setLatLonOdd(lat17, lon17, zulu);
+                position = new Position(icao, zulu, lat17, lon17, cpr1);
+                addPosition(icao, position);
+                time = 0L;
+            } else {
+                if (cpr1 == ODD) {
+                    position.setLatLonOdd(lat17, lon17, zulu);
 
-                        if (oldpos.getEvenFrameTime() != 0L) {
-                            /*
-                             * If the even frame has a value then we can set the ptime
-                             */
-                            time = Math.abs(oldpos.getOddFrameTime() - oldpos.getEvenFrameTime());
-                        } else {
-                            /*
-                             * The even frame has no time yet, so ptime will be zero for now
-                             */
-                            time = 0L;
-                        }
-                    } else {
-                        // even frame
+                    /*
+                     * If the even frame has a value then we can set the ptime
+                     */
+                    time = (position.getEvenFrameTime() != 0L)
+                            ? Math.abs(position.getOddFrameTime() - position.getEvenFrameTime()) : 0L;
+                } else {
+                    position.setLatLonEven(lat17, lon17, zulu);
 
-                        oldpos.setLatLonEven(lat17, lon17, zulu);
+                    /*
+                     * If the odd frame has a value we can set the ptime
+                     */
+                    time = (position.getOddFrameTime() != 0L)
+                            ? Math.abs(position.getEvenFrameTime() - position.getOddFrameTime()) : 0L;
+                }
 
-                        if (oldpos.getOddFrameTime() != 0L) {
-                            /*
-                             * If the odd frame has a value we can set the ptime
-                             */
+                position.setProcessTime(time);
+                position.setTimedOut(false);    // we have a hit, so mark position not timed out
+            }
 
-                            time = Math.abs(oldpos.getEvenFrameTime() - oldpos.getOddFrameTime());
-                        } else {
-                            /*
-                             * The odd frame has no time yet, so ptime will be zero for now
-                             */
+            decoded = false;
 
-                            time = 0L;
-                        }
-                    }
+            /*
+             * ProcessTime non-zero means we have an odd and even position
+             */
+            if ((time > 0L) && (time <= MAXTIME)) {
+                if (surface == true) {
+                    mode = POSITION_MODE_GLOBAL_SURFACE;
+                    decoded = cpr.decodeCPRsurface(receiverLatLon.getLat(), receiverLatLon.getLon(),
+                            position.getLatEven(), position.getLonEven(),
+                            position.getLatOdd(), position.getLonOdd(), cpr1, latlon);
+                } else {
+                    mode = POSITION_MODE_GLOBAL_AIRBORNE;
+                    decoded = cpr.decodeCPRairborne(position.getLatEven(), position.getLonEven(),
+                            position.getLatOdd(), position.getLonOdd(), cpr1, latlon);
+                }
+            } else {
+                mode = POSITION_MODE_UNKNOWN;
+            }
 
-                    oldpos.setProcessTime(time);
-                    oldpos.setTimedOut(false);    // we have a hit, so mark position not timed out
+            global = decoded;
 
-                    /*
-                     * See if the ProcessTime is less than 10 seconds
-                     */
-                    if ((time > 0L) && (time <= MAXTIME)) {
-                        // ProcessTime non-zero means we have an odd and even position
-                        longEven = oldpos.getLonEven();
-                        longOdd = oldpos.getLonOdd();
-                        latEven = oldpos.getLatEven();
-                        latOdd = oldpos.getLatOdd();
-
-                        if (surface == true) {
-                            mode = POSITION_MODE_GLOBAL_SURFACE;
-                            latlon = cpr.decodeCPRsurface(receiverLatLon, latEven, longEven, latOdd, longOdd, cpr1);
-                        } else {
-                            mode = POSITION_MODE_GLOBAL_AIRBORNE;
-                            latlon = cpr.decodeCPRairborne(latEven, longEven, latOdd, longOdd, cpr1);
-                        }
-
-                        if (latlon.getLat() != 0.0f && latlon.getLon() != 0.0f) {
-                            dbp.updateTrackLatLon(icao, latlon, mode, zulu);
-                        }
-                    } else if (time == 0L) {
-                        /*
-                         * If time is zero, maybe we can substitute
-                         * the receiver position, or the last airborne position.
-                         */
-                        if (surface == true) {
-                            if (cpr1 == EVEN) {
-                                latlon = cpr.decodeCPRrelative(receiverLatLon, latEven, longEven,
-                                        cpr1, surface);
-                            } else {
-                                latlon = cpr.decodeCPRrelative(receiverLatLon, latOdd, longOdd,
-                                        cpr1, surface);
-                            }
-
-                            mode = POSITION_MODE_RELATIVE_SURFACE;
-                        } else {
-                            if (cpr1 == EVEN) {
-                                latlon = cpr.decodeCPRrelative(new LatLon(latOdd, longOdd),
-                                        latEven, longEven, cpr1, surface);
-                            } else {
-                                latlon = cpr.decodeCPRrelative(new LatLon(latEven, longEven),
-                                        latOdd, longOdd, cpr1, surface);
-                            }
-
-                            mode = POSITION_MODE_RELATIVE_AIRBORNE;
-                        }
-
-                        if (latlon.getLat() != 0.0f && latlon.getLon() != 0.0f) {
-                            dbp.updateTrackLatLon(icao, latlon, mode, zulu);
-                        }
-                    }
+            if (decoded == false) {
+                mode = (surface == true) ? POSITION_MODE_RELATIVE_SURFACE : POSITION_MODE_RELATIVE_AIRBORNE;
 
+                if ((position.getReferenceTime() != 0L) && ((zulu - position.getReferenceTime()) <= REFTIME)) {
+                    decoded = cpr.decodeCPRrelative(position.getReferenceLat(), position.getReferenceLon(),
+                            lat17, lon17, cpr1, surface, latlon);
+                } else if ((surface == true) || (range < HALFZONE)) {
                     /*
-                     * Replace the position with modified values to table
+                     * Only if the aircraft can't be half a zone from the receiver
                      */
-                    addPosition(icao, oldpos);
+                    decoded = decodeReceiverRelative(lat17, lon17, cpr1, surface);
                 }
-            } else {
+            }
+
+            if (decoded == true) {
+                boolean near = (distance(latlon[0], latlon[1]) <= range);
+
                 /*
-                 * Track wasn't on the table so create a new object
+                 * A single frame could be in the wrong zone, so it is
+                 * dropped if it is beyond the receiver range. A global
+                 * decode from a pair is always kept, but a bad pair can
+                 * be in the wrong zone too, so only a fix within the
+                 * range becomes the reference for the single frames.
                  */
+                if ((global == false) && (near == false)) {
+                    return;
+                }
+
+                if (near == true) {
+                    position.setReference(latlon[0], latlon[1], zulu);
+                }
 
-                addPosition(icao, new Position(icao, zulu, lat17, lon17, cpr1));
+                dbp.updateTrackLatLon(icao, (float) latlon[0], (float) latlon[1], mode, zulu);
             }
         }
     }
+
+    /*
+     * Decode one frame near the receiver, using the receiver position
+     * worked out by encodeCPR(). The zone index is then integer math on
+     * the bins, unless the aircraft is in a band with a different number
+     * of longitude zones than the receiver. Package scope for the tests.
+     */
+    boolean decodeReceiverRelative(int lat17, int lon17, boolean cpr1, boolean surface) {
+        long latBins;
+        long lonBins;
+        int zones;
+
+        if (surface == true) {
+            latBins = (cpr1 == ODD) ? receiverLatitudeSurfaceOdd : receiverLatitudeSurfaceEven;
+            lonBins = (cpr1 == ODD) ? receiverLongitudeSurfaceOdd : receiverLongitudeSurfaceEven;
+            zones = (cpr1 == ODD) ? receiverZonesSurfaceOdd : receiverZonesSurfaceEven;
+        } else {
+            latBins = (cpr1 == ODD) ? receiverLatitudeAirborneOdd : receiverLatitudeAirborneEven;
+            lonBins = (cpr1 == ODD) ? receiverLongitudeAirborneOdd : receiverLongitudeAirborneEven;
+            zones = (cpr1 == ODD) ? receiverZonesAirborneOdd : receiverZonesAirborneEven;
+        }
+
+        double span = (surface == true) ? 90.0 : 360.0;
+        double dlat = span / ((cpr1 == ODD) ? 59.0 : 60.0);
+
+        // The zone that puts the frame within half a zone of the receiver
+        long j = (latBins - lat17 + 65536L) >> 17;
+        double rlat = dlat * (j + lat17 / 131072.0);
+
+        if (rlat < -90.0 || rlat > 90.0) {
+            return false;
+        }
+
+        int ni = cpr.cprNLFunction(rlat) - ((cpr1 == ODD) ? 1 : 0);
+
+        if (Math.max(ni, 1) != zones) {
+            return cpr.decodeCPRrelative(receiverLatLon.getLat(), receiverLatLon.getLon(),
+                    lat17, lon17, cpr1, surface, latlon);
+        }
+
+        long m = (lonBins - lon17 + 65536L) >> 17;
+        double rlon = (span / zones) * (m + lon17 / 131072.0);
+
+        latlon[0] = rlat;
+        latlon[1] = rlon - Math.floor((rlon + 180.0) / 360.0) * 360.0;
+
+        return true;
+    }
+
+    /*
+     * Great circle distance in nautical miles from the receiver
+     */
+    private double distance(double lat, double lon) {
+        double lat1 = Math.toRadians(receiverLatLon.getLat());
+        double lat2 = Math.toRadians(lat);
+        double dlat = Math.sin((lat2 - lat1) / 2.0);
+        double dlon = Math.sin(Math.toRadians(lon - receiverLatLon.getLon()) / 2.0);
+
+        double a = (dlat * dlat) + (Math.cos(lat1) * Math.cos(lat2) * dlon * dlon);
+
+        return 2.0 * EARTH * Math.asin(Math.sqrt(Math.min(a, 1.0)));
+    }
     
     /*
      * This will look through the Position Hashmap and delete the positions
      * as they timeout (Default 60 seconds).
      */
-    private final class DropPosition extends TimerTask {
-
-        @Override
-        public void run() {
-            long timeout = zulu.getUTCTime() - (60L * 1000L);    // subtract 60 seconds
-            long pos_timeout = zulu.getUTCTime() - MAXTIME;
+    private void dropPositions(long now) {
+        long timeout = now - (60L * 1000L);    // subtract 60 seconds
+        long pos_timeout = now - MAXTIME;
 
-            // Get rid of Positions on the table that haven't been updated
-            Enumeration list = pos.elements();
+        // Get rid of Positions on the table that haven't been updated
+        Enumeration list = pos.elements();
 
-            while (list.hasMoreElements()) {
-                Position pos = (Position) list.nextElement();
+        while (list.hasMoreElements()) {
+            Position pos = (Position) list.nextElement();
 
-                if (pos.getUpdateTime() <= pos_timeout) {
-                    pos.setTimedOut(true);                      // mark timed out after XX sec
-                    addPosition(pos.getICAO(), pos);            // update table value
-                } else if (pos.getUpdateTime() < timeout) {     // delete after a minute
-                    removePosition(pos.getICAO());              // remove from table
-                }
+            if (pos.getUpdateTime() <= pos_timeout) {
+                pos.setTimedOut(true);                      // mark timed out after XX sec
+                addPosition(pos.getICAO(), pos);            // update table value
+            } else if (pos.getUpdateTime() < timeout) {     // delete after a minute
+                removePosition(pos.getICAO());              // remove from table
             }
         }
     }
@@ -272,7 +335,11 @@ public final class PositionManager implements IConstants {
      * This method encodes our receiver position into longitude and latitude zones.
      * This may be useful, as well, for a moving receiver.
      *
-     * A test value given by the FAA is:
+     * The positions are kept as a count of bins from zero degrees, so the
+     * zone is in the upper bits. The surface frames carry 17 bits of a
+     * 90 degree zone, the same as CPR.decodeCPRsurface() uses.
+     *
+     * A test value given by the FAA is (low 17 bits):
      *
      * 43.054N Latitude = 23025 (even), 7349 (odd) I seem to get 7350
      * 76.06W Longitude = 119938 (even), 16559 (odd)
@@ -283,64 +350,48 @@ public final class PositionManager implements IConstants {
      * Longitude = 121602 (even), 26000 (odd)
      */
     private void encodeCPR() {
+        double lat = receiverLatLon.getLat();
+        double lon = receiverLatLon.getLon();
+
         // Airborne and TIS-B fine
-        float yz17Even = (float) Math.floor(Exp17 * cpr.cprModFloat(receiverLatLon.getLat(), DlatEven) / DlatEven + .5);
-        float yz17Odd = (float) Math.floor(Exp17 * cpr.cprModFloat(receiverLatLon.getLat(), DlatOdd) / DlatOdd + .5);
-        float rlat17Even = DlatEven * ((yz17Even / Exp17) + (float) Math.floor(receiverLatLon.getLat() / DlatEven));
-        float rlat17Odd = DlatOdd * ((yz17Odd / Exp17) + (float) Math.floor(receiverLatLon.getLat() / DlatOdd));
+        receiverLatitudeAirborneEven = bins(lat, 360.0 / 60.0, Exp17);
+        receiverLatitudeAirborneOdd = bins(lat, 360.0 / 59.0, Exp17);
 
-        // Surface 19-bits
-        float yz19Even = (float) Math.floor(Exp19 * cpr.cprModFloat(receiverLatLon.getLat(), DlatSEven) / DlatSEven + .5);
-        float yz19Odd = (float) Math.floor(Exp19 * cpr.cprModFloat(receiverLatLon.getLat(), DlatSOdd) / DlatSOdd + .5);
-        float rlat19Even = DlatSEven * ((yz19Even / Exp19) + (float) Math.floor(receiverLatLon.getLat() / DlatSEven));
-        float rlat19Odd = DlatSOdd * ((yz19Odd / Exp19) + (float) Math.floor(receiverLatLon.getLat() / DlatSOdd));
+        // Surface
+        receiverLatitudeSurfaceEven = bins(lat, 90.0 / 60.0, Exp17);
+        receiverLatitudeSurfaceOdd = bins(lat, 90.0 / 59.0, Exp17);
 
         // TIS-B Course 12-bits
-        float yz12Even = (float) Math.floor(Exp12 * cpr.cprModFloat(receiverLatLon.getLat(), DlatEven) / DlatEven + .5);
-        float yz12Odd = (float) Math.floor(Exp12 * cpr.cprModFloat(receiverLatLon.getLat(), DlatOdd) / DlatOdd + .5);
-        float rlat12Even = DlatEven * ((yz12Even / Exp12) + (float) Math.floor(receiverLatLon.getLat() / DlatEven));
-        float rlat12Odd = DlatOdd * ((yz12Odd / Exp12) + (float) Math.floor(receiverLatLon.getLat() / DlatOdd));
-
-        int temp = cpr.cprNLFunction(rlat12Odd) - 1;
-        temp = (temp == 0) ? 1 : temp;
-        
-        float dlon12Even = 360.0f / cpr.cprNLFunction(rlat12Even);
-        float dlon12Odd = 360.0f / (float) temp;
-
-        temp = cpr.cprNLFunction(rlat17Odd) - 1;
-        temp = (temp == 0) ? 1 : temp;
-        
-        float dlon17Even = 360.0f / cpr.cprNLFunction(rlat17Even);
-        float dlon17Odd = 360.0f / (float) temp;
-
-        temp = cpr.cprNLFunction(rlat19Odd) - 1;
-        temp = (temp == 0) ? 1 : temp;
-        
-        float dlon19Even = 90.0f / (float) cpr.cprNLFunction(rlat19Even);
-        float dlon19Odd = 90.0f / (float) temp;
-
-        float xz12Even = (float) Math.floor(Exp12 * cpr.cprModFloat(receiverLatLon.getLon(), dlon12Even) / dlon12Even + .5);
-        float xz12Odd = (float) Math.floor(Exp12 * cpr.cprModFloat(receiverLatLon.getLon(), dlon12Odd) / dlon12Odd + .5);
-
-        float xz17Even = (float) Math.floor(Exp17 * cpr.cprModFloat(receiverLatLon.getLon(), dlon17Even) / dlon17Even + .5);
-        float xz17Odd = (float) Math.floor(Exp17 * cpr.cprModFloat(receiverLatLon.getLon(), dlon17Odd) / dlon17Odd + .5);
-
-        float xz19Even = (float) Math.floor(Exp19 * cpr.cprModFloat(receiverLatLon.getLon(), dlon19Even) / dlon19Even + .5);
-        float xz19Odd = (float) Math.floor(Exp19 * cpr.cprModFloat(receiverLatLon.getLon(), dlon19Odd) / dlon19Odd + .5);
-
-        receiverLatitudeTisbCourseEven = (long) yz12Even & 0x0FFF;
-        receiverLongitudeTisbCourseEven = (long) xz12Even & 0x0FFF;
-        receiverLatitudeTisbCourseOdd = (long) yz12Odd & 0x0FFF;
-        receiverLongitudeTisbCourseOdd = (long) xz12Odd & 0x0FFF;
-
-        receiverLatitudeAirborneEven = (long) yz17Even & 0x1FFFF;
-        receiverLongitudeAirborneEven = (long) xz17Even & 0x1FFFF;
-        receiverLatitudeAirborneOdd = (long) yz17Odd & 0x1FFFF;
-        receiverLongitudeAirborneOdd = (long) xz17Odd & 0x1FFFF;
-
-        receiverLatitudeSurfaceEven = (long) yz19Even & 0x1FFFF;
-        receiverLongitudeSurfaceEven = (long) xz19Even & 0x1FFFF;
-        receiverLatitudeSurfaceOdd = (long) yz19Odd & 0x1FFFF;
-        receiverLongitudeSurfaceOdd = (long) xz19Odd & 0x1FFFF;
+        receiverLatitudeTisbCourseEven = bins(lat, 360.0 / 60.0, Exp12);
+        receiverLatitudeTisbCourseOdd = bins(lat, 360.0 / 59.0, Exp12);
+
+        /*
+         * The number of longitude zones is found from the latitude
+         * as it would be decoded
+         */
+        receiverZonesAirborneEven = zones(receiverLatitudeAirborneEven, 360.0 / 60.0, Exp17, EVEN);
+        receiverZonesAirborneOdd = zones(receiverLatitudeAirborneOdd, 360.0 / 59.0, Exp17, ODD);
+        receiverZonesSurfaceEven = zones(receiverLatitudeSurfaceEven, 90.0 / 60.0, Exp17, EVEN);
+        receiverZonesSurfaceOdd = zones(receiverLatitudeSurfaceOdd, 90.0 / 59.0, Exp17, ODD);
+
+        int zones12Even = zones(receiverLatitudeTisbCourseEven, 360.0 / 60.0, Exp12, EVEN);
+        int zones12Odd = zones(receiverLatitudeTisbCourseOdd, 360.0 / 59.0, Exp12, ODD);
+
+        receiverLongitudeAirborneEven = bins(lon, 360.0 / receiverZonesAirborneEven, Exp17);
+        receiverLongitudeAirborneOdd = bins(lon, 360.0 / receiverZonesAirborneOdd, Exp17);
+        receiverLongitudeSurfaceEven = bins(lon, 90.0 / receiverZonesSurfaceEven, Exp17);
+        receiverLongitudeSurfaceOdd = bins(lon, 90.0 / receiverZonesSurfaceOdd, Exp17);
+        receiverLongitudeTisbCourseEven = bins(lon, 360.0 / zones12Even, Exp12);
+        receiverLongitudeTisbCourseOdd = bins(lon, 360.0 / zones12Odd, Exp12);
+    }
+
+    private long bins(double degrees, double zone, double exp) {
+        return (long) Math.floor(exp * degrees / zone + 0.5);
+    }
+
+    private int zones(long latBins, double zone, double exp, boolean fflag) {
+        int nl = cpr.cprNLFunction(zone * latBins / exp) - ((fflag == ODD) ? 1 : 0);
+
+        return (nl < 1) ? 1 : nl;
     }
 }
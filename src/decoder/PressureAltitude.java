@@ -12,7 +12,7 @@ import java.net.URL;
 import java.util.Timer;
 import java.util.TimerTask;
 import parser.Config;
-import parser.ZuluMillis;
+import parser.IClock;
 
 /*
  * Pressure Altitude and Altitude Correction Class
@@ -30,7 +30,7 @@ public class PressureAltitude {
     //
     private URL noaa;
     private BufferedReader in;
-    private final ZuluMillis zulu;
+    private final IClock clock;
     //
     private float airportAltimeter;
     private int airportElevation;
@@ -45,8 +45,8 @@ public class PressureAltitude {
     private final TimerTask task1;
     private final Config config;
 
-    public PressureAltitude(Config c) {
-        zulu = new ZuluMillis();
+    public PressureAltitude(Config c, IClock ck) {
+        clock = ck;
         config = c;
 
         airportAltimeter = 0.0f;
@@ -145,7 +145,7 @@ public class PressureAltitude {
             String[] token = inputLine.split(" ", -2);   // Tokenize the data input line
 
             observationUTCTime = token[2];  // zulu observation Example: 211952Z 
-            utcUpdateTime = zulu.getUTCTime();
+            utcUpdateTime = clock.getUTCTime();
             complete = false;
 
             for (int i = 3; (complete == false) && (i < token.length); i++) {
@@ -7,39 +7,79 @@ package decoder;
  * This is the squawk object
  *
  * Used as the decoder of the squawk broadcasts
+ *
+ * The identity field is 13 bits, so every code is worked out once into a
+ * table of octal values. The 4096 octal codes each have one String made
+ * when the class loads, so a squawk is two array reads, and the same code
+ * is always the same String. Codes are compared as ints.
  */
-public final class Squawk implements ISquawk {
-
-    @Override
-    public String decodeSquawk(String raw32) {
-        String squawk;
-
-        int acmsb = (Integer.parseInt(raw32.substring(4, 5), 16) & 0x1) << 12;
-        int aclsb = Integer.parseInt(raw32.substring(5, 8), 16);
-        int ac13 = acmsb | aclsb;                            // 13 bits
-
-        /*
-         * Combine all the bits back into octal digits - X-bit already removed
-         *
-         * C1 A1 C2 | A2 C4 A4 | B1 D1 B2 | D2 B4 D4
-         */
-
-        int a = ((ac13 & 0x0800) >>> 11) + ((ac13 & 0x0200) >>> 8) + ((ac13 & 0x0080) >>> 5);
-        int b = ((ac13 & 0x0020) >>> 5) + ((ac13 & 0x0008) >>> 2) + ((ac13 & 0x0002) << 1);
-        int c = ((ac13 & 0x1000) >>> 12) + ((ac13 & 0x0400) >>> 9) + ((ac13 & 0x0100) >>> 6);
-        int d = ((ac13 & 0x0010) >>> 4) + ((ac13 & 0x0004) >>> 1) + ((ac13 & 0x0001) << 2);
-
-        /*
-         * Squawk might be gimped with garbled bits
-         *
-         * Perform a IllegalFormatException check, and punt if thrown
-         */
-        try {
-            squawk = String.format("%d%d%d%d", a, b, c, d);
-        } catch (Exception e) {
-            squawk = "";
+public final class Squawk {
+
+    public static final int NONE = -1;
+    public static final int HIJACK = 07500;
+    public static final int COMM_OUT = 07600;
+    public static final int EMERGENCY = 07700;
+    //
+    private static final short[] OCTAL = new short[8192];
+    private static final String[] CODES = new String[4096];
+
+    static {
+        for (int ac13 = 0; ac13 < 8192; ac13++) {
+            /*
+             * Combine all the bits back into octal digits - X-bit ignored
+             *
+             * C1 A1 C2 | A2 C4 A4 | X B1 D1 | B2 D2 B4 | D4
+             */
+            int a = ((ac13 & 0x0800) >>> 11) + ((ac13 & 0x0200) >>> 8) + ((ac13 & 0x0080) >>> 5);
+            int b = ((ac13 & 0x0020) >>> 5) + ((ac13 & 0x0008) >>> 2) + ((ac13 & 0x0002) << 1);
+            int c = ((ac13 & 0x1000) >>> 12) + ((ac13 & 0x0400) >>> 9) + ((ac13 & 0x0100) >>> 6);
+            int d = ((ac13 & 0x0010) >>> 4) + ((ac13 & 0x0004) >>> 1) + ((ac13 & 0x0001) << 2);
+
+            OCTAL[ac13] = (short) ((a << 9) | (b << 6) | (c << 3) | d);
+        }
+
+        for (int code = 0; code < 4096; code++) {
+            char[] digits = new char[4];
+
+            for (int i = 3, v = code; i >= 0; i--, v >>>= 3) {
+                digits[i] = (char) ('0' + (v & 7));
+            }
+
+            CODES[code] = new String(digits);
         }
-        
-        return squawk;
+    }
+
+    /**
+     * Method to decode the squawk as an octal number
+     *
+     * @param id13 an int representing the raw 13-bit identity field
+     * @return an int representing the squawk, 0 to 07777
+     */
+    public static int decodeCode(int id13) {
+        return OCTAL[id13 & 0x1FFF];
+    }
+
+    /**
+     * Method to decode squawk and return the string value of 4-digit octal code
+     *
+     * @param id13 an int representing the raw 13-bit identity field
+     * @return squawk a String representing the squawk in 4-digit octal
+     */
+    public static String decodeSquawk(int id13) {
+        return CODES[OCTAL[id13 & 0x1FFF]];
+    }
+
+    /**
+     * Method to return the 4-digit octal String of a squawk
+     *
+     * @param code an int representing the octal squawk, or NONE
+     * @return a String representing the squawk, or empty if NONE
+     */
+    public static String toString(int code) {
+        if ((code < 0) || (code > 07777)) {
+            return "";
+        }
+
+        return CODES[code];
     }
 }
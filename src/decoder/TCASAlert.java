@@ -13,7 +13,6 @@ package decoder;
  */
 public final class TCASAlert {
 
-    private Altitude alt;
     //
     private int threatIdentityData26;
     private int threatTypeData30;
@@ -87,8 +86,6 @@ public final class TCASAlert {
 
         dfSource = df5;
 
-        alt = new Altitude();
-
         // These fit into an Integer in Java
         threatIdentityData26 = (int)(mv56 & 0x3FFFFFFL);    // 26 bits masked off
         threatTypeData30 = (int)(mv56 >>> 26);              // 30 bits left over
@@ -129,7 +126,7 @@ public final class TCASAlert {
                 int tmp5 = ((tmp13 & 0x2F) >>> 5) << 4; // Move bit 38 to 39, no D1
                 int ac11 = ((tmp13 >> 7) << 5) | (tmp5 & 0x1F); // drop bit 37, 39
                 
-                threatAltitude = alt.computeAltitude(ac11);
+                threatAltitude = Altitude.computeAltitude(ac11);
 
                 if ((threatAltitude != -9999) && (trackAltitude != -9999)) {
                     threatRelativeAltitude = trackAltitude - threatAltitude;
@@ -5,6 +5,11 @@ package decoder;
 
 /*
  * This is the vehicle track object
+ *
+ * The decoder thread writes a track, and the RadarScan thread reads it.
+ * The setters lock the track, and the RadarScan thread copies what it
+ * writes to the database with takeUpdate() under the same lock, so a row
+ * never mixes values from two updates.
  */
 public final class Track implements IConstants {
 
@@ -12,12 +17,14 @@ public final class Track implements IConstants {
     private String registration;    // N-Number if USA registered
     private String callsign;        // 8 character string
     private String squawk;          // 4 digit octal code
+    private int squawkCode;         // the same code as a number
     //
     private long updatedTime;        // zulu time object was updated
     private long updatedPositionTime;// zulu time object lat/lon position was updated
     //
     private int mode;               // Track mode
     private int amplitude;          // last amplitude received
+    private int radarSite;          // receiver of the last report
     private int positionMode;
     private int trackQuality;       // 0 - 9 quality value (9 means Firm)
     private int verticalRate;       // fps
@@ -73,6 +80,7 @@ public final class Track implements IConstants {
         version = 0;
         category = 0;
         amplitude = 0;
+        radarSite = 0;
         mode = TRACK_MODE_NORMAL;
         positionMode = POSITION_MODE_UNKNOWN;
         groundSpeed = -999.0f;
@@ -95,6 +103,7 @@ public final class Track implements IConstants {
         altitudeDF18 = -9999;
         altitudeDF20 = -9999;
         squawk = "";
+        squawkCode = Squawk.NONE;
         callsign = "";
         trackQuality = 0;
         updatedPositionTime = 0L;
@@ -108,7 +117,7 @@ public final class Track implements IConstants {
     /**
      * Method to increment track quality
      */
-    public void incrementTrackQuality() {
+    public synchronized void incrementTrackQuality() {
         if (trackQuality < 9) {
             trackQuality++;
             updated = true;
@@ -118,7 +127,7 @@ public final class Track implements IConstants {
     /**
      * Method to decrement track quality
      */
-    public void decrementTrackQuality() {
+    public synchronized void decrementTrackQuality() {
         if (trackQuality > 0) {
             trackQuality--;
             updated = true;
@@ -130,7 +139,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing the track quality [0...9]
      */
-    public void setTrackQuality(int val) {
+    public synchronized void setTrackQuality(int val) {
         if (trackQuality != val) {
             trackQuality = val;
             updated = true;
@@ -151,7 +160,7 @@ public final class Track implements IConstants {
      *
      * @return boolean which signals if the track has been updated
      */
-    public boolean getUpdated() {
+    public synchronized boolean getUpdated() {
         return updated;
     }
 
@@ -160,7 +169,7 @@ public final class Track implements IConstants {
      *
      * @param val a boolean which signals the track has been updated
      */
-    public void setUpdated(boolean val) {
+    public synchronized void setUpdated(boolean val) {
         updated = val;
     }
 
@@ -169,7 +178,7 @@ public final class Track implements IConstants {
      *
      * @return boolean which signals if the track position has been updated
      */
-    public boolean getUpdatePosition() {
+    public synchronized boolean getUpdatePosition() {
         return updatePosition;
     }
 
@@ -178,7 +187,7 @@ public final class Track implements IConstants {
      *
      * @param val a boolean to set or reset the track position updated status
      */
-    public void setUpdatePosition(boolean val) {
+    public synchronized void setUpdatePosition(boolean val) {
         updatePosition = val;
     }
 
@@ -196,7 +205,7 @@ public final class Track implements IConstants {
      *
      * @param val a string Representing the track Mode-S Hex ID
      */
-    public void setAircraftICAO(String val) {
+    public synchronized void setAircraftICAO(String val) {
         icao = val;
     }
 
@@ -214,7 +223,7 @@ public final class Track implements IConstants {
      *
      * @param val a string Representing the track registration
      */
-    public void setRegistration(String val) {
+    public synchronized void setRegistration(String val) {
         registration = val;
     }
 
@@ -242,11 +251,11 @@ public final class Track implements IConstants {
      *
      * @param val a long Representing the track updated time in milliseconds
      */
-    public void setUpdatedTime(long val) {
+    public synchronized void setUpdatedTime(long val) {
         updatedTime = val;
     }
 
-    public void setAmplitude(int val) {
+    public synchronized void setAmplitude(int val) {
         amplitude = val;
         updated = true;
     }
@@ -255,7 +264,20 @@ public final class Track implements IConstants {
         return amplitude;
     }
 
-    public void setRadarIID(int val) {
+    /**
+     * Method to set which receiver heard the last report
+     *
+     * @param val an int Representing the radar site of the receiver
+     */
+    public synchronized void setRadarSite(int val) {
+        radarSite = val;
+    }
+
+    public int getRadarSite() {
+        return radarSite;
+    }
+
+    public synchronized void setRadarIID(int val) {
         if (radarIID != val) {
             radarIID = val;
             updated = true;
@@ -266,7 +288,7 @@ public final class Track implements IConstants {
         return radarIID;
     }
 
-    public void setSI(boolean val) {
+    public synchronized void setSI(boolean val) {
         if (si != val) {
             si = val;
             updated = true;
@@ -293,7 +315,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing the track climb or descent rate
      */
-    public void setVerticalRate(int val) {
+    public synchronized void setVerticalRate(int val) {
         if (verticalRate != val) {
             verticalRate = val;
             updated = true;
@@ -328,7 +350,7 @@ public final class Track implements IConstants {
         return verticalTrend;
     }
 
-    public void setGroundSpeed(float val) {
+    public synchronized void setGroundSpeed(float val) {
         if (groundSpeed != val) {
             groundSpeed = val;
             updated = true;
@@ -353,7 +375,7 @@ public final class Track implements IConstants {
         return groundTrack;
     }
 
-    public void setGroundTrack(float val) {
+    public synchronized void setGroundTrack(float val) {
         if (groundTrack != val) {
             groundTrack = val;
             updated = true;
@@ -379,11 +401,11 @@ public final class Track implements IConstants {
         return groundTrackComputed;
     }
 
-    public void setComputedGroundSpeed(float val) {
+    public synchronized void setComputedGroundSpeed(float val) {
         groundSpeedComputed = val;
     }
 
-    public void setComputedGroundTrack(float val) {
+    public synchronized void setComputedGroundTrack(float val) {
         groundTrackComputed = val;
     }
     
@@ -399,7 +421,7 @@ public final class Track implements IConstants {
      * @param val2 Ground Speed in knots
      * @param val3 Vertical Rate in feet per second
      */
-    public void setVelocityData(float val1, float val2, int val3) {
+    public synchronized void setVelocityData(float val1, float val2, int val3) {
         boolean changed = false;
 
         if (groundTrack != val1) {
@@ -428,7 +450,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF00(int val) {
+    public synchronized void setAltitudeDF00(int val) {
         if (altitudeDF00 != val) {
             altitudeDF00 = val;
             isVirtOnGround = (val == 0);
@@ -446,7 +468,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF04(int val) {
+    public synchronized void setAltitudeDF04(int val) {
         if (altitudeDF04 != val) {
             altitudeDF04 = val;
             isVirtOnGround = (val == 0);
@@ -464,7 +486,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF16(int val) {
+    public synchronized void setAltitudeDF16(int val) {
         if (altitudeDF16 != val) {
             altitudeDF16 = val;
             isVirtOnGround = (val == 0);
@@ -482,7 +504,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF17(int val) {
+    public synchronized void setAltitudeDF17(int val) {
         if (altitudeDF17 != val) {
             altitudeDF17 = val;
             isVirtOnGround = (val == 0);
@@ -500,7 +522,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF18(int val) {
+    public synchronized void setAltitudeDF18(int val) {
         if (altitudeDF18 != val) {
             altitudeDF18 = val;
             isVirtOnGround = (val == 0);
@@ -518,7 +540,7 @@ public final class Track implements IConstants {
      *
      * @param val an integer Representing altitude in feet MSL or -9999 for null
      */
-    public void setAltitudeDF20(int val) {
+    public synchronized void setAltitudeDF20(int val) {
         if (altitudeDF20 != val) {
             altitudeDF20 = val;
             isVirtOnGround = (val == 0);
@@ -596,21 +618,34 @@ public final class Track implements IConstants {
      * @param mode an int Representing the track mode
      * @param utc a long timestamp
      */
-    public void setPosition(LatLon latlon, int mode, long utc) {
+    public synchronized void setPosition(LatLon latlon, int mode, long utc) {
+        setPosition(latlon.getLat(), latlon.getLon(), mode, utc);
+    }
+
+    /**
+     * Method used to set the track 2D position (latitude, longitude) (south
+     * and west are negative)
+     *
+     * @param lat a float Representing the track latitude
+     * @param lon a float Representing the track longitude
+     * @param mode an int Representing the track mode
+     * @param utc a long timestamp
+     */
+    public synchronized void setPosition(float lat, float lon, int mode, long utc) {
         /*
          * Don't update with the same position
          */
 
-        if ((Float.compare(longitude, latlon.getLon()) != 0) &&
-                Float.compare(latitude, latlon.getLat()) != 0) {
+        if ((Float.compare(longitude, lon) != 0) &&
+                Float.compare(latitude, lat) != 0) {
             /*
              * If a good position is followed by a 0.0 then keep the old
              * position
              */
-            if ((Float.compare(latlon.getLat(), 0.0f) != 0) &&
-                    Float.compare(latlon.getLon(), 0.0f) != 0) {
-                longitude = latlon.getLon();
-                latitude = latlon.getLat();
+            if ((Float.compare(lat, 0.0f) != 0) &&
+                    Float.compare(lon, 0.0f) != 0) {
+                longitude = lon;
+                latitude = lat;
                 
                 positionMode = mode;
                 incrementTrackQuality();
@@ -632,11 +667,14 @@ public final class Track implements IConstants {
     /**
      * Method used to set the track callsign
      * Don't change the callsign to blank if it was a good value
+     *
+     * The decoded callsigns are shared Strings, so an unchanged one is
+     * usually the same object, and is passed over without comparing.
      * 
      * @param val a string Representing the track callsign
      */
-    public void setCallsign(String val) {
-        if (val.equals("") == false) {
+    public synchronized void setCallsign(String val) {
+        if ((val != callsign) && (val.isEmpty() == false)) {
             if (val.equals(callsign) == false) {
                 callsign = val;
                 updated = true;
@@ -653,20 +691,30 @@ public final class Track implements IConstants {
         return squawk;
     }
 
+    /**
+     * Method used to return the track squawk as an octal number
+     *
+     * @return an int Representing the track octal squawk, or Squawk.NONE
+     */
+    public int getSquawkCode() {
+        return squawkCode;
+    }
+
     /**
      * Method used to set the track octal 4-digit squawk
      *
-     * @param val a String Representing the track octal squawk
+     * @param val an int Representing the track octal squawk, or Squawk.NONE
      */
-    public void setSquawk(String val) {
-        if (val.equals("") == false) {
-            if (val.equals(squawk) == false) {
-                if (val.equals("0000") == false) {      // don't switch from a good to 0 code
-                    squawk = val;
+    public synchronized void setSquawk(int val) {
+        if (val != Squawk.NONE) {
+            if (val != squawkCode) {
+                if (val != 0) {      // don't switch from a good to 0 code
+                    squawkCode = val;
+                    squawk = Squawk.toString(val);
                     updated = true;
-                    emergency = val.equals("7700");
-                    hijack = val.equals("7500");
-                    comm_out = val.equals("7600");
+                    emergency = (val == Squawk.EMERGENCY);
+                    hijack = (val == Squawk.HIJACK);
+                    comm_out = (val == Squawk.COMM_OUT);
                 }
             }
         }
@@ -721,7 +769,7 @@ public final class Track implements IConstants {
      *
      * @param val a boolean Representing the OnGround status
      */
-    public void setOnGround(boolean val) {
+    public synchronized void setOnGround(boolean val) {
         if (isOnGround != val) {
             if (val == true) {
                 if (getAltitude() > 10000) {        // I just pulled this number out of a hat
@@ -763,7 +811,7 @@ public final class Track implements IConstants {
      * @param val2 a boolean Representing the status of the Emergency
      * @param val3 a boolean Representing the status of the SPI
      */
-    public void setAlert(boolean val1, boolean val2, boolean val3) {
+    public synchronized void setAlert(boolean val1, boolean val2, boolean val3) {
         boolean changed = false;
 
         if (alert != val1) {
@@ -819,14 +867,14 @@ public final class Track implements IConstants {
         return version;
     }
     
-    public void setVersion(int val) {
+    public synchronized void setVersion(int val) {
         if (version != val) {
             version = val;
             updated = true;
         }
     }
 
-    public void setCategory(int val) {
+    public synchronized void setCategory(int val) {
         if (category != val) {
             category = val;
             updated = true;
@@ -837,7 +885,7 @@ public final class Track implements IConstants {
         return category;
     }
 
-    public void setIAS(float val) {
+    public synchronized void setIAS(float val) {
         if (ias != val) {
             ias = val;
             updated = true;
@@ -848,7 +896,7 @@ public final class Track implements IConstants {
         return ias;
     }
 
-    public void setTAS(float val) {
+    public synchronized void setTAS(float val) {
         if (tas != val) {
             tas = val;
             updated = true;
@@ -862,7 +910,7 @@ public final class Track implements IConstants {
     /*
      * This is some ADS-B bo-jive
      */
-    public void setHeading(float val) {
+    public synchronized void setHeading(float val) {
         if (heading != val) {
             heading = val;
             updated = true;
@@ -873,7 +921,7 @@ public final class Track implements IConstants {
         return heading;
     }
 
-    public void setLocal(boolean val) {
+    public synchronized void setLocal(boolean val) {
         isLocal = val;
     }
 
@@ -881,11 +929,29 @@ public final class Track implements IConstants {
         return isLocal;
     }
 
-    public void setRelayed(boolean val) {
+    public synchronized void setRelayed(boolean val) {
         isRelayed = val;
     }
 
     public boolean getRelayed() {
         return isRelayed;
     }
-}
\ No newline at end of file
+
+    /**
+     * Method to copy an updated track for the database, and clear the
+     * updated flags in the same step. An update after this sets them again
+     * for the next pass.
+     *
+     * @return a TrackRow of the track, or null if it wasn't updated
+     */
+    public synchronized TrackRow takeUpdate() {
+        if (updated == false) {
+            return null;
+        }
+
+        TrackRow row = new TrackRow(this);
+        updated = updatePosition = false;
+
+        return row;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * An immutable copy of the Track fields written to the database.
+ *
+ * Track.takeUpdate() makes one under the track lock, so the RadarScan
+ * thread writes values that were all set together, while the decoder
+ * thread goes on updating the track.
+ */
+public final class TrackRow {
+    private final String icao;
+    private final String registration;
+    private final String callsign;
+    private final String squawk;
+    private final long updatedTime;
+    private final int radarSite;
+    private final int trackQuality;
+    private final int amplitude;
+    private final float latitude;
+    private final float longitude;
+    private final boolean updatePosition;
+    private final int verticalRate;
+    private final int verticalTrend;
+    private final boolean onGround;
+    private final boolean alert;
+    private final boolean emergency;
+    private final boolean spi;
+    private final boolean hijack;
+    private final boolean commOut;
+    private final int radarIID;
+    private final boolean si;
+    private final float groundSpeed;
+    private final float groundTrack;
+    private final float groundSpeedComputed;
+    private final float groundTrackComputed;
+    private final int altitude;
+    private final int altitudeDF00;
+    private final int altitudeDF04;
+    private final int altitudeDF16;
+    private final int altitudeDF17;
+    private final int altitudeDF18;
+    private final int altitudeDF20;
+
+    /*
+     * Only made by Track.takeUpdate(), which holds the track lock
+     */
+    TrackRow(Track trk) {
+        icao = trk.getAircraftICAO();
+        registration = trk.getRegistration();
+        callsign = trk.getCallsign();
+        squawk = trk.getSquawk();
+        updatedTime = trk.getUpdatedTime();
+        radarSite = trk.getRadarSite();
+        trackQuality = trk.getTrackQuality();
+        amplitude = trk.getAmplitude();
+        latitude = trk.getLatitude();
+        longitude = trk.getLongitude();
+        updatePosition = trk.getUpdatePosition();
+        verticalRate = trk.getVerticalRate();
+        verticalTrend = trk.getVerticalTrend();
+        onGround = (trk.getOnGround() == true) || (trk.getVirtualOnGround() == true);
+        alert = trk.getAlert();
+        emergency = trk.getEmergency();
+        spi = trk.getSPI();
+        hijack = trk.getHijack();
+        commOut = trk.getCommOut();
+        radarIID = trk.getRadarIID();
+        si = trk.getRadarSI();
+        groundSpeed = trk.getGroundSpeed();
+        groundTrack = trk.getGroundTrack();
+        groundSpeedComputed = trk.getComputedGroundSpeed();
+        groundTrackComputed = trk.getComputedGroundTrack();
+        altitude = trk.getAltitude();
+        altitudeDF00 = trk.getAltitudeDF00();
+        altitudeDF04 = trk.getAltitudeDF04();
+        altitudeDF16 = trk.getAltitudeDF16();
+        altitudeDF17 = trk.getAltitudeDF17();
+        altitudeDF18 = trk.getAltitudeDF18();
+        altitudeDF20 = trk.getAltitudeDF20();
+    }
+
+    public String getAircraftICAO() {
+        return icao;
+    }
+
+    public String getRegistration() {
+        return registration;
+    }
+
+    public String getCallsign() {
+        return callsign;
+    }
+
+    public String getSquawk() {
+        return squawk;
+    }
+
+    public long getUpdatedTime() {
+        return updatedTime;
+    }
+
+    public int getRadarSite() {
+        return radarSite;
+    }
+
+    public int getTrackQuality() {
+        return trackQuality;
+    }
+
+    public int getAmplitude() {
+        return amplitude;
+    }
+
+    public float getLatitude() {
+        return latitude;
+    }
+
+    public float getLongitude() {
+        return longitude;
+    }
+
+    public boolean getUpdatePosition() {
+        return updatePosition;
+    }
+
+    public int getVerticalRate() {
+        return verticalRate;
+    }
+
+    public int getVerticalTrend() {
+        return verticalTrend;
+    }
+
+    public boolean getOnGround() {
+        return onGround;
+    }
+
+    public boolean getAlert() {
+        return alert;
+    }
+
+    public boolean getEmergency() {
+        return emergency;
+    }
+
+    public boolean getSPI() {
+        return spi;
+    }
+
+    public boolean getHijack() {
+        return hijack;
+    }
+
+    public boolean getCommOut() {
+        return commOut;
+    }
+
+    public int getRadarIID() {
+        return radarIID;
+    }
+
+    public boolean getRadarSI() {
+        return si;
+    }
+
+    public float getGroundSpeed() {
+        return groundSpeed;
+    }
+
+    public float getGroundTrack() {
+        return groundTrack;
+    }
+
+    public float getComputedGroundSpeed() {
+        return groundSpeedComputed;
+    }
+
+    public float getComputedGroundTrack() {
+        return groundTrackComputed;
+    }
+
+    public int getAltitude() {
+        return altitude;
+    }
+
+    public int getAltitudeDF00() {
+        return altitudeDF00;
+    }
+
+    public int getAltitudeDF04() {
+        return altitudeDF04;
+    }
+
+    public int getAltitudeDF16() {
+        return altitudeDF16;
+    }
+
+    public int getAltitudeDF17() {
+        return altitudeDF17;
+    }
+
+    public int getAltitudeDF18() {
+        return altitudeDF18;
+    }
+
+    public int getAltitudeDF20() {
+        return altitudeDF20;
+    }
+}
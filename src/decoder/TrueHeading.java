@@ -3,10 +3,18 @@
  */
 package decoder;
 
-public final class TrueHeading implements ITrueHeading, IConstants {
-
-    @Override
-    public float trueHeading(int velocityn_s, int velocitye_w, int signlat, int signlon) {
+public final class TrueHeading {
+
+    /**
+     * Calculate true north track heading from the n/s and e/w velocity in knots
+     *
+     * @param velocityn_s an integer velocity north/south
+     * @param velocitye_w an integer velocity east/west
+     * @param signlat an integer sign bit for latitude (0 = North, 1 = South)
+     * @param signlon an integer sign bit for longitude (0 = East, 1 = West)
+     * @return float representing heading in degrees true north
+     */
+    public static float trueHeading(int velocityn_s, int velocitye_w, int signlat, int signlon) {
         // do a sanity check (shouldn't ever be true because we check before call)
 
         if (velocityn_s == -1 || velocitye_w == -1) {
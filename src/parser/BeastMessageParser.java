@@ -3,7 +3,9 @@
  */
 package parser;
 
-import java.util.Arrays;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.LinkedList;
 
@@ -19,202 +21,312 @@ import java.util.LinkedList;
  *
  * <esc> is 0x1A, and "1", "2" and "3" are 0x31, 0x32 and 0x33 ASCII
  *
- * Ignore the MLAT counter, as we have no useful code for that.
+ * The parser is a state machine, so a frame split across two reads just
+ * carries on where it left off. Nothing is copied or allocated per frame.
+ * The MLAT counter is passed along with the frame.
+ *
+ * Most of the data has no <esc> in it, so the scanner looks for the next
+ * <esc> eight bytes at a time, and takes the bytes before it as a run.
  */
 public final class BeastMessageParser {
 
-    private static final int ESCAPE = 0x1A;
-    private static final byte MODEAC = 0x31;
-    private static final byte SHORT = 0x32;
-    private static final byte LONG = 0x33;
+    public static final int MODEAC = 0x31;
+    public static final int SHORT = 0x32;
+    public static final int LONG = 0x33;
     //
-    private static final int MAXBUFFERSIZE = 10000; // some big number
-
-    private final class ExtractResult {
-
-        int signalLevel;
-        int startOfPacket;
-        int endOfPacket;
-        int dataLength;
-
-        ExtractResult(int sl, int sp, int ep, int dl) {
-            signalLevel = sl;
-            startOfPacket = sp;
-            endOfPacket = ep;
-            dataLength = dl;
-        }
-    }
-
-    private byte[] readBuffer;
-    private int readBufferLength;
+    private static final int ESCAPE = 0x1A;
+    private static final long ESCAPES = 0x1A1A1A1A1A1A1A1AL;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
     //
-    private byte[] payload;
+    private static final int HEADERLENGTH = 7;  // 6 byte MLAT + 1 byte signal
     //
+    private static final int STATE_SYNC = 0;    // looking for <esc>
+    private static final int STATE_TYPE = 1;    // saw <esc>, expecting frame type
+    private static final int STATE_BODY = 2;    // reading MLAT, signal, payload
+
+    private int state;
+    private boolean escapePending;
     private boolean sawFirstPacket;
+    //
+    private int frameType;
+    private int frameLength;        // header + payload bytes for this type
+    private int index;              // bytes of this frame read so far
+    private int signalLevel;
+    private long mlat;
+    private long data0;
+    private long data1;
 
     public BeastMessageParser() {
+        state = STATE_SYNC;
+        escapePending = false;
         sawFirstPacket = false;
     }
 
     /**
-     * Scans a byte array for Mode S beast messages. Returns a collection of
-     * extracted Mode S payloads.
+     * Scans a byte array for Mode-S Beast messages, and hands each complete
+     * frame to the consumer. Any partial frame at the end of the array is
+     * kept in the parser state and completed by the next call.
      *
      * @param bytes an array of raw bytes
-     * @param bytesLength the length of the array of raw bytes
-     * @return a linked list of Mode-S data packets
+     * @param offset the offset of the first byte to scan
+     * @param bytesLength the number of bytes to scan
+     * @param consumer the frame consumer
      */
-    public List<ExtractedBytes> parse(byte[] bytes, int bytesLength) {
-        LinkedList<ExtractedBytes> result = new LinkedList<>();
-        int length = readBufferLength + bytesLength;
+    public void parse(byte[] bytes, int offset, int bytesLength, IFrameConsumer consumer) {
+        int end = offset + bytesLength;
+        int i = offset;
 
-        if (length > MAXBUFFERSIZE) {
-            readBufferLength = 0;
-            length = bytesLength;
-        }
+        while (i < end) {
+            switch (state) {
+                case STATE_SYNC -> {
+                    int next = indexOfEscape(bytes, i, end);
 
-        if (readBuffer == null || length > readBuffer.length) {
-            byte[] newReadBuffer = new byte[length];
+                    if (next < 0) {
+                        return;                 // nothing but noise
+                    }
 
-            if (readBuffer != null) {
-                System.arraycopy(readBuffer, 0, newReadBuffer, 0, readBuffer.length);
-            }
+                    state = STATE_TYPE;
+                    i = next + 1;
+                }
+                case STATE_TYPE -> {
+                    int ch = bytes[i++] & 0xFF;
 
-            readBuffer = newReadBuffer;
-        }
+                    if (ch == ESCAPE) {
+                        state = STATE_SYNC;     // <esc><esc> is data, not a frame start
+                    } else {
+                        startFrame(ch);
+                    }
+                }
+                default -> {
+                    if (escapePending == true) {
+                        int ch = bytes[i++] & 0xFF;
+
+                        escapePending = false;
+
+                        if (ch != ESCAPE) {
+                            /*
+                             * A lone <esc> inside a frame is the start of
+                             * the next frame, so this one was truncated.
+                             */
+                            startFrame(ch);
+                            continue;
+                        }
+
+                        addByte(ch);
+                    } else {
+                        /*
+                         * Take the run of bytes up to the next <esc>, or the
+                         * end of the frame, without looking at each one.
+                         */
+                        int limit = Math.min(end, i + (frameLength - index));
+                        int next = indexOfEscape(bytes, i, limit);
+                        int stop = (next < 0) ? limit : next;
+
+                        addRun(bytes, i, stop);
+                        i = stop;
+
+                        if (next >= 0) {
+                            escapePending = true;
+                            i++;
+                            continue;
+                        }
+                    }
 
-        System.arraycopy(bytes, 0, readBuffer, readBufferLength, bytesLength);
-        readBufferLength = length;
+                    if (index == frameLength) {
+                        state = STATE_SYNC;
 
-        int startOfPacket = findStartIndex(0);
+                        /*
+                         * The first frame after startup is probably
+                         * missing bytes, so skip it.
+                         */
+                        if (sawFirstPacket == true) {
+                            consumer.frame(frameType, signalLevel, mlat, data0, data1);
+                        }
 
-        if ((sawFirstPacket == false) && startOfPacket == 1) {
-            startOfPacket = findStartIndex(startOfPacket);
+                        sawFirstPacket = true;
+                    }
+                }
+            }
         }
+    }
 
-        int firstByteAfterLastValidPacket = -1;
-
-        while (startOfPacket != -1 && startOfPacket < readBufferLength) {
-            int dataLength = 0;
-
-            ExtractResult eresult = extractBinaryPayload(startOfPacket, dataLength);
+    /*
+     * Find the next <esc> from start up to, but not including, stop.
+     *
+     * This looks at eight bytes at a time: XOR with <esc> turns any <esc>
+     * into a zero byte, and the usual zero byte test sets the top bit of
+     * each zero byte. Little-endian puts the first byte lowest, so the
+     * trailing zero count finds the first one, and a false hit from the
+     * borrow can only land on a later byte.
+     *
+     * A frame is only two or three words long, so the last few bytes are
+     * also one load, with the bytes past the stop masked off, unless the
+     * word would run off the end of the array.
+     *
+     * Returns -1 if there isn't one.
+     */
+    static int indexOfEscape(byte[] bytes, int start, int stop) {
+        int i = start;
 
-            int endOfPacket = eresult.endOfPacket;
+        for (; (i + 8) <= stop; i += 8) {
+            long word = (long) LONGS.get(bytes, i) ^ ESCAPES;
+            long zero = (word - ONES) & ~word & HIGHS;
 
-            if (endOfPacket == -1) {
-                break;
+            if (zero != 0L) {
+                return i + (Long.numberOfTrailingZeros(zero) >>> 3);
             }
-
-            dataLength = eresult.dataLength;
-
-            sawFirstPacket = true;
-            firstByteAfterLastValidPacket = endOfPacket;
-
-            ExtractedBytes extractedBytes = new ExtractedBytes(eresult.signalLevel, Arrays.copyOf(payload, dataLength));
-            result.add(extractedBytes);
-
-            startOfPacket = findStartIndex(firstByteAfterLastValidPacket);
         }
 
-        if (firstByteAfterLastValidPacket != -1) {
-            int unusedBytesCount = readBufferLength - firstByteAfterLastValidPacket;
+        if (i < stop) {
+            if ((i + 8) <= bytes.length) {
+                long word = (long) LONGS.get(bytes, i) ^ ESCAPES;
+                long zero = (word - ONES) & ~word & HIGHS & ((1L << ((stop - i) << 3)) - 1L);
 
-            if (unusedBytesCount > 0) {
-                if (unusedBytesCount > 1024) {
-                    unusedBytesCount = 0;
-                } else {
-                    for (int si = firstByteAfterLastValidPacket, di = 0; di < unusedBytesCount; ++si, ++di) {
-                        readBuffer[di] = readBuffer[si];
-                    }
+                if (zero != 0L) {
+                    return i + (Long.numberOfTrailingZeros(zero) >>> 3);
                 }
+
+                return -1;
             }
 
-            readBufferLength = unusedBytesCount;
+            for (; i < stop; i++) {
+                if (bytes[i] == ESCAPE) {
+                    return i;
+                }
+            }
         }
 
-        return result;
+        return -1;
     }
 
-    /*
-     * Find the <esc> character, and ignore <esc><esc>
-     * Return the start index, or -1 if none found
+    /**
+     * Scans a byte array for Mode-S Beast messages. Returns a collection of
+     * extracted Mode S payloads.
+     *
+     * This allocates a list and an object per frame, so the ingest thread
+     * uses the streaming method instead.
+     *
+     * @param bytes an array of raw bytes
+     * @param bytesLength the length of the array of raw bytes
+     * @return a linked list of Mode-S data packets
      */
-    private int findStartIndex(int start) {
-        int result = -1;
+    public List<ExtractedBytes> parse(byte[] bytes, int bytesLength) {
+        LinkedList<ExtractedBytes> result = new LinkedList<>();
 
-        for (int i = start; i < readBufferLength; ++i) {
-            byte ch = readBuffer[i];
+        parse(bytes, 0, bytesLength, (type, signal, counter, d0, d1) -> {
+            int length = (type == MODEAC) ? 2 : (type == SHORT) ? 7 : 14;
+            byte[] payload = new byte[length];
 
-            if (ch == ESCAPE) {
-                if (++i < readBufferLength) {
-                    if (readBuffer[i] != ESCAPE) {
-                        result = i;
-                        break;
-                    }
+            for (int i = 0; i < length; i++) {
+                if (length == 2) {
+                    payload[i] = (byte) (d0 >>> (8 * (1 - i)));
+                } else if (i < 7) {
+                    payload[i] = (byte) (d0 >>> (8 * (6 - i)));
+                } else {
+                    payload[i] = (byte) (d1 >>> (8 * (13 - i)));
                 }
             }
-        }
+
+            result.add(new ExtractedBytes(signal, counter, payload));
+        });
 
         return result;
     }
 
-    private ExtractResult extractBinaryPayload(int startOfPacket, int dataLength) {
-        dataLength = 0;
-
-        switch (readBuffer[startOfPacket++]) {
+    /*
+     * Set up the state for a new frame given its type byte
+     */
+    private void startFrame(int type) {
+        switch (type) {
             case MODEAC -> {  // Mode-A 2-byte Code is Octal in each nibble
-                dataLength = 2;
+                frameLength = HEADERLENGTH + 2;
             }
             case SHORT -> {  // Short Mode-S 7 bytes (56 bits)
-                dataLength = 7;
+                frameLength = HEADERLENGTH + 7;
             }
             case LONG -> {  // Long Mode-S 14 bytes (112 bits)
-                dataLength = 14;
+                frameLength = HEADERLENGTH + 14;
+            }
+            default -> {    // status or unknown frame, resync
+                state = STATE_SYNC;
+                return;
             }
         }
 
-        if (payload == null || payload.length < dataLength) {
-            payload = new byte[dataLength];
-        }
-        
-        int si = startOfPacket;
-        int signalLevel = 0;
-        int di;
-
-        /*
-         * First we read the amplitude byte and ignore mlat bytes
-         */
-        for (di = 0; si < readBufferLength && di < 7; ++si, ++di) {
-            byte ch = readBuffer[si];
-
-            if (ch == ESCAPE && ++si > readBufferLength) {
-                break;
-            }
+        frameType = type;
+        index = 0;
+        mlat = 0L;
+        data0 = 0L;
+        data1 = 0L;
+        signalLevel = 0;
+        escapePending = false;
+        state = STATE_BODY;
+    }
 
-            if (di == 6) {
-                signalLevel = ch & 0xFF;
+    /*
+     * Shift a run of unstuffed bytes into the frame, a field at a time.
+     * Where there are eight bytes left in the array, the field bytes are
+     * taken from one big-endian load.
+     */
+    private void addRun(byte[] bytes, int start, int stop) {
+        int i = start;
+
+        while (i < stop) {
+            int n;
+
+            if (index < 6) {
+                n = Math.min(stop - i, 6 - index);
+                mlat = shiftIn(mlat, bytes, i, n);
+            } else if (index == 6) {
+                n = 1;
+                signalLevel = bytes[i] & 0xFF;
+            } else if (index < (HEADERLENGTH + 7)) {
+                n = Math.min(stop - i, (HEADERLENGTH + 7) - index);
+                data0 = shiftIn(data0, bytes, i, n);
+            } else {
+                n = stop - i;
+                data1 = shiftIn(data1, bytes, i, n);
             }
-        }
 
-        /*
-         * Read the payload data associated with the type (Short, Long, AC)
-         */
-        for (di = 0; si < readBufferLength && di < dataLength; ++si) {
-            byte ch = readBuffer[si];
+            i += n;
+            index += n;
+        }
+    }
 
-            if (ch == ESCAPE) {
-                if (++si >= readBufferLength) {
-                    break;
-                }
+    /*
+     * Shift n (1 to 7) bytes into the low end of a word
+     */
+    private static long shiftIn(long word, byte[] bytes, int start, int n) {
+        int bits = 8 * n;
 
-                ch = readBuffer[si];
-            }
+        if ((start + 8) <= bytes.length) {
+            return (word << bits) | ((long) WORDS.get(bytes, start) >>> (64 - bits));
+        }
 
-            payload[di++] = ch;
+        for (int i = start; i < (start + n); i++) {
+            word = (word << 8) | (bytes[i] & 0xFF);
         }
 
-        int endOfPacket = (di != dataLength) ? -1 : si;
+        return word;
+    }
+
+    /*
+     * Shift one unstuffed byte into the frame
+     */
+    private void addByte(int ch) {
+        if (index < 6) {
+            mlat = (mlat << 8) | ch;
+        } else if (index == 6) {
+            signalLevel = ch;
+        } else if (index < (HEADERLENGTH + 7)) {
+            data0 = (data0 << 8) | ch;
+        } else {
+            data1 = (data1 << 8) | ch;
+        }
 
-        return new ExtractResult(signalLevel, startOfPacket, endOfPacket, dataLength);
+        index++;
     }
 }
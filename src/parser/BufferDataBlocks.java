@@ -3,45 +3,83 @@
  */
 package parser;
 
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import decoder.BitRepair;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /*
- * This class scans the data pipe connected to the binary serial port
- * and queues the serial decoded blocks as buffered List.
+ * This class scans the byte ring connected to one receiver and queues
+ * the decoded blocks for the DataBlockParser. There is one of these for
+ * each receiver, and the blocks are tagged with its radar site.
  */
-public final class BufferDataBlocks extends Thread {
+public final class BufferDataBlocks extends Thread implements IFrameConsumer {
 
+    private static final int READSIZE = 8192;
+    private static final long READTIMEOUT = 1000L;     // 1 second
+    private static final int DEDUPSIZE = 16384;
+    private static final long SHEDLOG = 10L * 1000L;       // 10 seconds
+    //
     private final Thread process;
-    private final PipedInputStream data_pipe;
-    private final ArrayList<DataBlock> recordQueue;
-    private final ZuluMillis zulu;
+    private final ByteRingBuffer data_ring;
+    private final byte[] modes;
+    private final DataBlockQueue recordQueue;
     private final BeastMessageParser bmp;
-    private final MessageDigest messageDigest;
-    private final char[] hexArray;
-    private final int amplitude;
+    private final ShortFrameDedup dedup;
+    private final ReceiverClock clock;
+    private final FrameRecorder recorder;
+    private final IFrameFilter[] filters;
+    private final BitRepair repair;
+    private final int radarSite;
+    private final String name;
+    private final boolean lossless;
+    private final int shedLow;         // queue depth to drop DF0/4/5
+    private final int shedHigh;        // queue depth to drop DF16/20/21
     private boolean EOF;
     //
+    private long shedSurveillance;
+    private long shedCommB;
+    private long shedFull;
+    private long shedReported;         // total at the last log line
+    private long shedLogTime;
+    //
     private final Config config;
 
-    public BufferDataBlocks(PipedInputStream p, Config cf) throws NoSuchAlgorithmException {
-        hexArray = "0123456789ABCDEF".toCharArray();
-        zulu = new ZuluMillis();
+    public BufferDataBlocks(ByteRingBuffer r, DataBlockQueue q, Config cf, ReceiverConfig rc, IClock c) {
         bmp = new BeastMessageParser();
         config = cf;
         
-        amplitude = config.getAmplitude();
-        data_pipe = p;
-        recordQueue = new ArrayList<>();
-        messageDigest = MessageDigest.getInstance("SHA-1");
+        filters = createFilters(config);
+        repair = new BitRepair(config.getCrcRepair());
+        radarSite = rc.getRadarSite();
+        name = rc.getSourceName();
+        data_ring = r;
+        modes = new byte[READSIZE];
+        recordQueue = q;
+        dedup = new ShortFrameDedup(DEDUPSIZE, config.getDedupWindow() * 1000L);
+        clock = new ReceiverClock(c);
+
+        /*
+         * A replay can wait for the queue, and isn't recorded again
+         */
+        lossless = rc.isReplay();
+        shedLow = (int) ((long) q.getCapacity() * config.getShedLow() / 100L);
+        shedHigh = (int) ((long) q.getCapacity() * config.getShedHigh() / 100L);
+        shedSurveillance = 0L;
+        shedCommB = 0L;
+        shedFull = 0L;
+        shedReported = 0L;
+        shedLogTime = -SHEDLOG;
+
+        if ((config.getCaptureDir().isEmpty() == false) && (lossless == false)) {
+            recorder = new FrameRecorder(config.getCaptureDir(), config.getCaptureSegmentSize(),
+                    config.getCaptureSegmentTime(), rc);
+        } else {
+            recorder = null;
+        }
         
         process = new Thread(this);
-        process.setName("BufferDataBlocks");
+        process.setName("BufferDataBlocks " + name);
         process.setPriority(Thread.NORM_PRIORITY);
     }
 
@@ -53,119 +91,276 @@ public final class BufferDataBlocks extends Thread {
 
     /*
      * Method to functionally shutdown the program by setting EOF to true
+     *
+     * It waits for the thread to finish the bytes it has read, so the
+     * blocks are all queued before the DataBlockParser is closed.
      */
     public void close() {
-        recordQueue.clear();
         EOF = true;
+        data_ring.close();
+
+        try {
+            process.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /*
-     * Method to determine how many packets are on the pipe queue
-     *
-     * @return int a value representing how many packets are on the pipe queue
+     * Method to return the clock of this receiver
+     */
+    public ReceiverClock getClock() {
+        return clock;
+    }
+
+    /*
+     * Method to return the number of short frames dropped as duplicates
+     */
+    public long getDuplicateCount() {
+        return dedup.getHits();
+    }
+
+    /*
+     * Method to return the number of DF0/4/5 blocks dropped under load
+     */
+    public long getShedSurveillanceCount() {
+        return shedSurveillance;
+    }
+
+    /*
+     * Method to return the number of DF16/20/21 blocks dropped under load
+     */
+    public long getShedCommBCount() {
+        return shedCommB;
+    }
+
+    /*
+     * Method to return the number of blocks dropped with the queue full
      */
-    public synchronized int getQueueSize() {
-        return recordQueue.size();
+    public long getShedFullCount() {
+        return shedFull;
+    }
+
+    /*
+     * Method to return the number of short frames passed as unique
+     */
+    public long getUniqueCount() {
+        return dedup.getMisses();
+    }
+
+    /*
+     * Method to return the bit error repair, for its counters
+     */
+    public BitRepair getRepair() {
+        return repair;
+    }
+
+    /*
+     * The filters are run in order, cheapest first
+     */
+    private static IFrameFilter[] createFilters(Config cf) {
+        List<IFrameFilter> list = new ArrayList<>();
+
+        list.add(new SignalFilter(cf.getAmplitude()));
+        list.add(new DownlinkFilter(cf.getFilterDF()));
+
+        if ((cf.getFilterIcaoAllow().length > 0) || (cf.getFilterIcaoDeny().length > 0)) {
+            list.add(new IcaoFilter(cf.getFilterIcaoAllow(), cf.getFilterIcaoDeny()));
+        }
+
+        if (cf.getFilterRate() > 0) {
+            list.add(new RateFilter(cf.getFilterRate()));
+        }
+
+        return list.toArray(new IFrameFilter[0]);
+    }
+
+    /*
+     * Method to return the frame filters, for their counters
+     */
+    public IFrameFilter[] getFilters() {
+        return filters;
     }
 
     /*
      * Push the receive packet onto the queue
      *
      * There is a lot of duplicate data packets from receiver data.
+     * For 3000 track reports, about 2000 are duplicates, so the short
+     * frames are filtered here, before they take up room on the queue.
      */
-    private synchronized void pushData(int signal, String data) {
+    private void pushData(int type, int signal, long now, long mlat, long data0, long data1) {
         DataBlock block;
-        
-        switch (data.length()) {
-            case 14 -> {
-                messageDigest.update(data.getBytes());  // 20 byte 40 hex hash
-                String dataHash = bytesToHex(messageDigest.digest());
-                block = new DataBlock(DataBlock.SHORTBLOCK, zulu.getUTCTime(), signal, data, dataHash);
+        int df = (int) (data0 >>> 51) & 0x1F;
+
+        switch (type) {
+            case BeastMessageParser.SHORT -> {
+                if (dedup.isDuplicate(data0, now) == true) {
+                    return;
+                }
+
+                if (shed(df, now) == true) {
+                    return;
+                }
+
+                block = new DataBlock(DataBlock.SHORTBLOCK, radarSite, now, mlat, signal, data0, 0L);
             }
-            case 28 -> {
-                block = new DataBlock(DataBlock.LONGBLOCK, zulu.getUTCTime(), signal, data);
+            case BeastMessageParser.LONG -> {
+                if (shed(df, now) == true) {
+                    return;
+                }
+
+                block = new DataBlock(DataBlock.LONGBLOCK, radarSite, now, mlat, signal, data0, data1);
             }
             default -> {
                 return;
             }
         }
-        
-        if (recordQueue.add(block) != true) {
-            System.out.println("BufferDataBlocks::pushData could not add DataBlock to queue");
+
+        if (lossless == true) {
+            while ((recordQueue.offer(block) == false) && (recordQueue.isClosed() == false)) {
+                LockSupport.parkNanos(100000L);
+            }
+        } else if (recordQueue.offer(block) == false) {
+            shedFull++;
+            report(now);
+        }
+    }
+
+    /*
+     * When the decoder falls behind, drop the least useful blocks first,
+     * before the queue is full. The DF11/17/18 squitters carry the
+     * identity and position, so they are kept until there is no room.
+     */
+    private boolean shed(int df, long now) {
+        if (lossless == true) {
+            return false;
         }
+
+        switch (df) {
+            case 11, 17, 18 -> {
+                return false;
+            }
+            case 0, 4, 5 -> {
+                if (recordQueue.size() < shedLow) {
+                    return false;
+                }
+
+                shedSurveillance++;
+            }
+            default -> {
+                if (recordQueue.size() < shedHigh) {
+                    return false;
+                }
+
+                shedCommB++;
+            }
+        }
+
+        report(now);
+
+        return true;
     }
 
     /*
-     * Pop a packet off the queue
+     * Log what has been dropped, at most once every SHEDLOG
      */
-    public synchronized DataBlock popData() throws IndexOutOfBoundsException {
-        return recordQueue.remove(0);
+    private void report(long now) {
+        if ((now - shedLogTime) < SHEDLOG) {
+            return;
+        }
+
+        long total = shedSurveillance + shedCommB + shedFull;
+
+        System.out.printf("BufferDataBlocks::pushData %s queue %d%% full, dropped %d blocks"
+                + " (DF0/4/5 %d, DF16/20/21 %d, queue full %d)%n",
+                name, (100L * recordQueue.size()) / recordQueue.getCapacity(), total - shedReported,
+                shedSurveillance, shedCommB, shedFull);
+
+        shedReported = total;
+        shedLogTime = now;
     }
 
-    private String bytesToHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
+    /*
+     * Called by the Beast parser for each frame
+     */
+    @Override
+    public void frame(int type, int signal, long mlat, long data0, long data1) {
+        // Disregard Mode AC data
 
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
+        if (type == BeastMessageParser.MODEAC) {
+            return;
+        }
+
+        long now = clock.toUTC(mlat);
+
+        /*
+         * Fix 1 or 2 bit errors in the DF11/17/18 squitters, before
+         * the filters look at the address
+         */
+        if (repair.repair(type == BeastMessageParser.LONG, data0, data1) == true) {
+            data0 = repair.getData0();
+            data1 = repair.getData1();
+        }
 
-            hexChars[j * 2] = hexArray[v >>> 4];
-            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+        /*
+         * The filters drop low amplitude signals, and anything else
+         * the configuration file doesn't want
+         */
+        for (IFrameFilter filter : filters) {
+            if (filter.accept(type, signal, data0, data1, now) == false) {
+                return;
+            }
         }
 
-        return new String(hexChars);
+        if (recorder != null) {
+            recorder.record(now, mlat, type, signal, data0, data1);
+        }
+
+        pushData(type, signal, now, mlat, data0, data1);
     }
 
     /*
-     * Thread to read and parse the data from the pipe
+     * Thread to read and parse the data from the ring
      */
     @Override
     public void run() {
-        List<ExtractedBytes> buffer;
-        Iterator<ExtractedBytes> iterator;
-        ExtractedBytes packet;
-        byte[] modes;
         int available;
 
         while (EOF == false) {
-            try {
-                while ((available = data_pipe.available()) != 0) {
-                    modes = new byte[available];
-
-                    if (data_pipe.read(modes, 0, available) == -1) {
-                        // end of data_pipe, we are dead
-                        System.out.println("BufferDataBlocks::run Fatal: Lost serial communication");
-                        System.exit(0);
-                    }
-                    /*
-                     * Get the linked list of Mode-S Beast packets
-                     */
-                    buffer = bmp.parse(modes, available);
-
-                    iterator = buffer.iterator();
-
-                    while (iterator.hasNext()) {
-                        packet = iterator.next();
-
-                        int signal = packet.getSignalLevel();
-                        String data = bytesToHex(packet.getMessageBytes());
-
-                        // Disregard Mode AC data if enabled
-                        // Mode AC is 2 Bytes converted to 4 Hex Char
-                        // Disregard low amplitude signals
-
-                        if ((signal > amplitude) && (data.length() > 4)) {
-                            pushData(signal, data);
-                        }
-                    }
-                }
-                try {
-                    sleep(1);
-                } catch (InterruptedException z) {
-                }
-            } catch (IOException e) {
-                System.out.println("BufferDataBlocks::run - IO Exception: " + e.toString());
+            /*
+             * This parks until the receiver thread writes some bytes
+             */
+            available = data_ring.read(modes, 0, READSIZE, READTIMEOUT);
+
+            if (available == -1) {
+                // ring closed, we are shutting down
                 break;
+            } else if (available == 0) {
+                continue;
             }
+
+            /*
+             * One system time per read ties the MLAT counter to UTC.
+             * The parser calls frame() for each Mode-S Beast packet.
+             */
+            clock.reference();
+            bmp.parse(modes, 0, available, this);
+        }
+
+        if (recorder != null) {
+            recorder.close();
+        }
+
+        for (IFrameFilter filter : filters) {
+            System.out.println("BufferDataBlocks::run " + name + " filter " + filter.getName()
+                    + " dropped " + filter.getRejectedCount());
+        }
+
+        if (config.getCrcRepair() > 0) {
+            System.out.println("BufferDataBlocks::run " + name + " repaired " + repair.getCorrected1Count()
+                    + " 1-bit, " + repair.getCorrected2Count() + " 2-bit, "
+                    + repair.getUncorrectableCount() + " uncorrectable");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A single-producer/single-consumer byte ring buffer
+ *
+ * This replaces the PipedInputStream/PipedOutputStream pair that used to sit
+ * between the serial port thread and the Beast parser thread. The storage is
+ * allocated once, the producer never blocks, and the consumer parks until
+ * the producer signals that bytes are waiting.
+ *
+ * The head and tail are free running byte counters, so the buffer capacity
+ * must be a power of two. If the consumer falls behind and the ring is full,
+ * the new bytes are dropped and counted as an overrun. The Beast parser will
+ * resynchronize on the next <esc> character.
+ */
+public final class ByteRingBuffer {
+
+    private final byte[] ring;
+    private final int mask;
+    //
+    private final AtomicLong head;          // next byte to read (consumer)
+    private final AtomicLong tail;          // next byte to write (producer)
+    //
+    private final AtomicLong overrunBytes;
+    private final AtomicLong overrunEvents;
+    //
+    private volatile Thread consumer;
+    private volatile boolean closed;
+
+    /**
+     * Create a ring buffer
+     *
+     * @param size an int representing the requested capacity in bytes, which
+     * is rounded up to the next power of two
+     */
+    public ByteRingBuffer(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1024) - 1) << 1;
+
+        ring = new byte[capacity];
+        mask = capacity - 1;
+        head = new AtomicLong(0L);
+        tail = new AtomicLong(0L);
+        overrunBytes = new AtomicLong(0L);
+        overrunEvents = new AtomicLong(0L);
+        consumer = null;
+        closed = false;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Method to return how many bytes are waiting to be read
+     *
+     * @return an int representing the number of bytes in the ring
+     */
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Method to return the number of bytes dropped because the ring was full
+     *
+     * @return a long representing the number of bytes lost
+     */
+    public long getOverrunBytes() {
+        return overrunBytes.get();
+    }
+
+    /**
+     * Method to return the number of writes that could not fit in the ring
+     *
+     * @return a long representing the number of overrun events
+     */
+    public long getOverrunEvents() {
+        return overrunEvents.get();
+    }
+
+    /*
+     * Wake up the consumer and make all further reads return -1
+     */
+    public void close() {
+        closed = true;
+
+        Thread t = consumer;
+
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Producer method to copy bytes into the ring
+     *
+     * This never blocks. If there is not enough room for all the bytes, the
+     * whole write is dropped and counted, as a partial Beast frame is no use.
+     *
+     * @param data the source byte array
+     * @param offset the offset of the first byte in the source array
+     * @param length the number of bytes to copy
+     * @return a boolean which is true if the bytes were written
+     */
+    public boolean write(byte[] data, int offset, int length) {
+        long t = tail.get();
+
+        if ((t - head.get()) + length > ring.length) {
+            overrunBytes.addAndGet(length);
+            overrunEvents.incrementAndGet();
+            return false;
+        }
+
+        int index = (int) (t & mask);
+        int first = Math.min(length, ring.length - index);
+
+        System.arraycopy(data, offset, ring, index, first);
+
+        if (first < length) {
+            System.arraycopy(data, offset + first, ring, 0, length - first);
+        }
+
+        tail.set(t + length);           // publish the bytes before checking for a sleeper
+
+        Thread t2 = consumer;
+
+        if (t2 != null) {
+            LockSupport.unpark(t2);
+        }
+
+        return true;
+    }
+
+    /**
+     * Consumer method to copy bytes out of the ring
+     *
+     * This parks the calling thread until bytes are available, the timeout
+     * expires, or the ring is closed.
+     *
+     * @param data the destination byte array
+     * @param offset the offset of the first destination byte
+     * @param length the maximum number of bytes to copy
+     * @param timeout the maximum time to wait in milliseconds
+     * @return an int representing the bytes read, 0 on timeout, or -1 if closed
+     */
+    public int read(byte[] data, int offset, int length, long timeout) {
+        long h = head.get();
+        long t = tail.get();
+
+        if (t == h) {
+            long deadline = System.nanoTime() + (timeout * 1000000L);
+
+            consumer = Thread.currentThread();
+
+            try {
+                while ((t = tail.get()) == h) {
+                    if (closed == true) {
+                        return -1;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+
+                    if (remaining <= 0L) {
+                        return 0;
+                    }
+
+                    LockSupport.parkNanos(this, remaining);
+                }
+            } finally {
+                consumer = null;
+            }
+        }
+
+        int count = (int) Math.min((long) length, t - h);
+        int index = (int) (h & mask);
+        int first = Math.min(count, ring.length - index);
+
+        System.arraycopy(ring, index, data, offset, first);
+
+        if (first < count) {
+            System.arraycopy(ring, 0, data, offset + first, count - first);
+        }
+
+        head.lazySet(h + count);        // free the space
+
+        return count;
+    }
+}
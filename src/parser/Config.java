@@ -5,6 +5,9 @@ package parser;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 /*
@@ -12,6 +15,13 @@ import java.util.Properties;
  */
 public final class Config {
 
+    private static final int MAXRECEIVERS = 16;
+    /*
+     * The Downlink Formats the DataBlockParser decodes, 0, 4, 5, 11, 16, 17, 18, 20 and 21
+     */
+    private static final int DEFAULTDF = (1 << 0) | (1 << 4) | (1 << 5) | (1 << 11)
+            | (1 << 16) | (1 << 17) | (1 << 18) | (1 << 20) | (1 << 21);
+    //
     private int databaseTrackTimeout;
     private String databaseHost;
     private String databaseName;
@@ -23,10 +33,22 @@ public final class Config {
     private int amplitude;
     private int radarscan;
     private int radar_site;
+    private int ringCapacity;
+    private int dedupWindow;
+    private int queueCapacity;
+    private int shedLow;
+    private int shedHigh;
+    private int radarBacklog;
+    private int filterDF;
+    private int[] filterIcaoAllow;
+    private int[] filterIcaoDeny;
+    private int filterRate;
+    private int crcRepair;
     //
     private float latitude;     // degrees
     private float longitude;    // degrees
     private int elevation;      // feet
+    private int range;          // nautical miles
     //
     private Properties Props;
     private String userDir;
@@ -34,16 +56,46 @@ public final class Config {
     private String OSConfPath;
     //
     private String commPort;
+    private String inputType;
+    private String tcpHost;
+    private int tcpPort;
+    private String replayFile;
+    private double replaySpeed;
+    private final ArrayList<ReceiverConfig> receivers;
+    //
+    private String captureDir;
+    private int captureSegmentSize;
+    private int captureSegmentTime;
 
     public Config(String val) {
         String temp;
 
         commPort = "COM4";
+        inputType = "serial";
+        tcpHost = "127.0.0.1";
+        tcpPort = 30005;
+        replayFile = "";
+        replaySpeed = 1.0;
+        receivers = new ArrayList<>();
+        captureDir = "";
+        captureSegmentSize = 64;
+        captureSegmentTime = 60;
         airportName = "";
         radarscan = 10;      // value 3 simulates 20 RPM antenna, 10 would be 6 RPM
         radar_site = 0;
         databaseTrackTimeout = 1;    // 1 minute
         amplitude = 0;
+        ringCapacity = 65536;
+        dedupWindow = radarscan;
+        queueCapacity = 65536;
+        shedLow = 50;
+        shedHigh = 75;
+        radarBacklog = 5000;
+        filterDF = DEFAULTDF;
+        filterIcaoAllow = new int[0];
+        filterIcaoDeny = new int[0];
+        filterRate = 0;
+        crcRepair = 0;
         //
         latitude = 0.0f;
         longitude = 0.0f;
@@ -103,6 +155,21 @@ public final class Config {
                 }
             }
 
+            temp = Props.getProperty("radar.backlog");
+            if (temp == null) {
+                radarBacklog = 5000;
+            } else {
+                try {
+                    radarBacklog = Integer.parseInt(temp.trim());
+
+                    if (radarBacklog < 0) {
+                        radarBacklog = 0;
+                    }
+                } catch (NumberFormatException e) {
+                    radarBacklog = 5000;
+                }
+            }
+
             temp = Props.getProperty("comm.port");
             if (temp == null) {
                 commPort = "COM4";
@@ -111,6 +178,54 @@ public final class Config {
                 commPort = temp.trim();
             }
 
+            temp = Props.getProperty("input.type");
+            if (temp == null) {
+                inputType = ReceiverConfig.SERIAL;
+            } else {
+                inputType = temp.trim().toLowerCase();
+
+                if (ReceiverConfig.isValidType(inputType) == false) {
+                    System.out.println("input.type " + inputType + " unknown, set to serial");
+                    inputType = ReceiverConfig.SERIAL;
+                }
+            }
+
+            temp = Props.getProperty("tcp.host");
+            if (temp == null) {
+                tcpHost = "127.0.0.1";
+            } else {
+                tcpHost = temp.trim();
+            }
+
+            temp = Props.getProperty("tcp.port");
+            if (temp == null) {
+                tcpPort = 30005;
+            } else {
+                try {
+                    tcpPort = Integer.parseInt(temp.trim());
+
+                    if ((tcpPort < 1) || (tcpPort > 65535)) {
+                        tcpPort = 30005;
+                    }
+                } catch (NumberFormatException e) {
+                    tcpPort = 30005;
+                }
+            }
+
+            temp = Props.getProperty("replay.file");
+            if (temp == null) {
+                replayFile = "";
+            } else {
+                replayFile = temp.trim();
+            }
+
+            replaySpeed = parseSpeed(Props.getProperty("replay.speed"), 1.0);
+
+            if ((inputType.equals(ReceiverConfig.REPLAY) == true) && (replayFile.isEmpty() == true)) {
+                System.out.println("input.type replay needs replay.file, set to serial");
+                inputType = ReceiverConfig.SERIAL;
+            }
+
             temp = Props.getProperty("db.tracktimeout");
             if (temp == null) {
                 databaseTrackTimeout = 1;
@@ -175,6 +290,73 @@ public final class Config {
                 }
             }
 
+            /*
+             * The DF sets are a bit mask, bit n for DF n
+             */
+            temp = Props.getProperty("filter.df.allow");
+            if (temp == null) {
+                filterDF = DEFAULTDF;
+            } else {
+                filterDF = 0;
+
+                for (int df : parseList(temp, 10)) {
+                    if ((df >= 0) && (df < 32)) {
+                        filterDF |= (1 << df);
+                    }
+                }
+            }
+
+            temp = Props.getProperty("filter.df.deny");
+            if (temp != null) {
+                for (int df : parseList(temp, 10)) {
+                    if ((df >= 0) && (df < 32)) {
+                        filterDF &= ~(1 << df);
+                    }
+                }
+            }
+
+            temp = Props.getProperty("filter.icao.allow");
+            if (temp != null) {
+                filterIcaoAllow = parseList(temp, 16);
+            }
+
+            temp = Props.getProperty("filter.icao.deny");
+            if (temp != null) {
+                filterIcaoDeny = parseList(temp, 16);
+            }
+
+            temp = Props.getProperty("filter.rate");
+            if (temp == null) {
+                filterRate = 0;
+            } else {
+                try {
+                    filterRate = Integer.parseInt(temp.trim());
+
+                    if (filterRate < 0) {
+                        filterRate = 0;
+                    }
+                } catch (NumberFormatException e) {
+                    filterRate = 0;
+                }
+            }
+
+            temp = Props.getProperty("crc.repair");
+            if (temp == null) {
+                crcRepair = 0;
+            } else {
+                try {
+                    crcRepair = Integer.parseInt(temp.trim());
+
+                    if (crcRepair < 0) {
+                        crcRepair = 0;
+                    } else if (crcRepair > 2) {
+                        crcRepair = 2;
+                    }
+                } catch (NumberFormatException e) {
+                    crcRepair = 0;
+                }
+            }
+
             temp = Props.getProperty("station.latitude");
             if (temp == null) {
                 latitude = 35.0f;
@@ -210,12 +392,296 @@ public final class Config {
                 }
             }
 
+            temp = Props.getProperty("station.range");
+            if (temp == null) {
+                range = 200;
+            } else {
+                try {
+                    range = Integer.parseInt(temp.trim());
+
+                    if (range < 10) {
+                        range = 10;
+                    } else if (range > 400) {
+                        range = 400;
+                    }
+                } catch (NumberFormatException e) {
+                    range = 200;
+                }
+            }
+
+            temp = Props.getProperty("ring.capacity");
+            if (temp == null) {
+                ringCapacity = 65536;
+            } else {
+                try {
+                    ringCapacity = Integer.parseInt(temp.trim());
+
+                    if (ringCapacity < 4096) {
+                        ringCapacity = 4096;
+                    } else if (ringCapacity > (64 * 1024 * 1024)) {
+                        ringCapacity = 64 * 1024 * 1024;
+                    }
+                } catch (NumberFormatException e) {
+                    ringCapacity = 65536;
+                }
+            }
+
+            temp = Props.getProperty("queue.capacity");
+            if (temp == null) {
+                queueCapacity = 65536;
+            } else {
+                try {
+                    queueCapacity = Integer.parseInt(temp.trim());
+
+                    if (queueCapacity < 1024) {
+                        queueCapacity = 1024;
+                    } else if (queueCapacity > (4 * 1024 * 1024)) {
+                        queueCapacity = 4 * 1024 * 1024;
+                    }
+                } catch (NumberFormatException e) {
+                    queueCapacity = 65536;
+                }
+            }
+
+            temp = Props.getProperty("queue.shed.low");
+            if (temp == null) {
+                shedLow = 50;
+            } else {
+                try {
+                    shedLow = Integer.parseInt(temp.trim());
+
+                    if (shedLow < 1) {
+                        shedLow = 1;
+                    } else if (shedLow > 100) {
+                        shedLow = 100;
+                    }
+                } catch (NumberFormatException e) {
+                    shedLow = 50;
+                }
+            }
+
+            temp = Props.getProperty("queue.shed.high");
+            if (temp == null) {
+                shedHigh = 75;
+            } else {
+                try {
+                    shedHigh = Integer.parseInt(temp.trim());
+
+                    if (shedHigh > 100) {
+                        shedHigh = 100;
+                    }
+                } catch (NumberFormatException e) {
+                    shedHigh = 75;
+                }
+            }
+
+            if (shedHigh < shedLow) {
+                shedHigh = shedLow;
+            }
+
+            temp = Props.getProperty("dedup.window");
+            if (temp == null) {
+                dedupWindow = radarscan;
+            } else {
+                try {
+                    dedupWindow = Integer.parseInt(temp.trim());
+
+                    if (dedupWindow < 1) {
+                        dedupWindow = 1;
+                    } else if (dedupWindow > 60) {
+                        dedupWindow = 60;
+                    }
+                } catch (NumberFormatException e) {
+                    dedupWindow = radarscan;
+                }
+            }
+
             temp = Props.getProperty("station.airport");
             if (temp == null) {
                 airportName = "";
             } else {
                 airportName = temp.trim();
             }
+
+            temp = Props.getProperty("capture.dir");
+            if (temp == null) {
+                captureDir = "";
+            } else {
+                captureDir = temp.trim();
+            }
+
+            temp = Props.getProperty("capture.segment.size");
+            if (temp == null) {
+                captureSegmentSize = 64;
+            } else {
+                try {
+                    captureSegmentSize = Integer.parseInt(temp.trim());
+
+                    if (captureSegmentSize < 1) {
+                        captureSegmentSize = 1;
+                    } else if (captureSegmentSize > 1024) {
+                        captureSegmentSize = 1024;
+                    }
+                } catch (NumberFormatException e) {
+                    captureSegmentSize = 64;
+                }
+            }
+
+            temp = Props.getProperty("capture.segment.time");
+            if (temp == null) {
+                captureSegmentTime = 60;
+            } else {
+                try {
+                    captureSegmentTime = Integer.parseInt(temp.trim());
+
+                    if (captureSegmentTime < 1) {
+                        captureSegmentTime = 1;
+                    } else if (captureSegmentTime > 1440) {
+                        captureSegmentTime = 1440;
+                    }
+                } catch (NumberFormatException e) {
+                    captureSegmentTime = 60;
+                }
+            }
+
+            for (int n = 1; n <= MAXRECEIVERS; n++) {
+                parseReceiver(n);
+            }
+        }
+
+        /*
+         * Without any numbered receivers, use the single receiver settings
+         */
+        if (receivers.isEmpty() == true) {
+            receivers.add(new ReceiverConfig(0, inputType, commPort, tcpHost, tcpPort, radar_site,
+                    replayFile, replaySpeed));
+        }
+    }
+
+    /*
+     * Read the receiver.N.* properties, if there are any for this N.
+     * Anything not given is taken from the single receiver settings.
+     */
+    private void parseReceiver(int n) {
+        String prefix = "receiver." + n + ".";
+        String type;
+        String comm;
+        String host;
+        String file;
+        String temp;
+        double speed;
+        int port;
+        int site;
+
+        temp = Props.getProperty(prefix + "type");
+        if (temp == null) {
+            return;
+        }
+
+        type = temp.trim().toLowerCase();
+
+        if (ReceiverConfig.isValidType(type) == false) {
+            System.out.println(prefix + "type " + type + " unknown, receiver ignored");
+            return;
+        }
+
+        temp = Props.getProperty(prefix + "comm.port");
+        if (temp == null) {
+            comm = commPort;
+        } else {
+            comm = temp.trim();
+        }
+
+        temp = Props.getProperty(prefix + "tcp.host");
+        if (temp == null) {
+            host = tcpHost;
+        } else {
+            host = temp.trim();
+        }
+
+        temp = Props.getProperty(prefix + "tcp.port");
+        if (temp == null) {
+            port = tcpPort;
+        } else {
+            try {
+                port = Integer.parseInt(temp.trim());
+
+                if ((port < 1) || (port > 65535)) {
+                    port = tcpPort;
+                }
+            } catch (NumberFormatException e) {
+                port = tcpPort;
+            }
+        }
+
+        temp = Props.getProperty(prefix + "radar.site");
+        if (temp == null) {
+            site = radar_site;
+            System.out.println(prefix + "radar.site not set, set to " + radar_site);
+        } else {
+            try {
+                site = Integer.parseInt(temp.trim());
+            } catch (NumberFormatException e) {
+                site = radar_site;
+            }
+        }
+
+        temp = Props.getProperty(prefix + "replay.file");
+        if (temp == null) {
+            file = replayFile;
+        } else {
+            file = temp.trim();
+        }
+
+        speed = parseSpeed(Props.getProperty(prefix + "replay.speed"), replaySpeed);
+
+        if ((type.equals(ReceiverConfig.REPLAY) == true) && (file.isEmpty() == true)) {
+            System.out.println(prefix + "type replay needs " + prefix + "replay.file, receiver ignored");
+            return;
+        }
+
+        receivers.add(new ReceiverConfig(n, type, comm, host, port, site, file, speed));
+    }
+
+    /*
+     * A comma separated list of numbers, skipping any that don't parse
+     */
+    private int[] parseList(String temp, int radix) {
+        String[] token = temp.split(",");
+        int[] list = new int[token.length];
+        int count = 0;
+
+        for (String t : token) {
+            try {
+                if (t.isBlank() == false) {
+                    list[count++] = Integer.parseInt(t.trim(), radix);
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Config::parseList ignoring " + t.trim());
+            }
+        }
+
+        return Arrays.copyOf(list, count);
+    }
+
+    /*
+     * A replay speed is a multiple of real time, and 0 is as fast as possible
+     */
+    private double parseSpeed(String temp, double def) {
+        if (temp == null) {
+            return def;
+        }
+
+        try {
+            double val = Double.parseDouble(temp.trim());
+
+            if (val < 0.0 || Double.isNaN(val)) {
+                return def;
+            }
+
+            return val;
+        } catch (NumberFormatException e) {
+            return def;
         }
     }
 
@@ -228,6 +694,69 @@ public final class Config {
         return commPort;
     }
 
+    /**
+     * Method to return where the Beast data comes from
+     *
+     * @return a string Representing the input type, serial, tcp or replay
+     */
+    public String getInputType() {
+        return inputType;
+    }
+
+    /**
+     * Method to return the Beast TCP server host name or address
+     *
+     * @return a string Representing the TCP host
+     */
+    public String getTcpHost() {
+        return tcpHost;
+    }
+
+    /**
+     * Method to return the Beast TCP server port
+     *
+     * @return an int Representing the TCP port
+     */
+    public int getTcpPort() {
+        return tcpPort;
+    }
+
+    /**
+     * Method to return the receivers to read Beast data from
+     *
+     * @return a List Representing one or more receiver settings
+     */
+    public List<ReceiverConfig> getReceivers() {
+        return receivers;
+    }
+
+    /**
+     * Getter to return the directory for the raw frame capture log
+     *
+     * @return a string Representing the capture directory, or empty if off
+     */
+    public String getCaptureDir() {
+        return captureDir;
+    }
+
+    /**
+     * Getter to return the capture log segment size
+     *
+     * @return an int Representing the segment size in megabytes
+     */
+    public int getCaptureSegmentSize() {
+        return captureSegmentSize;
+    }
+
+    /**
+     * Getter to return how long a capture log segment stays open
+     *
+     * @return an int Representing the segment time in minutes
+     */
+    public int getCaptureSegmentTime() {
+        return captureSegmentTime;
+    }
+
     /**
      * Getter to return the filename path of the configuration file
      *
@@ -277,6 +806,46 @@ public final class Config {
         return amplitude;
     }
 
+    /**
+     * Getter to return the Downlink Formats kept by the frame filter
+     *
+     * @return an int Representing a bit mask, bit n set to keep DF n
+     */
+    public int getFilterDF() {
+        return filterDF;
+    }
+
+    /**
+     * Getter to return the only aircraft addresses kept
+     *
+     * @return an int array Representing the addresses, or empty to keep all
+     */
+    public int[] getFilterIcaoAllow() {
+        return filterIcaoAllow;
+    }
+
+    /**
+     * Getter to return the aircraft addresses dropped
+     *
+     * @return an int array Representing the addresses
+     */
+    public int[] getFilterIcaoDeny() {
+        return filterIcaoDeny;
+    }
+
+    /**
+     * Getter to return the most frames per second kept from one address
+     *
+     * @return an int Representing the rate limit, or 0 if off
+     */
+    public int getFilterRate() {
+        return filterRate;
+    }
+
+    public int getCrcRepair() {
+        return crcRepair;
+    }
+
     public float getStationLatitude() {
         return latitude;
     }
@@ -289,6 +858,10 @@ public final class Config {
         return elevation;
     }
 
+    public int getStationRange() {
+        return range;
+    }
+
     public String getStationAirport() {
         return airportName;
     }
@@ -306,4 +879,62 @@ public final class Config {
     public int getRadarScanTime() {
         return this.radarscan;
     }
+
+    /**
+     * Getter to return how many decoded blocks will cause the database to be
+     * updated before the radar scan time is up. Zero means only on the scan.
+     *
+     * @return an int Representing the backlog threshold in blocks
+     */
+    public int getRadarBacklog() {
+        return this.radarBacklog;
+    }
+
+    /**
+     * Getter to return the size of the byte ring between the receiver
+     * input thread and the Beast parser thread
+     *
+     * @return an int Representing the ring capacity in bytes
+     */
+    public int getRingCapacity() {
+        return this.ringCapacity;
+    }
+
+    /**
+     * Getter to return how many decoded blocks can wait between the
+     * Beast parser thread and the DataBlockParser thread
+     *
+     * @return an int Representing the queue capacity in blocks
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * Getter to return the queue fill where DF0/4/5 replies are dropped
+     *
+     * @return an int Representing the queue fill in percent
+     */
+    public int getShedLow() {
+        return this.shedLow;
+    }
+
+    /**
+     * Getter to return the queue fill where DF16/20/21 replies are dropped
+     *
+     * @return an int Representing the queue fill in percent
+     */
+    public int getShedHigh() {
+        return this.shedHigh;
+    }
+
+    /**
+     * Getter to return how long a short frame is remembered for duplicate
+     * filtering. This defaults to the radar scan time.
+     *
+     * @return an int Representing the duplicate window in seconds
+     */
+    public int getDedupWindow() {
+        return this.dedupWindow;
+    }
 }
@@ -7,53 +7,102 @@ package parser;
  * The DataBlock structure is the raw receive data detected at the serial port
  * that are 56-bit and 112-bit Mode-S Packets.
  *
- * Short Blocks have a hash code, as they are duplicate filtered.
- * Long Blocks do not have a hash code, as they are not duplicate filtered.
+ * The packet is kept as two primitive words, seven bytes per word, in the
+ * same order they came off the wire. A short block is the low 56 bits of
+ * data0, and a long block is bits 1 - 56 in data0 and bits 57 - 112 in data1.
+ *
+ * Each block is tagged with the radar site of the receiver it came from.
+ * The time is when the receiver detected it, from the MLAT counter, and
+ * the raw counter is kept as well.
+ *
+ * Short Blocks are duplicate filtered before they are queued.
+ * Long Blocks are not duplicate filtered.
  */
 public final class DataBlock {
 
     public static final int SHORTBLOCK = 0;
     public static final int LONGBLOCK = 1;
     //
+    private static final char[] HEXARRAY = "0123456789ABCDEF".toCharArray();
+    //
     private final long time;
+    private final long mlat;
     private final int signalLevel;
-    private final String dataHash;
-    private final String data;
+    private final long data0;
+    private final long data1;
     private final int blockType;
+    private final int radarSite;
 
-    public DataBlock(int bt, long t, int s, String d) {
+    public DataBlock(int bt, int rs, long t, long m, int s, long d0, long d1) {
         blockType = bt;
+        radarSite = rs;
         time = t;
+        mlat = m;
         signalLevel = s;
-        data = d;
-        dataHash = "";
-    }
-
-    public DataBlock(int bt, long t, int s, String d, String dh) {
-        blockType = bt;
-        time = t;
-        signalLevel = s;
-        data = d;
-        dataHash = dh;
+        data0 = d0;
+        data1 = d1;
     }
 
     public int getBlockType() {
         return blockType;
     }
-    
+
+    public int getRadarSite() {
+        return radarSite;
+    }
+
     public int getSignalLevel() {
         return signalLevel;
     }
 
-    public String getDataHash() {
-        return dataHash;
+    /*
+     * The Downlink Format is always the first five bits
+     */
+    public int getDF() {
+        return (int) (data0 >>> 51) & 0x1F;
     }
-    
+
+    public long getData0() {
+        return data0;
+    }
+
+    public long getData1() {
+        return data1;
+    }
+
+    /*
+     * Format the packet as hex, only used for logging
+     *
+     * @return a String representing 14 or 28 hex digits
+     */
     public String getData() {
-        return data;
+        int bytes = (blockType == SHORTBLOCK) ? 7 : 14;
+        char[] hexChars = new char[bytes * 2];
+
+        for (int j = 0; j < bytes; j++) {
+            int v;
+
+            if (j < 7) {
+                v = (int) (data0 >>> (8 * (6 - j))) & 0xFF;
+            } else {
+                v = (int) (data1 >>> (8 * (13 - j))) & 0xFF;
+            }
+
+            hexChars[j * 2] = HEXARRAY[v >>> 4];
+            hexChars[j * 2 + 1] = HEXARRAY[v & 0x0F];
+        }
+
+        return new String(hexChars);
     }
 
     public long getUTCTime() {
         return time;
     }
-}
\ No newline at end of file
+
+    /*
+     * The 48-bit 12 MHz receiver counter, or zero if not sent
+     */
+    public long getMlat() {
+        return mlat;
+    }
+}
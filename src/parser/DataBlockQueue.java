@@ -0,0 +1,248 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A bounded lock-free queue of DataBlocks
+ *
+ * This sits between the BufferDataBlocks threads (the producers) and the
+ * DataBlockParser thread (the only consumer). It replaces the synchronized
+ * ArrayList that was drained with remove(0), which shifted the whole list
+ * for every block taken off.
+ *
+ * Each slot has a sequence number that says whose turn it is. A producer
+ * claims a slot by moving the tail with a compare-and-set, fills it, and
+ * then publishes it by advancing the slot sequence. The consumer takes the
+ * slots in order without any compare-and-set, and hands them back to the
+ * producers by advancing the sequence one lap ahead.
+ *
+ * The storage is allocated once. If the queue is full the new block is
+ * rejected and counted, as the producers must never wait on the decoder.
+ * The consumer parks when the queue is empty, and a producer only pays for
+ * an unpark when the consumer is actually waiting.
+ */
+public final class DataBlockQueue {
+
+    private final DataBlock[] blocks;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    //
+    private final AtomicLong head;          // next slot to take (consumer)
+    private final AtomicLong tail;          // next slot to fill (producers)
+    //
+    private final AtomicLong highWater;
+    private final AtomicLong rejected;
+    //
+    private volatile Thread consumer;
+    private volatile boolean closed;
+
+    /**
+     * Create a queue
+     *
+     * @param size an int representing the requested capacity in blocks, which
+     * is rounded up to the next power of two
+     */
+    public DataBlockQueue(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1024) - 1) << 1;
+
+        blocks = new DataBlock[capacity];
+        sequence = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            sequence.set(i, i);
+        }
+
+        head = new AtomicLong(0L);
+        tail = new AtomicLong(0L);
+        highWater = new AtomicLong(0L);
+        rejected = new AtomicLong(0L);
+        consumer = null;
+        closed = false;
+    }
+
+    public int getCapacity() {
+        return blocks.length;
+    }
+
+    /**
+     * Method to return how many blocks are waiting on the queue
+     *
+     * @return an int representing the queue depth
+     */
+    public int size() {
+        long depth = tail.get() - head.get();
+
+        return (int) Math.max(0L, Math.min(depth, (long) blocks.length));
+    }
+
+    /**
+     * Method to return the most blocks that have been waiting at one time
+     *
+     * @return a long representing the high water mark
+     */
+    public long getHighWater() {
+        return highWater.get();
+    }
+
+    /**
+     * Method to return the number of blocks lost because the queue was full
+     *
+     * @return a long representing the rejected count
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Producer method to add a block to the queue
+     *
+     * This never blocks, and may be called from more than one thread.
+     *
+     * @param block the DataBlock to add
+     * @return a boolean which is true if the block was queued
+     */
+    public boolean offer(DataBlock block) {
+        long pos = tail.get();
+        int index;
+
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequence.get(index) - pos;
+
+            if (diff == 0L) {
+                if (tail.compareAndSet(pos, pos + 1L)) {
+                    break;
+                }
+
+                pos = tail.get();
+            } else if (diff < 0L) {
+                rejected.incrementAndGet();     // consumer has not freed this slot
+                return false;
+            } else {
+                pos = tail.get();               // another producer took it
+            }
+        }
+
+        blocks[index] = block;
+        sequence.set(index, pos + 1L);          // publish to the consumer
+
+        long depth = Math.min((pos + 1L) - head.get(), (long) blocks.length);
+
+        if (depth > highWater.get()) {
+            highWater.accumulateAndGet(depth, Math::max);
+        }
+
+        Thread t = consumer;
+
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+
+        return true;
+    }
+
+    /*
+     * Wake up the consumer and make all further waits return false
+     */
+    public void close() {
+        closed = true;
+
+        Thread t = consumer;
+
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /*
+     * True if the next slot for the consumer has been published
+     */
+    private boolean ready() {
+        long pos = head.get();
+
+        return sequence.get((int) (pos & mask)) == (pos + 1L);
+    }
+
+    /**
+     * Consumer method to wait for blocks to arrive
+     *
+     * This parks the calling thread until a block is published, the timeout
+     * expires, or the queue is closed.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return a boolean which is true if there are blocks waiting
+     */
+    public boolean await(long timeout) {
+        if (ready() == true) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + (timeout * 1000000L);
+
+        consumer = Thread.currentThread();
+
+        try {
+            while (ready() == false) {      // check again after announcing we may sleep
+                if (closed == true) {
+                    return false;
+                }
+
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0L) {
+                    return false;
+                }
+
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            consumer = null;
+        }
+
+        return true;
+    }
+
+    /**
+     * Consumer method to move the waiting blocks to a collection
+     *
+     * Only the DataBlockParser thread may call this.
+     *
+     * @param dest the collection to add the blocks to
+     * @param max an int representing the most blocks to move
+     * @return an int representing the number of blocks moved
+     */
+    public int drainTo(Collection<? super DataBlock> dest, int max) {
+        long pos = head.get();
+        int count = 0;
+
+        while (count < max) {
+            int index = (int) (pos & mask);
+
+            if (sequence.get(index) != (pos + 1L)) {
+                break;                          // empty, or not yet published
+            }
+
+            dest.add(blocks[index]);
+            blocks[index] = null;
+            sequence.set(index, pos + blocks.length);     // hand the slot back
+
+            pos++;
+            count++;
+        }
+
+        head.lazySet(pos);
+
+        return count;
+    }
+}
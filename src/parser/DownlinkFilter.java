@@ -0,0 +1,42 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * Keep only the Downlink Formats in a set
+ *
+ * The set is a 32 bit mask, bit n for DF n, so the test is a shift.
+ */
+public final class DownlinkFilter implements IFrameFilter {
+
+    private final int allowed;
+    private long rejected;
+
+    public DownlinkFilter(int mask) {
+        allowed = mask;
+        rejected = 0L;
+    }
+
+    @Override
+    public boolean accept(int type, int signal, long data0, long data1, long time) {
+        int df = (int) (data0 >>> 51) & 0x1F;
+
+        if (((allowed >>> df) & 1) != 0) {
+            return true;
+        }
+
+        rejected++;
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "df";
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected;
+    }
+}
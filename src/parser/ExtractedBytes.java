@@ -7,10 +7,12 @@ public final class ExtractedBytes {
 
     private final byte[] messageBytes;
     private final int signalLevel;
+    private final long mlat;
 
-    public ExtractedBytes(int sl, byte[] mb) {
+    public ExtractedBytes(int sl, long m, byte[] mb) {
         messageBytes = mb;
         signalLevel = sl;
+        mlat = m;
     }
 
     public byte[] getMessageBytes() {
@@ -20,4 +22,8 @@ public final class ExtractedBytes {
     public int getSignalLevel() {
         return signalLevel;
     }
+
+    public long getMlat() {
+        return mlat;
+    }
 }
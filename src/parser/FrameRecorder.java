@@ -0,0 +1,390 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/*
+ * A raw frame capture log
+ *
+ * Every accepted Beast frame from one receiver is appended to a memory
+ * mapped file, so a record is just a few stores into memory and the
+ * operating system writes the pages out in the background.
+ *
+ * The log is split into segments. A new segment is started when the
+ * current one is full, or has been open longer than the segment time.
+ *
+ * Each segment starts with a 32 byte header:
+ *
+ *   0  8 bytes "MODESCAP"
+ *   8  int     format version (1)
+ *  12  int     record size (32)
+ *  16  int     radar site
+ *  20  int     receiver number
+ *  24  long    segment start time (UTC milliseconds)
+ *
+ * followed by fixed 32 byte records, all big-endian:
+ *
+ *   0  long    receive time (UTC milliseconds)
+ *   8  long    48-bit MLAT counter
+ *  16  byte    Beast frame type ('2' short, '3' long)
+ *  17  byte    signal level
+ *  18  14 byte raw Mode-S frame (a short frame uses the first 7)
+ *
+ * The unused end of a segment is zero, and a reader stops at the first
+ * record with a zero frame type.
+ *
+ * Creating and mapping a file can take a while, so a helper thread keeps
+ * the next segment ready, and closes the old one. A roll on the receiver
+ * thread only swaps in the ready map and writes the header. The file name
+ * has the time the file was made, and a sequence number that is moved on
+ * until the name is new, so an existing segment is never written over.
+ * The header has the time of the first record.
+ *
+ * Only the BufferDataBlocks thread writes to a recorder.
+ */
+public final class FrameRecorder implements Runnable {
+
+    public static final String MAGIC = "MODESCAP";
+    public static final int VERSION = 1;
+    public static final int HEADERSIZE = 32;
+    public static final int RECORDSIZE = 32;
+    //
+    private final File directory;
+    private final long segmentBytes;
+    private final long segmentMillis;
+    private final int radarSite;
+    private final int receiver;
+    private final SimpleDateFormat fileDate;
+    private final Thread helper;
+    private final Object lock;
+    //
+    private Segment current;
+    private MappedByteBuffer map;
+    private int position;
+    private long segmentStart;
+    private boolean failed;
+    //
+    private Segment ready;          // made by the helper, guarded by lock
+    private Segment retired;        // closed by the helper, guarded by lock
+    private boolean prepareFailed;  // guarded by lock
+    private boolean EOF;            // guarded by lock
+    private int sequence;           // helper thread only
+    //
+    private long records;
+    private long segments;
+
+    /**
+     * Create a recorder
+     *
+     * @param dir a String representing the directory for the segment files
+     * @param sizeMB an int representing the segment size in megabytes
+     * @param minutes an int representing the longest a segment stays open
+     * @param rc the ReceiverConfig of the receiver being recorded
+     */
+    public FrameRecorder(String dir, int sizeMB, int minutes, ReceiverConfig rc) {
+        directory = new File(dir);
+        segmentBytes = HEADERSIZE + (((sizeMB * 1024L * 1024L) - HEADERSIZE) / RECORDSIZE) * RECORDSIZE;
+        segmentMillis = minutes * 60L * 1000L;
+        radarSite = rc.getRadarSite();
+        receiver = rc.getNumber();
+
+        fileDate = new SimpleDateFormat("yyyyMMdd-HHmmss");
+        fileDate.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        lock = new Object();
+        current = null;
+        map = null;
+        position = 0;
+        segmentStart = 0L;
+        failed = false;
+        ready = null;
+        retired = null;
+        prepareFailed = false;
+        EOF = false;
+        sequence = 0;
+        records = 0L;
+        segments = 0L;
+
+        helper = new Thread(this);
+        helper.setName("FrameRecorder " + radarSite + "-" + receiver);
+        helper.setPriority(Thread.NORM_PRIORITY);
+
+        if (directory.isDirectory() == false && directory.mkdirs() == false) {
+            System.out.println("FrameRecorder::FrameRecorder unable to create " + directory.getPath());
+            failed = true;
+        } else {
+            helper.start();
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getSegmentCount() {
+        return segments;
+    }
+
+    /**
+     * Append one frame to the log
+     *
+     * @param time a long representing the receive time in UTC milliseconds
+     * @param mlat a long representing the 48-bit MLAT counter
+     * @param type an int representing the Beast frame type
+     * @param signal an int representing the signal level
+     * @param data0 a long representing the first seven bytes of the frame
+     * @param data1 a long representing the last seven bytes of a long frame
+     */
+    public void record(long time, long mlat, int type, int signal, long data0, long data1) {
+        if (failed == true) {
+            return;
+        }
+
+        if ((map == null) || (position + RECORDSIZE > segmentBytes)
+                || ((time - segmentStart) >= segmentMillis)) {
+            if (roll(time) == false) {
+                return;
+            }
+        }
+
+        int p = position;
+
+        /*
+         * The type, signal and frame are the last 16 bytes. The first
+         * long holds the type, signal and frame bytes 0 - 5, and the
+         * second holds frame byte 6 and bytes 7 - 13.
+         */
+        map.putLong(p, time);
+        map.putLong(p + 8, mlat);
+        map.putLong(p + 16, ((long) (type & 0xFF) << 56) | ((long) (signal & 0xFF) << 48) | (data0 >>> 8));
+        map.putLong(p + 24, ((data0 & 0xFF) << 56) | data1);
+
+        position = p + RECORDSIZE;
+        records++;
+    }
+
+    /*
+     * Hand the current segment to the helper, and start the ready one.
+     * This only waits if the helper hasn't finished the next segment yet.
+     */
+    private boolean roll(long time) {
+        Segment next;
+
+        synchronized (lock) {
+            try {
+                while ((ready == null) && (prepareFailed == false)) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                // punt
+            }
+
+            next = ready;
+            ready = null;
+            retired = current;
+            lock.notifyAll();
+        }
+
+        current = null;
+        map = null;
+
+        if (next == null) {
+            failed = true;
+            return false;
+        }
+
+        current = next;
+        map = next.map;
+
+        for (int i = 0; i < 8; i++) {
+            map.put(i, (byte) MAGIC.charAt(i));
+        }
+
+        map.putInt(8, VERSION);
+        map.putInt(12, RECORDSIZE);
+        map.putInt(16, radarSite);
+        map.putInt(20, receiver);
+        map.putLong(24, time);
+
+        position = HEADERSIZE;
+        segmentStart = time;
+        segments++;
+
+        return true;
+    }
+
+    /*
+     * The helper thread keeps one segment ready, and closes the
+     * retired segments
+     */
+    @Override
+    public void run() {
+        Segment old;
+        boolean make;
+
+        while (true) {
+            synchronized (lock) {
+                try {
+                    while ((EOF == false) && (retired == null)
+                            && ((ready != null) || (prepareFailed == true))) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    // punt
+                }
+
+                if (EOF == true) {
+                    old = retired;
+                    retired = null;
+
+                    if (ready != null) {
+                        ready.delete();
+                        ready = null;
+                    }
+
+                    break;
+                }
+
+                old = retired;
+                retired = null;
+                make = (ready == null) && (prepareFailed == false);
+            }
+
+            if (old != null) {
+                old.close();
+            }
+
+            if (make == true) {
+                Segment seg = create();
+
+                synchronized (lock) {
+                    if (seg == null) {
+                        prepareFailed = true;
+                    } else {
+                        ready = seg;
+                    }
+
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /*
+     * Make and map a new segment file. The file must not be there already,
+     * as a restart in the same second would use the same name and sequence.
+     */
+    private Segment create() {
+        String date = fileDate.format(new Date(System.currentTimeMillis()));
+
+        for (int tries = 0; tries < 1000; tries++) {
+            File name = new File(directory, String.format("capture-%d-%d-%s-%03d.bin",
+                    radarSite, receiver, date, sequence++ % 1000));
+            FileChannel channel = null;
+
+            try {
+                channel = FileChannel.open(name.toPath(), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+                MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentBytes);
+                m.order(ByteOrder.BIG_ENDIAN);
+
+                return new Segment(name, channel, m);
+            } catch (FileAlreadyExistsException e) {
+                // try the next sequence
+            } catch (IOException e) {
+                System.out.println("FrameRecorder::create unable to map " + name.getPath() + " " + e.getMessage());
+
+                if (channel != null) {
+                    new Segment(name, channel, null).delete();
+                }
+
+                return null;
+            }
+        }
+
+        System.out.println("FrameRecorder::create no free segment name in " + directory.getPath());
+        return null;
+    }
+
+    /*
+     * Flush the current segment to disk and release it, then stop the
+     * helper, which closes the last retired segment and removes the
+     * unused ready one.
+     */
+    public void close() {
+        if (map != null) {
+            map.force();
+        }
+
+        synchronized (lock) {
+            if (current != null) {
+                if (retired != null) {
+                    retired.close();
+                }
+
+                retired = current;
+            }
+
+            EOF = true;
+            lock.notifyAll();
+        }
+
+        current = null;
+        map = null;
+
+        try {
+            helper.join();
+        } catch (InterruptedException e) {
+            // punt
+        }
+    }
+
+    /*
+     * A mapped segment file. Closing the channel doesn't unmap it,
+     * and the operating system still writes out the mapped pages.
+     */
+    private static final class Segment {
+
+        private final File name;
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+
+        Segment(File n, FileChannel c, MappedByteBuffer m) {
+            name = n;
+            channel = c;
+            map = m;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // punt
+            }
+        }
+
+        void delete() {
+            close();
+
+            if (name.delete() == false) {
+                System.out.println("FrameRecorder::delete unable to remove " + name.getPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * This is the IBeastSource Interface
+ *
+ * A thread that reads Mode-S Beast binary data from a receiver,
+ * and writes it into a ByteRingBuffer for the BufferDataBlocks thread.
+ */
+public interface IBeastSource {
+
+    /**
+     * Method to start the receive thread
+     */
+    public void start();
+
+    /**
+     * Method to stop the receive thread and release the input
+     */
+    public void close();
+
+    /**
+     * Method to return a name for log messages
+     *
+     * @return a String representing the source
+     */
+    public String getSourceName();
+}
@@ -0,0 +1,22 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * This is the IClock Interface
+ *
+ * Every time stamp and timeout in the program comes from one clock that
+ * is handed to each thread when it is built. Normally that is the system
+ * clock, but a replay or a test can use a VirtualClock instead, and run
+ * the whole program on the recorded time.
+ */
+public interface IClock {
+
+    /**
+     * Method to return the current time in Zulu (UTC) milliseconds
+     *
+     * @return a long Representing the Zulu time (UTC) in milliseconds
+     */
+    public long getUTCTime();
+}
@@ -0,0 +1,29 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * This is the IFrameConsumer Interface
+ *
+ * Used by the streaming Beast parser to hand each decoded frame to the
+ * next stage as primitives, so no object is created per frame.
+ */
+public interface IFrameConsumer {
+
+    /**
+     * Called once for each complete Beast frame
+     *
+     * The payload is packed big-endian, seven bytes per long. A Mode-S short
+     * frame is the low 56 bits of data0, and a long frame is bytes 0-6 in
+     * data0 and bytes 7-13 in data1. A Mode-A/C frame is the low 16 bits of
+     * data0. Unused words are zero.
+     *
+     * @param type an int representing the Beast frame type (MODEAC, SHORT, LONG)
+     * @param signalLevel an int representing the signal level byte
+     * @param mlat a long representing the 48-bit 12 MHz MLAT counter
+     * @param data0 a long representing the first 56 payload bits
+     * @param data1 a long representing the second 56 payload bits
+     */
+    public void frame(int type, int signalLevel, long mlat, long data0, long data1);
+}
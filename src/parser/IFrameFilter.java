@@ -0,0 +1,43 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * This is the IFrameFilter Interface
+ *
+ * A test on a raw Beast frame, made before it is queued for decoding.
+ * The frame is still the two words from the Beast parser, so a filter
+ * is only a few integer operations and doesn't allocate anything.
+ *
+ * Each BufferDataBlocks thread has its own filters, so they don't have
+ * to be thread safe.
+ */
+public interface IFrameFilter {
+
+    /**
+     * Method to test a frame
+     *
+     * @param type an int representing the Beast frame type
+     * @param signal an int representing the signal level
+     * @param data0 a long representing the first seven bytes of the frame
+     * @param data1 a long representing the last seven bytes of a long frame
+     * @param time a long representing the receive time in UTC milliseconds
+     * @return a boolean representing true if the frame is kept
+     */
+    public boolean accept(int type, int signal, long data0, long data1, long time);
+
+    /**
+     * Method to return the filter name for log messages
+     *
+     * @return a String representing the filter
+     */
+    public String getName();
+
+    /**
+     * Method to return how many frames the filter has dropped
+     *
+     * @return a long representing the rejected frame count
+     */
+    public long getRejectedCount();
+}
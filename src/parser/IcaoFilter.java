@@ -0,0 +1,80 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import decoder.CRC;
+import java.util.Arrays;
+
+/*
+ * Keep or drop frames by aircraft address
+ *
+ * If the allow list isn't empty, only those addresses are kept, and any
+ * address on the deny list is dropped. The lists are sorted, so a lookup
+ * is a binary search.
+ *
+ * DF11/17/18 carry the address in the clear. The other formats overlay it
+ * on the parity, so it is found with the CRC, which is what the decoder
+ * does later anyway.
+ */
+public final class IcaoFilter implements IFrameFilter {
+
+    private final int[] allow;
+    private final int[] deny;
+    private long rejected;
+
+    public IcaoFilter(int[] a, int[] d) {
+        allow = a.clone();
+        deny = d.clone();
+        rejected = 0L;
+
+        Arrays.sort(allow);
+        Arrays.sort(deny);
+    }
+
+    @Override
+    public boolean accept(int type, int signal, long data0, long data1, long time) {
+        int icao = address(type, data0, data1);
+
+        if (((allow.length == 0) || (Arrays.binarySearch(allow, icao) >= 0))
+                && (Arrays.binarySearch(deny, icao) < 0)) {
+            return true;
+        }
+
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Method to return the 24-bit aircraft address of a frame
+     *
+     * @param type an int representing the Beast frame type
+     * @param data0 a long representing the first seven bytes of the frame
+     * @param data1 a long representing the last seven bytes of a long frame
+     * @return an int representing the address
+     */
+    public static int address(int type, long data0, long data1) {
+        switch ((int) (data0 >>> 51) & 0x1F) {
+            case 11, 17, 18 -> {
+                return (int) (data0 >>> 24) & 0xFFFFFF;
+            }
+            default -> {
+                if (type == BeastMessageParser.SHORT) {
+                    return CRC.crcCompute(data0);
+                }
+
+                return CRC.crcCompute(data0, data1);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "icao";
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected;
+    }
+}
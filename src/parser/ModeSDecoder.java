@@ -1,8 +1,8 @@
 /*
  * ModeSDecoder - A Mode-S/ADS-B Decoder Application for Windows
  *
- * This program connects to a Beast Mode-S Receiver via Serial Port.
- * It reads the Serial Port data and combines data into tracks.
+ * This program connects to one or more Beast Mode-S Receivers via Serial
+ * Port or TCP. It reads the receiver data and combines data into tracks.
  * The tracks are then stored and updated in a MySQL Database.
  *
  * Public Domain (p) 2024 Steve Sampson, K5OKC
@@ -13,32 +13,28 @@ import com.fazecast.jSerialComm.SerialPort;
 import decoder.DataBlockParser;
 import decoder.LatLon;
 import decoder.PressureAltitude;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 
 public final class ModeSDecoder {
 
-    private static BufferDataBlocks bufferData;
+    private static final List<IBeastSource> sources = new ArrayList<>();
+    private static final List<BufferDataBlocks> bufferData = new ArrayList<>();
     private static LatLon receiverLatLon;
     //
     private static String configFile = "modesdecoder.conf";
     private static Config config;
     private static PressureAltitude pa;
-    private static SerialPipe recv;
     private static DataBlockParser parser;
     //
-    private static PipedOutputStream beast_output;
-    private static PipedInputStream beast_input;
-    private static InputStream comm_input;
-    private static SerialPort port;
+    private static DataBlockQueue block_queue;
+    private static IClock clock;
+    private static VirtualClock replayClock;
     //
     private static Connection db;
 
@@ -57,59 +53,76 @@ public final class ModeSDecoder {
 
         config = new Config(configFile);
 
-        if (config.getStationAirport().isEmpty() == false) {
-            pa = new PressureAltitude(config);   // Start PA data source
-        } else {
-            pa = null;
-        }
-
         /*
-         * Create a pipe between Serial and ProcessData threads
-         *
-         * I tried using a BufferedReader but couldn't get it to
-         * work with the jSerialComm library
+         * A replay runs everything on the time of the recorded frames
          */
-        try {
-            beast_input = new PipedInputStream(4096);
-            beast_output = new PipedOutputStream();
-            beast_output.connect(beast_input);
-        } catch (IOException p) {
-            System.out.println("Fatal: Can't initialize data queue");
-            System.exit(0);
+        replayClock = null;
+        int live = 0;
+
+        for (ReceiverConfig rc : config.getReceivers()) {
+            if (rc.isReplay() == false) {
+                live++;
+            } else if (replayClock == null) {
+                replayClock = new VirtualClock();
+            }
         }
-        
+
         /*
-         * Connect to the Serial Communications Port
+         * The whole program runs on one clock, so the recorded time of
+         * a replay can't be given to a live receiver.
          */
-        port = SerialPort.getCommPort(config.getCommPort());
-
-        if (port.openPort() == false) {
-            System.err.println("Fatal: Can't initialize Serial Port");
+        if ((replayClock != null) && (live > 0)) {
+            System.err.println("ModeSDecoder Fatal: a replay can't be mixed with serial or tcp receivers");
             System.exit(0);
         }
 
-        port.setBaudRate(3000000);   // 3,000,000 Baud
-        port.setNumDataBits(8);
-        port.setNumStopBits(SerialPort.ONE_STOP_BIT);
-        port.setParity(SerialPort.NO_PARITY);
-        port.setFlowControl(SerialPort.FLOW_CONTROL_RTS_ENABLED | SerialPort.FLOW_CONTROL_CTS_ENABLED);
-        port.flushIOBuffers();
-
-        if (port.getBaudRate() != 3000000) {
-            System.err.println("Fatal: Unable to set Baud Rate on Serial Port");
-            System.exit(0);
+        if (replayClock != null) {
+            clock = replayClock;
+        } else {
+            clock = new SystemClock();
         }
 
-        comm_input = port.getInputStream();
+        if (config.getStationAirport().isEmpty() == false) {
+            pa = new PressureAltitude(config, clock);   // Start PA data source
+        } else {
+            pa = null;
+        }
 
         /*
-         * Command the Beast switches
-         */        
-        if (beastSetup() == false) {
-            System.err.printf("Fatal: Beast Switch Command Failed\n");
-            System.exit(0);
-        } else {
-            System.out.println("Mode-S Beast Switches Configured");
+         * All the receivers feed the one queue to the DataBlockParser
+         */
+        block_queue = new DataBlockQueue(config.getQueueCapacity());
+
+        for (ReceiverConfig rc : config.getReceivers()) {
+            IBeastSource recv;
+
+            /*
+             * Create a ring buffer between the receiver and ProcessData threads
+             *
+             * I tried using a BufferedReader but couldn't get it to
+             * work with the jSerialComm library
+             */
+            ByteRingBuffer beast_ring = new ByteRingBuffer(config.getRingCapacity());
+
+            if (rc.isTcp() == true) {
+                /*
+                 * Connect to a remote Beast server. The switches can't be
+                 * set over the network, so they are up to the server.
+                 */
+                recv = new SocketPipe(rc.getTcpHost(), rc.getTcpPort(), beast_ring);
+            } else if (rc.isReplay() == true) {
+                /*
+                 * Play back a capture log or Beast dump
+                 */
+                recv = new ReplayPipe(rc.getReplayFile(), rc.getReplaySpeed(), beast_ring, replayClock);
+            } else {
+                recv = new SerialPipe(rc.getCommPort(), openSerialPort(rc.getCommPort()), beast_ring);   // grab Beast data and buffer between threads
+            }
+
+            sources.add(recv);
+            bufferData.add(new BufferDataBlocks(beast_ring, block_queue, config, rc, clock));     // queue thread
+
+            System.out.println("Receiver " + rc.getSourceName() + " radar.site " + rc.getRadarSite());
         }
 
         /*
@@ -141,29 +154,62 @@ public final class ModeSDecoder {
          */
         receiverLatLon = new LatLon(config.getStationLatitude(), config.getStationLongitude());
 
-        recv = new SerialPipe(comm_input, beast_output);   // grab Beast data and buffer between threads
-        
-        try {
-            bufferData = new BufferDataBlocks(beast_input, config);     // queue thread
-        } catch (NoSuchAlgorithmException md) {
-            System.err.println("ModeSDecoder Fatal: Unable to use SHA-1 hash " + md.getMessage());
-            System.exit(0);
-        }
-        
-        parser = new DataBlockParser(config, receiverLatLon, bufferData, db, pa);  // main thread
+        parser = new DataBlockParser(config, receiverLatLon, block_queue, db, pa, clock);  // main thread
 
-        Shutdown sh = new Shutdown(port, comm_input, recv, bufferData, parser);
+        Shutdown sh = new Shutdown(sources, bufferData, parser);
         Runtime.getRuntime().addShutdownHook(sh);
 
         /*
          * Start me up...
          *      ...and never stop
          */
-        recv.start();
-        bufferData.start();
+        for (IBeastSource recv : sources) {
+            recv.start();
+        }
+
+        for (BufferDataBlocks bd : bufferData) {
+            bd.start();
+        }
+
         parser.start();
     }
 
+    /*
+     * Open and configure a Beast receiver serial port
+     */
+    private static SerialPort openSerialPort(String name) {
+        SerialPort port = SerialPort.getCommPort(name);
+
+        if (port.openPort() == false) {
+            System.err.println("Fatal: Can't initialize Serial Port " + name);
+            System.exit(0);
+        }
+
+        port.setBaudRate(3000000);   // 3,000,000 Baud
+        port.setNumDataBits(8);
+        port.setNumStopBits(SerialPort.ONE_STOP_BIT);
+        port.setParity(SerialPort.NO_PARITY);
+        port.setFlowControl(SerialPort.FLOW_CONTROL_RTS_ENABLED | SerialPort.FLOW_CONTROL_CTS_ENABLED);
+        port.flushIOBuffers();
+
+        if (port.getBaudRate() != 3000000) {
+            System.err.println("Fatal: Unable to set Baud Rate on Serial Port " + name);
+            System.exit(0);
+        }
+
+        /*
+         * Command the Beast switches
+         */
+        if (beastSetup(port) == false) {
+            System.err.printf("Fatal: Beast Switch Command Failed\n");
+            System.exit(0);
+        } else {
+            System.out.println("Mode-S Beast Switches Configured " + name);
+        }
+
+        return port;
+    }
+
     /*
      * Send the configuration switch settings
      * (Except for Baud Rate)
@@ -177,6 +223,8 @@ public final class ModeSDecoder {
      * SW4  = OPEN (All DF Decoded)                d*| D
      * SW5  = CLOSED (MLAT Counter Enabled)        e | E*
      * SW6  = OPEN (CRC on DF-11, DF-17, DF-18)    f*| F
+     *        (CLOSED if crc.repair is set, so the frames with bit errors
+     *        are passed on to be repaired here)
      * SW7  = OPEN (DF-0/DF-4/DF-5 filter Off)     g*| G
      * SW8  = CLOSED (Hardware Handshake)          h | H*
      * SW9  = CLOSED (FEC Off)                     i | I*
@@ -184,9 +232,9 @@ public final class ModeSDecoder {
      *
      * When binary format is selected, SW5 (MLAT Counter) is ignored (close it anyway).
      */
-    private static boolean beastSetup() {
+    private static boolean beastSetup(SerialPort port) {
         byte[] optionsmsg = new byte[] {0x1a, 0x31, 0x00}; // Escape, '1', n
-        String options = "CdEfgHIj";
+        String options = (config.getCrcRepair() > 0) ? "CdEFgHIj" : "CdEfgHIj";
         boolean good = true;
 
         for (int i = 0; i < options.length(); i++) {
@@ -0,0 +1,82 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * Limit the frames per second from any one aircraft address
+ *
+ * The counts are kept in a fixed open addressing table, keyed on the
+ * address, with the second they were counted in. A slot from an earlier
+ * second can be taken over, so the table never grows. If no slot is
+ * found in a few probes, the frame is kept.
+ */
+public final class RateFilter implements IFrameFilter {
+
+    private static final int SIZE = 8192;          // power of two
+    private static final int PROBES = 8;
+    //
+    private final int limit;
+    private final int[] keys;           // address + 1, zero is empty
+    private final long[] seconds;
+    private final int[] counts;
+    private long rejected;
+
+    public RateFilter(int perSecond) {
+        limit = perSecond;
+        keys = new int[SIZE];
+        seconds = new long[SIZE];
+        counts = new int[SIZE];
+        rejected = 0L;
+    }
+
+    @Override
+    public boolean accept(int type, int signal, long data0, long data1, long time) {
+        int key = IcaoFilter.address(type, data0, data1) + 1;
+        long second = time / 1000L;
+        int slot = (key * 0x9E3779B9) >>> 19;     // top 13 bits
+        int free = -1;
+
+        for (int i = 0; i < PROBES; i++) {
+            int p = (slot + i) & (SIZE - 1);
+
+            if (keys[p] == key) {
+                if (seconds[p] != second) {
+                    seconds[p] = second;
+                    counts[p] = 1;
+                    return true;
+                }
+
+                if (counts[p] < limit) {
+                    counts[p]++;
+                    return true;
+                }
+
+                rejected++;
+                return false;
+            }
+
+            if ((free < 0) && ((keys[p] == 0) || (seconds[p] != second))) {
+                free = p;           // empty, or not counted this second
+            }
+        }
+
+        if (free >= 0) {
+            keys[free] = key;
+            seconds[free] = second;
+            counts[free] = 1;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "rate";
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * A receiver clock, from the Beast 48-bit MLAT counter
+ *
+ * The receiver stamps every frame with a free running 12 MHz counter
+ * when it is received. That is a much better time than the system clock
+ * when the frame is taken off the queue, which can be late by a whole
+ * radar scan under load.
+ *
+ * The counter is tied to UTC by comparing it to the system clock once per
+ * ring read, not once per frame. The system clock is always later than the
+ * receive time, by the serial/network and ring delay, so only the smallest
+ * difference seen over each window is used. That corrects the offset, and
+ * the change from window to window is the counter drift, which is slowly
+ * folded into the counter rate.
+ *
+ * If the counter is zero, goes backwards, or strays too far from the
+ * system clock (receiver reset, or a GPS timestamp format), the clock is
+ * restarted from the system time.
+ *
+ * As a clock, it gives the receive time of the last frame.
+ *
+ * There is one of these for each receiver, used by its BufferDataBlocks.
+ */
+public final class ReceiverClock implements IClock {
+
+    private static final double TICKSPERMS = 12000.0;         // 12 MHz
+    private static final double MAXDRIFT = 500.0E-6;          // 500 ppm
+    private static final double DRIFTGAIN = 0.25;
+    private static final long WINDOW = 10L * 12000000L;       // 10 seconds of ticks
+    private static final double RESYNC = 2000.0;              // 2 seconds
+    //
+    private boolean synced;
+    private long baseMlat;          // counter at the reference point
+    private double baseTime;        // UTC milliseconds at the reference point
+    private double msPerTick;
+    //
+    private long windowStart;       // counter at the start of this window
+    private double minError;        // smallest wall - predicted this window
+    private boolean settled;        // the offset has been corrected once
+    //
+    private final IClock system;
+    private volatile long frameTime;    // receive time of the last frame
+    private long wallTime;          // system time for this ring read
+    private long lastMlat;
+    private long resyncs;
+
+    public ReceiverClock(IClock c) {
+        system = c;
+        frameTime = 0L;
+        synced = false;
+        settled = false;
+        msPerTick = 1.0 / TICKSPERMS;
+        minError = Double.MAX_VALUE;
+        lastMlat = 0L;
+        wallTime = 0L;
+        resyncs = 0L;
+    }
+
+    /**
+     * Method to take the system time at a ring read. The last frame of the
+     * previous read was received before this time.
+     */
+    public void reference() {
+        long wall = system.getUTCTime();
+
+        wallTime = wall;
+
+        if ((synced == false) || (lastMlat == 0L)) {
+            return;
+        }
+
+        double error = wall - predict(lastMlat);
+
+        if (error < minError) {
+            minError = error;
+        }
+
+        if ((lastMlat - windowStart) >= WINDOW) {
+            double windowMs = (lastMlat - windowStart) * msPerTick;
+
+            /*
+             * Move the reference up to the last frame, less the error.
+             * Any error left at the end of the next window is drift. The
+             * first window is mostly the error of the starting time.
+             */
+            baseTime = predict(lastMlat) + minError;
+            baseMlat = lastMlat;
+
+            if (settled == true) {
+                double rate = msPerTick * (1.0 + DRIFTGAIN * (minError / windowMs));
+                double nominal = 1.0 / TICKSPERMS;
+
+                msPerTick = Math.max(nominal * (1.0 - MAXDRIFT), Math.min(nominal * (1.0 + MAXDRIFT), rate));
+            }
+
+            settled = true;
+            windowStart = lastMlat;
+            minError = Double.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Method to return the receive time of a frame
+     *
+     * @param mlat a long representing the 48-bit MLAT counter of the frame
+     * @return a long representing the receive time in UTC milliseconds
+     */
+    public long toUTC(long mlat) {
+        long time;
+
+        if (mlat == 0L) {
+            time = wallTime;        // receiver doesn't send a counter
+        } else if ((synced == false) || (mlat < lastMlat)) {
+            sync(mlat);
+            time = wallTime;
+        } else {
+            double predicted = predict(mlat);
+
+            if (Math.abs(predicted - wallTime) > RESYNC) {
+                sync(mlat);
+                time = wallTime;
+            } else {
+                lastMlat = mlat;
+                time = (long) predicted;
+            }
+        }
+
+        frameTime = time;
+
+        return time;
+    }
+
+    /**
+     * Method to return the receive time of the last frame, or the system
+     * time if there hasn't been one yet
+     *
+     * @return a long representing the time in UTC milliseconds
+     */
+    @Override
+    public long getUTCTime() {
+        long time = frameTime;
+
+        return (time == 0L) ? system.getUTCTime() : time;
+    }
+
+    /*
+     * Start over from the system time
+     */
+    private void sync(long mlat) {
+        if (synced == true) {
+            resyncs++;
+        }
+
+        synced = true;
+        baseMlat = mlat;
+        baseTime = wallTime;
+        windowStart = mlat;
+        minError = Double.MAX_VALUE;
+        settled = false;
+        lastMlat = mlat;
+    }
+
+    private double predict(long mlat) {
+        return baseTime + ((mlat - baseMlat) * msPerTick);
+    }
+
+    /**
+     * Method to return the counter drift against the system clock
+     *
+     * @return a double representing the drift in parts per million, positive if fast
+     */
+    public double getDriftPPM() {
+        return ((1.0 / (msPerTick * TICKSPERMS)) - 1.0) * 1.0E6;
+    }
+
+    public long getResyncCount() {
+        return resyncs;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * The settings for one Beast receiver
+ *
+ * These come from the receiver.N.* lines in the configuration file, or
+ * from the single receiver comm.port/input.type/tcp.* lines if there are
+ * no numbered receivers.
+ */
+public final class ReceiverConfig {
+
+    public static final String SERIAL = "serial";
+    public static final String TCP = "tcp";
+    public static final String REPLAY = "replay";
+    //
+    private final int number;
+    private final String inputType;
+    private final String commPort;
+    private final String tcpHost;
+    private final int tcpPort;
+    private final int radarSite;
+    private final String replayFile;
+    private final double replaySpeed;
+
+    public ReceiverConfig(int n, String type, String comm, String host, int port, int site,
+            String file, double speed) {
+        number = n;
+        inputType = type;
+        commPort = comm;
+        tcpHost = host;
+        tcpPort = port;
+        radarSite = site;
+        replayFile = file;
+        replaySpeed = speed;
+    }
+
+    /**
+     * Method to check an input type from the configuration file
+     *
+     * @param type a String representing the input type
+     * @return a boolean Representing whether the input type is known
+     */
+    public static boolean isValidType(String type) {
+        return type.equals(SERIAL) || type.equals(TCP) || type.equals(REPLAY);
+    }
+
+    /**
+     * Method to return the receiver number from the configuration file
+     *
+     * @return an int Representing the N in receiver.N, or 0 for the single receiver
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Method to return where the Beast data comes from
+     *
+     * @return a string Representing the input type, serial, tcp or replay
+     */
+    public String getInputType() {
+        return inputType;
+    }
+
+    public boolean isTcp() {
+        return inputType.equals(TCP);
+    }
+
+    public boolean isReplay() {
+        return inputType.equals(REPLAY);
+    }
+
+    public String getCommPort() {
+        return commPort;
+    }
+
+    public String getTcpHost() {
+        return tcpHost;
+    }
+
+    public int getTcpPort() {
+        return tcpPort;
+    }
+
+    /**
+     * Method to return the capture file or directory to replay
+     *
+     * @return a String Representing the replay path
+     */
+    public String getReplayFile() {
+        return replayFile;
+    }
+
+    /**
+     * Method to return the replay speed
+     *
+     * @return a double Representing a multiple of real time, or 0 for as fast as possible
+     */
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    /**
+     * Method to return the radar ID this receiver's reports are tagged with
+     *
+     * @return an int Representing a numeric radar ID
+     */
+    public int getRadarSite() {
+        return radarSite;
+    }
+
+    /**
+     * Method to return a name for log messages
+     *
+     * @return a String representing the receiver
+     */
+    public String getSourceName() {
+        if (isTcp() == true) {
+            return tcpHost + ":" + tcpPort;
+        } else if (isReplay() == true) {
+            return replayFile;
+        }
+
+        return commPort;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * This replays recorded frames into the ring, as if they came from a
+ * receiver, so they go through the whole Beast parser, BufferDataBlocks
+ * and DataBlockParser path.
+ *
+ * The input is a FrameRecorder capture segment, a directory of segments,
+ * or a raw dump of Beast binary data. The capture records are turned back
+ * into Beast frames. A raw dump is parsed, and its MLAT counter is used
+ * for the frame times, counted from the time the dump is opened. A dump
+ * without a counter is stamped with that time, and not paced.
+ *
+ * The speed is a multiple of real time, so 1 is real time, 10 is ten
+ * times faster, and 0 is as fast as the decoder can take it. The program
+ * runs on a VirtualClock, which is moved to the time of each frame sent.
+ */
+public final class ReplayPipe extends Thread implements IBeastSource, IFrameConsumer {
+
+    private static final int CHUNKSIZE = 4096;          // bytes written to the ring at a time
+    private static final int READSIZE = 65536;
+    private static final long MLATTICKS = 12000L;       // 12 MHz counter ticks per millisecond
+    private static final AtomicInteger running = new AtomicInteger(0);
+    //
+    private final Thread dataReceive;
+    private final File input;
+    private final double speed;
+    private final ByteRingBuffer output;
+    private final VirtualClock clock;
+    private final byte[] chunk;
+    private final String name;
+    private int length;
+    private volatile boolean EOF;
+    //
+    private long recordStart;           // time of the first frame
+    private long wallStart;             // nanoTime when the first frame was sent
+    private long mlatStart;             // raw dump only
+    private long rawBase;               // raw dump only
+    private long lastTime;
+    private boolean started;
+    //
+    private long frames;
+
+    public ReplayPipe(String file, double s, ByteRingBuffer o, VirtualClock c) {
+        input = new File(file);
+        clock = c;
+        speed = Math.max(s, 0.0);
+        output = o;
+        chunk = new byte[CHUNKSIZE + 64];
+        name = "replay " + file;
+        length = 0;
+        EOF = false;
+        started = false;
+        frames = 0L;
+
+        dataReceive = new Thread(this);
+        dataReceive.setName("ReplayPipe");  // for debugging
+        dataReceive.setPriority(Thread.NORM_PRIORITY);
+    }
+
+    @Override
+    public void start() {
+        running.incrementAndGet();
+        dataReceive.start();
+    }
+
+    @Override
+    public void close() {
+        EOF = true;
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /*
+     * Thread to read the recorded frames and write them to the ring
+     */
+    @Override
+    public void run() {
+        long begin = System.nanoTime();
+
+        /*
+         * The Beast parser skips the first frame it sees, as it is usually
+         * cut off. Start with an empty Mode-A/C frame for it to skip, which
+         * would be filtered anyway.
+         */
+        for (int i = 0; i < 11; i++) {
+            chunk[length++] = 0;
+        }
+
+        chunk[0] = 0x1A;
+        chunk[1] = (byte) BeastMessageParser.MODEAC;
+
+        for (File f : inputFiles()) {
+            if (EOF == true) {
+                break;
+            }
+
+            try {
+                if (isCapture(f) == true) {
+                    replayCapture(f);
+                } else {
+                    replayRaw(f);
+                }
+            } catch (IOException e) {
+                System.out.println("ReplayPipe::run unable to read " + f.getPath() + " " + e.getMessage());
+            }
+        }
+
+        flush();
+
+        double seconds = (System.nanoTime() - begin) / 1.0E9;
+
+        System.out.printf("ReplayPipe::run finished %d frames in %.1f seconds (%.0f frames/second)%n",
+                frames, seconds, frames / Math.max(seconds, 0.001));
+
+        finish();
+    }
+
+    /*
+     * When the file is done, wait for the parser to take what is left in
+     * the ring, and close it. When the last replay is done the program is
+     * shut down, which decodes the blocks still queued and writes the
+     * tracks to the database.
+     */
+    private void finish() {
+        while ((EOF == false) && (output.isClosed() == false) && (output.available() > 0)) {
+            LockSupport.parkNanos(1000000L);
+        }
+
+        output.close();
+
+        if ((running.decrementAndGet() == 0) && (EOF == false)) {
+            System.out.println("ReplayPipe::finish all replays done, shutting down");
+            System.exit(0);
+        }
+    }
+
+    /*
+     * A directory is replayed one segment at a time, in the order
+     * they were started.
+     */
+    private List<File> inputFiles() {
+        List<File> list = new ArrayList<>();
+
+        if (input.isDirectory() == true) {
+            File[] files = input.listFiles((dir, n) -> n.endsWith(".bin"));
+
+            if (files != null) {
+                list.addAll(Arrays.asList(files));
+                list.sort(Comparator.comparingLong(this::segmentStart).thenComparing(File::getName));
+            }
+        } else {
+            list.add(input);
+        }
+
+        return list;
+    }
+
+    private boolean isCapture(File f) throws IOException {
+        byte[] magic = new byte[FrameRecorder.MAGIC.length()];
+
+        try (InputStream in = new FileInputStream(f)) {
+            if (in.read(magic) != magic.length) {
+                return false;
+            }
+        }
+
+        return FrameRecorder.MAGIC.equals(new String(magic, StandardCharsets.US_ASCII));
+    }
+
+    private long segmentStart(File f) {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            if (raf.length() >= FrameRecorder.HEADERSIZE) {
+                raf.seek(24);
+                return raf.readLong();
+            }
+        } catch (IOException e) {
+            // sort it first
+        }
+
+        return 0L;
+    }
+
+    /*
+     * Replay a FrameRecorder segment
+     */
+    private void replayCapture(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            map.order(ByteOrder.BIG_ENDIAN);
+
+            int size = map.getInt(12);
+
+            if (size < FrameRecorder.RECORDSIZE) {
+                System.out.println("ReplayPipe::replayCapture bad record size in " + f.getPath());
+                return;
+            }
+
+            for (int p = FrameRecorder.HEADERSIZE; (p + size) <= map.limit(); p += size) {
+                if (EOF == true) {
+                    return;
+                }
+
+                long word0 = map.getLong(p + 16);
+                long word1 = map.getLong(p + 24);
+                int type = (int) (word0 >>> 56) & 0xFF;
+
+                if (type == 0) {
+                    return;     // end of the recorded frames
+                }
+
+                long data0 = ((word0 & 0xFFFFFFFFFFFFL) << 8) | (word1 >>> 56);
+                long data1 = word1 & 0xFFFFFFFFFFFFFFL;
+
+                send(map.getLong(p), map.getLong(p + 8), type, (int) (word0 >>> 48) & 0xFF, data0, data1);
+            }
+        }
+    }
+
+    /*
+     * Replay a raw Beast dump. The parser calls frame() for each frame.
+     */
+    private void replayRaw(File f) throws IOException {
+        BeastMessageParser bmp = new BeastMessageParser();
+        byte[] buffer = new byte[READSIZE];
+        int val;
+
+        mlatStart = -1L;
+        rawBase = new SystemClock().getUTCTime();     // a raw dump has no date
+
+        try (InputStream in = new FileInputStream(f)) {
+            while ((EOF == false) && ((val = in.read(buffer)) > 0)) {
+                bmp.parse(buffer, 0, val, this);
+            }
+        }
+    }
+
+    /*
+     * Called by the Beast parser for each frame of a raw dump
+     */
+    @Override
+    public void frame(int type, int signal, long mlat, long data0, long data1) {
+        long time;
+
+        if (mlat == 0L) {
+            time = Math.max(lastTime, rawBase);         // no counter, no pacing
+        } else {
+            if (mlatStart < 0L) {
+                mlatStart = mlat;
+            }
+
+            time = rawBase + ((mlat - mlatStart) / MLATTICKS);
+
+            /*
+             * The counter was reset, so go on from the last frame time
+             * with this count as the new start
+             */
+            if (time < lastTime) {
+                mlatStart = mlat;
+                rawBase = lastTime;
+                time = lastTime;
+            }
+        }
+
+        send(time, mlat, type, signal, data0, data1);
+    }
+
+    /*
+     * Wait until it is time for this frame, then encode it as Beast
+     * binary, doubling any <esc> bytes.
+     */
+    private void send(long time, long mlat, int type, int signal, long data0, long data1) {
+        if (started == false) {
+            started = true;
+            recordStart = time;
+            wallStart = System.nanoTime();
+        }
+
+        if (speed > 0.0) {
+            long due = wallStart + (long) (((time - recordStart) * 1000000.0) / speed);
+            long wait = due - System.nanoTime();
+
+            if (wait > 0L) {
+                flush();                // the earlier frames are due now
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        lastTime = time;
+        clock.advance(time);
+
+        chunk[length++] = 0x1A;
+        chunk[length++] = (byte) type;
+
+        for (int i = 5; i >= 0; i--) {
+            addByte((int) (mlat >>> (8 * i)));
+        }
+
+        addByte(signal);
+
+        switch (type) {
+            case BeastMessageParser.MODEAC -> {
+                addByte((int) (data0 >>> 8));
+                addByte((int) data0);
+            }
+            case BeastMessageParser.SHORT -> {
+                for (int i = 6; i >= 0; i--) {
+                    addByte((int) (data0 >>> (8 * i)));
+                }
+            }
+            default -> {
+                for (int i = 6; i >= 0; i--) {
+                    addByte((int) (data0 >>> (8 * i)));
+                }
+
+                for (int i = 6; i >= 0; i--) {
+                    addByte((int) (data1 >>> (8 * i)));
+                }
+            }
+        }
+
+        frames++;
+
+        if (length >= CHUNKSIZE) {
+            flush();
+        }
+    }
+
+    private void addByte(int ch) {
+        chunk[length++] = (byte) ch;
+
+        if ((ch & 0xFF) == 0x1A) {
+            chunk[length++] = (byte) 0x1A;
+        }
+    }
+
+    /*
+     * Write the chunk to the ring. Unlike a receiver, a file can wait,
+     * so this waits for the parser to make room rather than lose data.
+     * It also keeps the ring nearly empty, so the virtual time is close
+     * to the time of the frames being parsed.
+     */
+    private void flush() {
+        if (length == 0) {
+            return;
+        }
+
+        while ((EOF == false) && (output.isClosed() == false)
+                && (output.available() > CHUNKSIZE)) {
+            LockSupport.parkNanos(50000L);
+        }
+
+        while ((EOF == false) && (output.isClosed() == false)
+                && (output.write(chunk, 0, length) == false)) {
+            LockSupport.parkNanos(50000L);
+        }
+
+        length = 0;
+    }
+}
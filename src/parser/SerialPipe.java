@@ -3,70 +3,120 @@
  */
 package parser;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.PipedOutputStream;
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
 
-public final class SerialPipe extends Thread {
+/*
+ * This reads Mode-S Beast binary data from the serial port, and puts it in the ring.
+ *
+ * Rather than polling the port, a jSerialComm data listener is called on
+ * its event thread when the operating system says there is data. It reads
+ * everything available into one fixed buffer and writes it to the ring,
+ * so nothing runs while the port is idle and nothing is allocated per read.
+ */
+public final class SerialPipe implements IBeastSource, SerialPortDataListener {
 
-    private final Thread dataReceive;
-    private final InputStream input;
-    private final PipedOutputStream output;
-    private boolean EOF;
+    private static final int READSIZE = 8192;
+    //
+    private final SerialPort port;
+    private final ByteRingBuffer output;
+    private final byte[] data;
+    private final String name;
+    private volatile boolean EOF;
+    private boolean overrun;
+    //
+    private long bytesRead;
 
-    public SerialPipe(InputStream i, PipedOutputStream o) {
-        input = i;
+    public SerialPipe(String n, SerialPort p, ByteRingBuffer o) {
+        name = n;
+        port = p;
         output = o;
+        data = new byte[READSIZE];
         EOF = false;
-
-        dataReceive = new Thread(this);
-        dataReceive.setName("SerialPipe");  // for debugging
-        dataReceive.setPriority(Thread.NORM_PRIORITY);
+        overrun = false;
+        bytesRead = 0L;
     }
 
     @Override
     public void start() {
-        dataReceive.start();
+        if (port.addDataListener(this) == false) {
+            System.out.println("SerialPipe::start unable to listen to " + name);
+        }
     }
 
+    @Override
     public void close() {
         EOF = true;
+
+        port.removeDataListener();
+        port.closePort();
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public int getListeningEvents() {
+        return SerialPort.LISTENING_EVENT_DATA_AVAILABLE | SerialPort.LISTENING_EVENT_PORT_DISCONNECTED;
+    }
+
+    /*
+     * Without the receiver there is nothing to decode, so stop the program
+     * with an error status, which runs the normal Shutdown. It is done on
+     * another thread, as the Shutdown removes this listener, and must not
+     * wait on the event thread it was called from.
+     */
+    private void shutdown() {
+        EOF = true;
+
+        Thread exit = new Thread(() -> System.exit(1));
+        exit.setName("SerialPipe exit");
+        exit.start();
     }
 
     /*
-     * Thread to read the data from the Beast serial port and put it in the pipe.
+     * Called on the jSerialComm event thread when there is data to read
      */
     @Override
-    public void run() {
+    public void serialEvent(SerialPortEvent event) {
+        if (event.getEventType() == SerialPort.LISTENING_EVENT_PORT_DISCONNECTED) {
+            if (EOF == false) {
+                System.out.println("SerialPipe::serialEvent Lost serial input " + name + ", shutting down");
+                shutdown();
+            }
+
+            return;
+        }
+
         int cnt, val;
-        byte[] data;
-
-        while (EOF == false) {
-            try {
-                while ((cnt = input.available()) > 0) {
-                    data = new byte[cnt];
-
-                    /*
-                     * This will block if input goes gimpy
-                     */
-                    val = input.read(data, 0, cnt);
-
-                    /*
-                     * Write the data to the pipe
-                     */
-                    if (val != -1) {
-                        output.write(data, 0, data.length);
-                    } else {
-                        System.out.println("SerialPipe::run Write Pipe Overrun");
-                        sleep(10);
-                    }
-                }
 
-                sleep(0,100);
-            } catch (IOException | InterruptedException ex) {
-                System.out.println("SerialPipe::run read error " + ex.getMessage());
+        while ((EOF == false) && ((cnt = port.bytesAvailable()) > 0)) {
+            val = port.readBytes(data, Math.min(cnt, READSIZE));
+
+            if (val <= 0) {
                 break;
             }
+
+            bytesRead += val;
+
+            /*
+             * Write the data to the ring
+             */
+            if (output.write(data, 0, val) == false) {
+                if (overrun == false) {
+                    System.out.println("SerialPipe::serialEvent Write Ring Overrun " + name);
+                    overrun = true;
+                }
+            } else {
+                overrun = false;
+            }
         }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * A duplicate filter for the 56-bit Mode-S short frames
+ *
+ * A short frame fits exactly in a long, so the frame itself is the key and
+ * no hash of the contents is needed. The table is open addressed with linear
+ * probing, and each slot holds the key and the time it was first seen.
+ *
+ * A frame is a duplicate if the same 56 bits were seen within the window.
+ * Entries older than the window are stale, and their slots are reused. When
+ * the table gets too full, it is swept of stale entries, and only grown if
+ * the live entries still need the room.
+ *
+ * This is only called from the BufferDataBlocks thread, so it is not locked.
+ */
+public final class ShortFrameDedup {
+
+    private static final long OCCUPIED = 0x8000000000000000L;   // 56-bit keys never set this
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;     // Fibonacci hash multiplier
+    private static final int MAXCAPACITY = 1 << 22;
+    //
+    private long[] keys;
+    private long[] times;
+    private int mask;
+    private int shift;
+    private int used;               // slots holding a key, live or stale
+    //
+    private final long window;
+    //
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long sweeps;
+
+    /**
+     * Create a duplicate filter
+     *
+     * @param size an int representing the initial number of slots, which is
+     * rounded up to the next power of two
+     * @param win a long representing the duplicate window in milliseconds
+     */
+    public ShortFrameDedup(int size, long win) {
+        window = win;
+        allocate(Integer.highestOneBit(Math.max(size, 1024) - 1) << 1);
+
+        hits = 0L;
+        misses = 0L;
+        sweeps = 0L;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        used = 0;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * GOLDEN) >>> shift);
+    }
+
+    /**
+     * Check a frame against the table, and remember it if it is new
+     *
+     * @param data56 a long representing the 56-bit short frame
+     * @param now a long representing the UTC time in milliseconds
+     * @return a boolean which is true if the frame is a duplicate
+     */
+    public boolean isDuplicate(long data56, long now) {
+        long key = data56 | OCCUPIED;
+        int free = -1;
+        int i = slot(key);
+
+        while (keys[i] != 0L) {
+            boolean stale = (isLive(now - times[i]) == false);
+
+            if (keys[i] == key) {
+                if (stale == true) {
+                    times[i] = now;     // seen again after the window, start a new one
+                    misses++;
+                    return false;
+                }
+
+                hits++;
+                return true;
+            }
+
+            if ((stale == true) && (free == -1)) {
+                free = i;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        if (free == -1) {
+            free = i;
+            used++;
+        }
+
+        keys[free] = key;
+        times[free] = now;
+        misses++;
+
+        if (used > (keys.length - (keys.length >>> 2))) {
+            sweep(now);
+        }
+
+        return false;
+    }
+
+    /*
+     * An entry is live for its window. A negative age means the clock
+     * stepped back (a resync, a replay segment, or another receiver),
+     * and the entry is stale, so frames are not dropped while it catches up.
+     */
+    private boolean isLive(long age) {
+        return (age >= 0L) && (age <= window);
+    }
+
+    /*
+     * Rehash the live entries, dropping the stale ones.
+     * The table doubles if more than half of it is still live.
+     */
+    private void sweep(long now) {
+        long[] oldKeys = keys;
+        long[] oldTimes = times;
+        int live = 0;
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            if ((oldKeys[j] != 0L) && (isLive(now - oldTimes[j]) == true)) {
+                live++;
+            }
+        }
+
+        int capacity = oldKeys.length;
+
+        if ((live > (capacity >>> 1)) && (capacity < MAXCAPACITY)) {
+            capacity <<= 1;
+        }
+
+        allocate(capacity);
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            if ((oldKeys[j] != 0L) && (isLive(now - oldTimes[j]) == true)) {
+                int i = slot(oldKeys[j]);
+
+                while (keys[i] != 0L) {
+                    i = (i + 1) & mask;
+                }
+
+                keys[i] = oldKeys[j];
+                times[i] = oldTimes[j];
+                used++;
+            }
+        }
+
+        /*
+         * At the size limit with everything live, start over
+         * rather than let the probes run forever.
+         */
+        if (used > (keys.length - (keys.length >>> 2))) {
+            allocate(keys.length);
+        }
+
+        sweeps++;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Method to return the number of short frames dropped as duplicates
+     *
+     * @return a long representing the duplicate count
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Method to return the number of short frames passed as new
+     *
+     * @return a long representing the unique frame count
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Method to return the number of times the stale entries were swept
+     *
+     * @return a long representing the sweep count
+     */
+    public long getSweeps() {
+        return sweeps;
+    }
+}
@@ -3,41 +3,39 @@
  */
 package parser;
 
-import com.fazecast.jSerialComm.SerialPort;
 import decoder.DataBlockParser;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.List;
 
 public final class Shutdown extends Thread {
 
-    private final BufferDataBlocks bufferdatablock;
+    private final List<BufferDataBlocks> bufferdatablocks;
     private final DataBlockParser datablockparser;
-    private final SerialPipe serialpipe;
-    private final InputStream inputstream;
-    private final SerialPort serialport;
+    private final List<IBeastSource> sources;
 
-    public Shutdown(SerialPort port, InputStream stream,  SerialPipe br, BufferDataBlocks bd, DataBlockParser dp) {
-        serialpipe = br;
-        bufferdatablock = bd;
+    public Shutdown(List<IBeastSource> br, List<BufferDataBlocks> bd, DataBlockParser dp) {
+        sources = br;
+        bufferdatablocks = bd;
         datablockparser = dp;
-        serialport = port;
-        inputstream = stream;
     }
 
     @Override
     public void run() {
         System.out.println("Shutdown started");
-        
-        serialpipe.close();
-        datablockparser.close();
-        bufferdatablock.close();
 
-        try {
-            inputstream.close();
-        } catch (IOException e) {
-            // punt
+        /*
+         * The sources close their own serial port or socket
+         */
+        for (IBeastSource source : sources) {
+            source.close();
+        }
+
+        /*
+         * Then the blocks already read are queued and decoded
+         */
+        for (BufferDataBlocks bufferdatablock : bufferdatablocks) {
+            bufferdatablock.close();
         }
 
-        serialport.closePort();
+        datablockparser.close();
     }
 }
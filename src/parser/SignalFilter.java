@@ -0,0 +1,38 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * Drop frames at or below a signal level (server.amplitude)
+ */
+public final class SignalFilter implements IFrameFilter {
+
+    private final int minimum;
+    private long rejected;
+
+    public SignalFilter(int min) {
+        minimum = min;
+        rejected = 0L;
+    }
+
+    @Override
+    public boolean accept(int type, int signal, long data0, long data1, long time) {
+        if (signal > minimum) {
+            return true;
+        }
+
+        rejected++;
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "signal";
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/*
+ * This reads Mode-S Beast binary data from a TCP server, such as the
+ * port 30005 output of a remote receiver, and puts it in the ring.
+ *
+ * The channel is non-blocking and serviced by a Selector, so the thread
+ * only wakes when there is data, a connect finishes, or once a second to
+ * check for shutdown. If the connection fails, closes, or goes quiet for
+ * too long, it is dropped and tried again with a growing delay.
+ */
+public final class SocketPipe extends Thread implements IBeastSource {
+
+    private static final int READSIZE = 8192;
+    private static final long SELECTTIMEOUT = 1000L;        // 1 second
+    private static final long IDLETIMEOUT = 60L * 1000L;    // 60 seconds of silence
+    private static final long MINRETRY = 1000L;             // 1 second
+    private static final long MAXRETRY = 30L * 1000L;       // 30 seconds
+    //
+    private final Thread dataReceive;
+    private final InetSocketAddress address;
+    private final ByteRingBuffer output;
+    private final byte[] data;
+    private final ByteBuffer buffer;
+    private final String name;
+    private volatile boolean EOF;
+    private volatile Selector selector;
+    //
+    private long connects;
+    private long bytesRead;
+
+    public SocketPipe(String host, int port, ByteRingBuffer o) {
+        address = InetSocketAddress.createUnresolved(host, port);
+        output = o;
+        data = new byte[READSIZE];
+        buffer = ByteBuffer.wrap(data);
+        name = host + ":" + port;
+        EOF = false;
+        selector = null;
+        connects = 0L;
+        bytesRead = 0L;
+
+        dataReceive = new Thread(this);
+        dataReceive.setName("SocketPipe " + name);  // for debugging
+        dataReceive.setPriority(Thread.NORM_PRIORITY);
+    }
+
+    @Override
+    public void start() {
+        dataReceive.start();
+    }
+
+    @Override
+    public void close() {
+        EOF = true;
+
+        Selector s = selector;
+
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    public long getConnectCount() {
+        return connects;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /*
+     * Thread to connect to the Beast server and copy its data to the ring.
+     */
+    @Override
+    public void run() {
+        long retry = MINRETRY;
+
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            System.out.println("SocketPipe::run unable to open selector " + e.getMessage());
+            return;
+        }
+
+        while (EOF == false) {
+            if (session() == true) {
+                retry = MINRETRY;       // we had a good connection
+            } else {
+                retry = Math.min(retry * 2L, MAXRETRY);
+            }
+
+            if (EOF == false) {
+                try {
+                    sleep(retry);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // punt
+        }
+    }
+
+    /*
+     * Connect and read until the connection is lost, or we shut down.
+     *
+     * Returns true if any data was received.
+     */
+    private boolean session() {
+        boolean overrun = false;
+        boolean received = false;
+        SocketChannel channel = null;
+
+        try {
+            InetSocketAddress resolved = new InetSocketAddress(address.getHostString(), address.getPort());
+
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 256 * 1024);
+
+            if (channel.connect(resolved) == true) {
+                channel.register(selector, SelectionKey.OP_READ);
+                connected();
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT);
+            }
+
+            long lastData = System.currentTimeMillis();
+
+            while (EOF == false) {
+                selector.select(SELECTTIMEOUT);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (key.isConnectable() == true) {
+                        channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                        connected();
+                        lastData = System.currentTimeMillis();
+                    } else if (key.isReadable() == true) {
+                        int val;
+
+                        while ((val = channel.read(buffer)) > 0) {
+                            bytesRead += val;
+                            received = true;
+
+                            if (output.write(data, 0, val) == false) {
+                                if (overrun == false) {
+                                    System.out.println("SocketPipe::run Write Ring Overrun " + name);
+                                    overrun = true;
+                                }
+                            } else {
+                                overrun = false;
+                            }
+
+                            buffer.clear();
+                        }
+
+                        buffer.clear();
+
+                        if (val == -1) {
+                            System.out.println("SocketPipe::run connection closed by " + name);
+                            return received;
+                        }
+
+                        lastData = System.currentTimeMillis();
+                    }
+                }
+
+                if ((System.currentTimeMillis() - lastData) > IDLETIMEOUT) {
+                    System.out.println("SocketPipe::run no data from " + name + ", reconnecting");
+                    return received;
+                }
+            }
+        } catch (IOException | IllegalArgumentException | SecurityException e) {
+            System.out.println("SocketPipe::run " + name + " " + e.getMessage());
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();    // also cancels the selector key
+                    selector.selectNow();
+                } catch (IOException e) {
+                    // punt
+                }
+            }
+        }
+
+        return received;
+    }
+
+    private void connected() {
+        connects++;
+        System.out.println("SocketPipe::run connected to " + name);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.TimeZone;
+
+/*
+ * The system clock as Zulu (UTC) milliseconds
+ *
+ * The local zone offset only changes at a daylight saving change, so it
+ * is looked up once each quarter hour and kept in an immutable holder.
+ * That leaves one currentTimeMillis() call per request, and no shared
+ * Calendar for the threads to fight over.
+ */
+public final class SystemClock implements IClock {
+
+    private static final long PERIOD = 15L * 60L * 1000L;      // 15 minutes
+    //
+    private final TimeZone zone;
+    private volatile Offset cached;
+
+    public SystemClock() {
+        zone = TimeZone.getDefault();
+        cached = new Offset(System.currentTimeMillis());
+    }
+
+    @Override
+    public long getUTCTime() {
+        long now = System.currentTimeMillis();
+        Offset current = cached;
+
+        if ((now < current.from) || (now >= current.until)) {
+            current = new Offset(now);
+            cached = current;
+        }
+
+        return now - current.offset;
+    }
+
+    /*
+     * The zone and daylight offset for one quarter hour
+     */
+    private final class Offset {
+
+        private final long from;
+        private final long until;
+        private final long offset;
+
+        private Offset(long now) {
+            from = now - Math.floorMod(now, PERIOD);
+            until = from + PERIOD;
+            offset = zone.getOffset(now);
+        }
+    }
+}
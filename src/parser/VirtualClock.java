@@ -0,0 +1,46 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A clock that only moves when it is told to
+ *
+ * A replay moves it forward to the time of each frame it sends, so track
+ * timeouts and position pairing see the recorded time, even when the
+ * replay runs many times faster than real time. It never goes backwards,
+ * so several replays can share one clock.
+ */
+public final class VirtualClock implements IClock {
+
+    private final AtomicLong time;
+
+    public VirtualClock() {
+        time = new AtomicLong(0L);
+    }
+
+    /**
+     * Method to set the time, for a test
+     *
+     * @param t a long representing the time in UTC milliseconds
+     */
+    public void set(long t) {
+        time.set(t);
+    }
+
+    /**
+     * Method to move the time forward. It never goes backwards.
+     *
+     * @param t a long representing the time in UTC milliseconds
+     */
+    public void advance(long t) {
+        time.accumulateAndGet(t, Math::max);
+    }
+
+    @Override
+    public long getUTCTime() {
+        return time.get();
+    }
+}
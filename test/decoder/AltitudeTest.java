@@ -0,0 +1,90 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Every entry of the altitude tables must match the computed decode they
+ * replaced (ComputedAltitude), for each code of each field.
+ */
+public class AltitudeTest {
+
+    /*
+     * All 8192 AC13 codes of DF00, DF04, DF16 and DF20, which covers the
+     * metre, Q-bit (25 foot) and Gillham (100 foot Gray code) cases
+     */
+    @Test
+    public void allAC13Codes() {
+        int metres = 0;
+        int qbit = 0;
+        int gillham = 0;
+
+        for (int ac13 = 0; ac13 < 8192; ac13++) {
+            int expect = ComputedAltitude.decodeAltitude(ac13, true);
+
+            assertEquals(expect, Altitude.decodeAltitude(ac13, true), "AC13 " + ac13);
+            assertEquals(expect, Altitude.decodeAC13(ac13), "AC13 " + ac13);
+
+            if ((ac13 & 0x0040) != 0) {
+                metres++;
+            } else if ((ac13 & 0x0010) != 0) {
+                qbit++;
+            } else {
+                gillham++;
+            }
+        }
+
+        assertEquals(4096, metres);
+        assertEquals(2048, qbit);
+        assertEquals(2048, gillham);
+    }
+
+    /*
+     * All 4096 12-bit altitudes of the DF17 and DF18 ME field, which have
+     * no metre bit, so half are Q-bit and half Gillham
+     */
+    @Test
+    public void allAC12Codes() {
+        for (int ac12 = 0; ac12 < 4096; ac12++) {
+            int expect = ComputedAltitude.decodeAltitude(ac12, false);
+
+            assertEquals(expect, Altitude.decodeAltitude(ac12, false), "AC12 " + ac12);
+            assertEquals(expect, Altitude.decodeAC12(ac12), "AC12 " + ac12);
+        }
+    }
+
+    @Test
+    public void allModeCAndGillhamCodes() {
+        for (int raw12 = 0; raw12 < 4096; raw12++) {
+            assertEquals(ComputedAltitude.convertModeCtoAltitude(raw12), Altitude.convertModeCtoAltitude(raw12),
+                    "Mode-C " + raw12);
+        }
+
+        for (int ac11 = 0; ac11 < 2048; ac11++) {
+            assertEquals(ComputedAltitude.computeAltitude(ac11), Altitude.computeAltitude(ac11), "AC11 " + ac11);
+        }
+    }
+
+    /*
+     * The bits above the field are ignored, as they were
+     */
+    @Test
+    public void upperBitsIgnored() {
+        for (int bits = 0; bits < 8192; bits += 37) {
+            assertEquals(ComputedAltitude.decodeAltitude(bits | 0xFFFFE000, true), Altitude.decodeAltitude(bits | 0xFFFFE000, true));
+            assertEquals(ComputedAltitude.decodeAltitude(bits | 0xFFFFF000, false), Altitude.decodeAltitude(bits | 0xFFFFF000, false));
+        }
+    }
+
+    @Test
+    public void knownAltitudes() {
+        assertEquals(38000, Altitude.decodeAC12(0xC38));            // DF17 8D40621D58C382D690C8AC2863A7
+        assertEquals(-1000, Altitude.decodeAC12(0x010));            // Q-bit, lowest code
+        assertTrue(Altitude.decodeAC13(0x0040 | 0x0F) > 0);         // metres
+        assertEquals(-9999, Altitude.convertModeCtoAltitude(0));    // C bits 000 are illegal
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * The bit serial CRC that the table driven CRC replaced, kept as the
+ * reference for its tests and benchmarks.
+ */
+final class BitSerialCRC {
+
+    private static final long POLY = 0xFFFA0480;        // Polynomial
+
+    private BitSerialCRC() {
+    }
+
+    /**
+     * A polynomial CRC algorithm for validating short mode-s packets
+     *
+     * @param data56 a long representing the raw 56-bit packet
+     * @return an int representing the 24-bit CRC xor the parity field
+     */
+    public static int crcCompute(long data56) {
+        /*
+         * The first 32 bits of the packet
+         */
+        int data = (int) (data56 >>> 24);
+
+        /*
+         * The 24 bit parity/address field. It is shifted left 8 bits to align
+         */
+        int hexid = ((int) data56 & 0xFFFFFF) << 8;
+
+        /*
+         * Run the data through the polynomial
+         */
+        for (int i = 0; i < 32; i++) {
+            if ((data & 0x80000000) != 0) {
+                data ^= POLY;
+            }
+
+            data <<= 1;
+        }
+
+        /*
+         * The result is shifted 8 bits to the right for final value
+         */
+        return (data ^ hexid) >>> 8;
+    }
+
+    /**
+     * A polynomial CRC algorithm for validating long mode-s packets
+     *
+     * @param data0 a long representing bits 1 - 56 of the packet
+     * @param data1 a long representing bits 57 - 112 of the packet
+     * @return an int representing the 24-bit CRC xor the parity field
+     */
+    public static int crcCompute(long data0, long data1) {
+        int data = (int) (data0 >>> 24);                                // Bytes 1 - 4
+        int data1b = (int) (((data0 & 0xFFFFFFL) << 8) | (data1 >>> 48)); // Bytes 5 - 8
+        int data2 = (int) ((data1 >>> 24) & 0xFFFFFFL) << 8;           // Bytes 9 - 11
+
+        /*
+         * The 24 bit parity/address field. It is shifted left 8 bits to align
+         */
+        int hexid = (int) (data1 & 0xFFFFFFL) << 8;
+
+        /*
+         * Run the data through the polynomial
+         */
+        for (int i = 0; i < 88; i++) {
+            if ((data & 0x80000000) != 0) {
+                data ^= POLY;
+            }
+
+            data <<= 1;
+
+            if ((data1b & 0x80000000) != 0) {
+                data |= 1;
+            }
+
+            data1b <<= 1;
+
+            if ((data2 & 0x80000000) != 0) {
+                data1b = data1b | 1;
+            }
+
+            data2 <<= 1;
+        }
+
+        /*
+         * The result is shifted 8 bits to the right for final value
+         */
+        return (data ^ hexid) >>> 8;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * Encodes a position as a 17-bit CPR frame, the way a transponder does,
+ * so the decoders can be checked on positions all over the Earth.
+ */
+final class CPREncoder implements IConstants {
+
+    private static final double BINS = 131072.0;
+    private static final CPR CPR = new CPR();
+
+    private CPREncoder() {
+    }
+
+    /**
+     * Encode a position
+     *
+     * @param lat a double representing the latitude
+     * @param lon a double representing the longitude
+     * @param fflag a boolean representing an ODD or EVEN frame
+     * @param surface a boolean representing a surface frame
+     * @return an int[2] of the 17-bit latitude and longitude
+     */
+    static int[] encode(double lat, double lon, boolean fflag, boolean surface) {
+        double span = (surface == true) ? 90.0 : 360.0;
+        double dlat = span / ((fflag == ODD) ? 59.0 : 60.0);
+        long yz = (long) Math.floor(BINS * mod(lat, dlat) / dlat + 0.5);
+        double rlat = dlat * (yz / BINS + Math.floor(lat / dlat));
+        int ni = Math.max(CPR.cprNLFunction(rlat) - ((fflag == ODD) ? 1 : 0), 1);
+        double dlon = span / ni;
+        long xz = (long) Math.floor(BINS * mod(lon, dlon) / dlon + 0.5);
+
+        return new int[]{(int) (yz & 0x1FFFF), (int) (xz & 0x1FFFF)};
+    }
+
+    /**
+     * The longitude zone width at a latitude, which sets the resolution
+     *
+     * @param lat a double representing the latitude
+     * @param fflag a boolean representing an ODD or EVEN frame
+     * @param surface a boolean representing a surface frame
+     * @return a double representing the zone width in degrees
+     */
+    static double zoneWidth(double lat, boolean fflag, boolean surface) {
+        int ni = Math.max(CPR.cprNLFunction(lat) - ((fflag == ODD) ? 1 : 0), 1);
+
+        return ((surface == true) ? 90.0 : 360.0) / ni;
+    }
+
+    private static double mod(double a, double b) {
+        double res = a % b;
+
+        return (res < 0.0) ? res + b : res;
+    }
+}
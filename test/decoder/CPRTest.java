@@ -0,0 +1,272 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * The double precision CPR decoder on the published even/odd vectors
+ * ("The 1090 Megahertz Riddle", Junzi Sun), on positions encoded all over
+ * the Earth, and the binary search for NL pinned to the linear scan it
+ * replaced and to the published NL table.
+ */
+public class CPRTest implements IConstants {
+
+    private static final double EPS = 1.0E-5;
+    //
+    private final CPR cpr = new CPR();
+    private final double[] latlon = new double[2];
+
+    /*
+     * The published NL transition latitudes, where the zones go from
+     * 59 - i to 58 - i
+     */
+    private static final double[] PUBLISHED = {
+        10.47047130, 14.82817437, 18.18626357, 21.02939493, 23.54504487,
+        25.82924707, 27.93898710, 29.91135686, 31.77209708, 33.53993436,
+        35.22899598, 36.85025108, 38.41241892, 39.92256684, 41.38651832,
+        42.80914012, 44.19454951, 45.54626723, 46.86733252, 48.16039128,
+        49.42776439, 50.67150166, 51.89342469, 53.09516153, 54.27817472,
+        55.44378444, 56.59318756, 57.72747354, 58.84763776, 59.95459277,
+        61.04917774, 62.13216659, 63.20427479, 64.26616523, 65.31845310,
+        66.36171008, 67.39646774, 68.42322022, 69.44242631, 70.45451075,
+        71.45986473, 72.45884545, 73.45177442, 74.43893416, 75.42056257,
+        76.39684391, 77.36789461, 78.33374083, 79.29428225, 80.24923213,
+        81.19801349, 82.13956981, 83.07199445, 83.99173563, 84.89166191,
+        85.75541621, 86.53536998, 87.00000000
+    };
+
+    /*
+     * The NL boundaries, worked out the same way as in CPR.
+     * NL[i] is the highest latitude with i + 1 zones.
+     */
+    private static double[] boundaries() {
+        double[] nl = new double[59];
+        double tmp = 1.0 - Math.cos(Math.PI / 30.0);
+
+        nl[0] = 90.0;
+
+        for (int i = 2; i < 60; i++) {
+            nl[i - 1] = Math.toDegrees(Math.acos(Math.sqrt(tmp / (1.0 - Math.cos(2.0 * Math.PI / i)))));
+        }
+
+        return nl;
+    }
+
+    /*
+     * The linear scan the binary search replaced, on the same table
+     */
+    private static int linearNL(double[] nl, double lat) {
+        int i = 58;
+
+        lat = Math.abs(lat);
+
+        if (lat == 0.0) {
+            return 59;
+        } else if (lat == 87.0) {
+            return 2;
+        } else if (lat > 87.0) {
+            return 1;
+        }
+
+        while (lat > nl[i]) {
+            i--;
+        }
+
+        return (i + 1);
+    }
+
+    @Test
+    public void airbornePair() {
+        assertTrue(cpr.decodeCPRairborne(93000, 51372, 74158, 50194, EVEN, latlon));
+        assertEquals(52.25720, latlon[0], EPS);
+        assertEquals(3.91937, latlon[1], EPS);
+
+        assertTrue(cpr.decodeCPRairborne(93000, 51372, 74158, 50194, ODD, latlon));
+        assertEquals(52.26578, latlon[0], EPS);
+        assertEquals(3.93891, latlon[1], EPS);
+    }
+
+    @Test
+    public void surfacePair() {
+        // 8C4841753AAB238733C8CD4020B1 and 8C4841753A8A35323FAEBDAC702D near Schiphol
+        assertTrue(cpr.decodeCPRsurface(51.990, 4.375, 115609, 116941, 39199, 110269, ODD, latlon));
+        assertEquals(52.32061, latlon[0], EPS);
+        assertEquals(4.73473, latlon[1], EPS);
+    }
+
+    @Test
+    public void relativeFrames() {
+        // 8D40621D58C382D690C8AC2863A7 with the reference 52.258, 3.918
+        assertTrue(cpr.decodeCPRrelative(52.258, 3.918, 93000, 51372, EVEN, false, latlon));
+        assertEquals(52.25720, latlon[0], EPS);
+        assertEquals(3.91937, latlon[1], EPS);
+
+        assertTrue(cpr.decodeCPRrelative(51.990, 4.375, 39199, 110269, ODD, true, latlon));
+        assertEquals(52.32061, latlon[0], EPS);
+        assertEquals(4.73473, latlon[1], EPS);
+    }
+
+    @Test
+    public void boundariesMatchPublished() {
+        double[] nl = boundaries();
+
+        for (int i = 0; i < PUBLISHED.length; i++) {
+            assertEquals(PUBLISHED[i], nl[58 - i], 1.0E-8, "NL " + (59 - i));
+        }
+    }
+
+    /*
+     * At every boundary, one ulp either side, in both hemispheres
+     */
+    @Test
+    public void binarySearchMatchesLinearScan() {
+        double[] nl = boundaries();
+
+        for (int i = 0; i < nl.length; i++) {
+            double[] lats = {nl[i], Math.nextUp(nl[i]), Math.nextDown(nl[i])};
+
+            for (double lat : lats) {
+                assertEquals(linearNL(nl, lat), cpr.cprNLFunction(lat), "lat " + lat);
+                assertEquals(linearNL(nl, -lat), cpr.cprNLFunction(-lat), "lat " + -lat);
+            }
+        }
+
+        for (double lat : new double[]{0.0, Double.MIN_VALUE, 87.0, Math.nextUp(87.0), 89.9, 90.0}) {
+            assertEquals(linearNL(nl, lat), cpr.cprNLFunction(lat), "lat " + lat);
+        }
+
+        /*
+         * Just either side of each published transition. Above 87 degrees
+         * there is one zone, not two.
+         */
+        for (int i = 0; i < PUBLISHED.length; i++) {
+            assertEquals(59 - i, cpr.cprNLFunction(PUBLISHED[i] - 1.0E-6), "below " + PUBLISHED[i]);
+            assertEquals((i == 57) ? 1 : 58 - i, cpr.cprNLFunction(PUBLISHED[i] + 1.0E-6), "above " + PUBLISHED[i]);
+        }
+    }
+
+    /*
+     * Away from the boundaries the zones are the same as the single
+     * precision decoder gave. Its table was worked out in float, and is
+     * more than 0.0001 degrees out at some boundaries.
+     */
+    @Test
+    public void sameZonesAsFloatDecoder() {
+        double[] nl = boundaries();
+        FloatCPR old = new FloatCPR();
+        Random rand = new Random(4024L);
+
+        for (int n = 0; n < 1000000; n++) {
+            double lat = (rand.nextDouble() * 180.0) - 90.0;
+            boolean near = false;
+
+            for (double b : nl) {
+                near |= (Math.abs(Math.abs(lat) - b) < 1.0E-3);
+            }
+
+            if (near == false) {
+                assertEquals(old.cprNLFunction((float) lat), cpr.cprNLFunction(lat), "lat " + lat);
+            }
+        }
+    }
+
+    /*
+     * Random stationary positions, encoded as even and odd frames, must
+     * decode to within half a bin. A pair that straddles an NL boundary
+     * can't be decoded, which is only a few of them.
+     */
+    @Test
+    public void encodedAirbornePairs() {
+        Random rand = new Random(24L);
+        int decoded = 0;
+
+        for (int n = 0; n < 100000; n++) {
+            double lat = (rand.nextDouble() * 174.0) - 87.0;
+            double lon = (rand.nextDouble() * 360.0) - 180.0;
+            int[] even = CPREncoder.encode(lat, lon, EVEN, false);
+            int[] odd = CPREncoder.encode(lat, lon, ODD, false);
+
+            for (boolean fflag : new boolean[]{EVEN, ODD}) {
+                if (cpr.decodeCPRairborne(even[0], even[1], odd[0], odd[1], fflag, latlon) == true) {
+                    assertEquals(lat, latlon[0], (360.0 / 59.0) / 262144.0 + 1.0E-9, "lat " + lat + " lon " + lon);
+                    assertEquals(0.0, lonError(lon, latlon[1]),
+                            CPREncoder.zoneWidth(latlon[0], fflag, false) / 262144.0 + 1.0E-9, "lat " + lat + " lon " + lon);
+                    decoded++;
+                }
+            }
+        }
+
+        assertTrue(decoded > 199000, "decoded " + decoded);
+    }
+
+    @Test
+    public void encodedSurfacePairs() {
+        Random rand = new Random(1024L);
+        int decoded = 0;
+
+        for (int n = 0; n < 100000; n++) {
+            double lat = (rand.nextDouble() * 170.0) - 85.0;
+            double lon = (rand.nextDouble() * 360.0) - 180.0;
+            double refLat = lat + (rand.nextDouble() - 0.5) * 2.0;
+            double refLon = lon + (rand.nextDouble() - 0.5) * 2.0;
+            int[] even = CPREncoder.encode(lat, lon, EVEN, true);
+            int[] odd = CPREncoder.encode(lat, lon, ODD, true);
+
+            if (cpr.decodeCPRsurface(refLat, refLon, even[0], even[1], odd[0], odd[1], ODD, latlon) == true) {
+                assertEquals(lat, latlon[0], (90.0 / 59.0) / 262144.0 + 1.0E-9, "lat " + lat + " lon " + lon);
+                assertEquals(0.0, lonError(lon, latlon[1]),
+                        CPREncoder.zoneWidth(latlon[0], ODD, true) / 262144.0 + 1.0E-9, "lat " + lat + " lon " + lon);
+                decoded++;
+            }
+        }
+
+        assertTrue(decoded > 99000, "decoded " + decoded);
+    }
+
+    /*
+     * A single frame with a reference up to a quarter zone away always decodes
+     */
+    @Test
+    public void encodedRelativeFrames() {
+        Random rand = new Random(2024L);
+
+        for (int n = 0; n < 100000; n++) {
+            boolean surface = rand.nextBoolean();
+            boolean fflag = rand.nextBoolean();
+            double span = (surface == true) ? 90.0 : 360.0;
+            double lat = (rand.nextDouble() * 170.0) - 85.0;
+            double lon = (rand.nextDouble() * 360.0) - 180.0;
+            double dlat = span / ((fflag == ODD) ? 59.0 : 60.0);
+            double refLat = lat + (rand.nextDouble() - 0.5) * dlat / 2.0;
+            double refLon = lon + (rand.nextDouble() - 0.5) * Math.min(CPREncoder.zoneWidth(lat, fflag, surface),
+                    CPREncoder.zoneWidth(refLat, fflag, surface)) / 2.0;
+            int[] frame = CPREncoder.encode(lat, lon, fflag, surface);
+            String where = "lat " + lat + " lon " + lon + " ref " + refLat + " " + refLon;
+
+            assertTrue(cpr.decodeCPRrelative(refLat, refLon, frame[0], frame[1], fflag, surface, latlon), where);
+            assertEquals(lat, latlon[0], dlat / 262144.0 + 1.0E-9, where);
+            assertEquals(0.0, lonError(lon, latlon[1]),
+                    CPREncoder.zoneWidth(latlon[0], fflag, surface) / 262144.0 + 1.0E-9, where);
+        }
+    }
+
+    /*
+     * The longitude error, across the date line
+     */
+    static double lonError(double expect, double actual) {
+        double d = (actual - expect) % 360.0;
+
+        if (d > 180.0) {
+            d -= 360.0;
+        } else if (d < -180.0) {
+            d += 360.0;
+        }
+
+        return d;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * The table driven CRC must give the same parity as the bit serial CRC
+ * it replaced (BitSerialCRC), for every short and long frame.
+ */
+public class CRCTest {
+
+    private static final long MASK56 = 0xFFFFFFFFFFFFFFL;
+
+    @Test
+    public void knownFrames() {
+        // A DF17 with a good CRC, and a short frame given the parity of its data
+        assertEquals(0, CRC.crcCompute(0x8D4840D6202CC3L, 0x71C32CE0576098L));
+        assertEquals(0, CRC.crcCompute(0x5D4840D6A6D3C1L ^ CRC.crcCompute(0x5D4840D6A6D3C1L)));
+        assertEquals("000000", CRC.crcCompute("8D4840D6202CC371C32CE0576098"));
+        assertEquals("BAD", CRC.crcCompute("8D4840D6"));
+        assertEquals(BitSerialCRC.crcCompute(0x20001838CA3E51L), CRC.crcCompute(0x20001838CA3E51L));
+    }
+
+    @Test
+    public void randomShortFrames() {
+        Random rand = new Random(18L);
+
+        for (int n = 0; n < 2000000; n++) {
+            long data56 = rand.nextLong() & MASK56;
+
+            assertEquals(BitSerialCRC.crcCompute(data56), CRC.crcCompute(data56), () -> Long.toHexString(data56));
+        }
+    }
+
+    @Test
+    public void randomLongFrames() {
+        Random rand = new Random(1018L);
+
+        for (int n = 0; n < 2000000; n++) {
+            long data0 = rand.nextLong() & MASK56;
+            long data1 = rand.nextLong() & MASK56;
+
+            assertEquals(BitSerialCRC.crcCompute(data0, data1), CRC.crcCompute(data0, data1),
+                    () -> Long.toHexString(data0) + " " + Long.toHexString(data1));
+        }
+    }
+
+    /*
+     * Every single bit, which is what the 1 and 2 bit repair syndromes are
+     * built from, and the frames that are all zero or all one
+     */
+    @Test
+    public void singleBits() {
+        for (int bit = 0; bit < 56; bit++) {
+            long data56 = 1L << bit;
+
+            assertEquals(BitSerialCRC.crcCompute(data56), CRC.crcCompute(data56), "short bit " + bit);
+            assertEquals(BitSerialCRC.crcCompute(data56, 0L), CRC.crcCompute(data56, 0L), "long bit " + bit);
+            assertEquals(BitSerialCRC.crcCompute(0L, data56), CRC.crcCompute(0L, data56), "long bit " + (bit + 56));
+        }
+
+        assertEquals(BitSerialCRC.crcCompute(0L), CRC.crcCompute(0L));
+        assertEquals(BitSerialCRC.crcCompute(MASK56), CRC.crcCompute(MASK56));
+        assertEquals(BitSerialCRC.crcCompute(MASK56, MASK56), CRC.crcCompute(MASK56, MASK56));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+/*
+ * The computed altitude decoders that the Altitude tables replaced, kept
+ * as the reference for their tests and benchmarks.
+ */
+final class ComputedAltitude {
+
+    private ComputedAltitude() {
+    }
+
+    /*
+     * Method to decode altitude in feet
+     *
+     * @param bits an int representing the 13-bit AC field, or the 12-bit
+     * altitude field of the ADS-B ME
+     * @param hasMBit a boolean representing the altitude has the metre bit
+     * which is true for DF00, DF04, DF16, and DF20, but false for DF17 and DF18,
+     *
+     * @return an int representing the altitude or -9999 for null
+     */
+    public static int decodeAltitude(int bits, boolean hasMBit) {
+        int altitude;
+        int altbits;
+        int ac11;
+        boolean qbit1;
+        boolean mbit1;
+
+        if (hasMBit == true) {
+            // 13 bits
+            altbits = bits & 0x1FFF;
+
+            qbit1 = ((altbits & 0x0010) == 0x10);      // Q-Bit true means 25ft resolution
+            mbit1 = ((altbits & 0x0040) == 0x40);      // M-Bit 26 and Q-Bit 28 0 0000 0X0X 0000 m = 0 feet, m = 1 metres
+
+            ac11 = (altbits & 0x000F) | ((altbits & 0x0020) >>> 1) | ((altbits & 0x1F80) >>> 2); // raw 11 bits now
+        } else {
+            // 12 bits
+            altbits = bits & 0x0FFF;
+
+            qbit1 = ((altbits & 0x10) == 0x10); // Q-Bit true 25ft resolution
+            mbit1 = false;
+
+            ac11 = ((altbits >>> 5) << 4) | (altbits & 0xF); // 11 bits
+        }
+
+        if (mbit1 == true) {
+            altitude = (int) ((float)ac11 * 3.2808f); // convert metres to feet
+        } else {
+            altitude = computeAltitude(ac11, qbit1);
+        }
+
+        return altitude;
+    }
+
+    /*
+     * Method to return altitude given an SSR Mode-C squawk
+     * The X-bit has already been removed.
+     *
+     * This is available on Mode-S Beast receivers
+     * that pass SSR Mode-C data in addition to Mode-S
+     *
+     * 100 foot resolution C1 A1 C2 A2 | C4 A4 B1 D1 | B2 D2 B4 D4
+     */
+    public static int convertModeCtoAltitude(int raw12) {
+        int a = ((((raw12 & 0x0100) << 1) | (raw12 & 0x0400) | ((raw12 & 0x0040) << 2)) >>> 8) & 0x07;    // A1 A2 A4
+        int b = (((raw12 & 0x0002) >>> 1) | ((raw12 & 0x0008) >>> 2) | ((raw12 & 0x0020) >>> 3)) & 0x07;  // B1 B2 B4
+        int c = (((raw12 & 0x0800) >>> 9) | ((raw12 & 0x0200) >>> 8) | ((raw12 & 0x0080) >>> 7)) & 0x07;  // C1 C2 C4
+        int d = ((raw12 & 0x0001) | ((raw12 & 0x0004) >>> 1) | ((raw12 & 0x0010) >>> 2)) & 0x07;          // D1 D2 D4
+
+        if (((d & 0x04) == 0x04) || (c == 0) || (c == 5) || (c == 7)) {
+            /*
+             * Illegal code, must be a Mode-A or garble
+             * This will probably be pre-filtered before called
+             */
+
+            return -9999;
+        }
+
+        return modecDecode(a, b, c, d);
+    }
+
+    /*
+     * Method to return altitude given the raw coded 11 bits
+     * This is used by TCAS which is a real shit-show
+     *
+     * Bit D1 and X bit removed
+     *
+     * @param ac11 an int representing the coded altitude
+     *
+     * @return an int representing the altitude in feet
+     */
+    public static int computeAltitude(int ac11) {
+        // 100 foot resolution C1 A1 C2 | A2 C4 A4 B1 | B2 D2 B4 D4
+
+        int a = ((ac11 & 0x0200) >>> 7) | ((ac11 & 0x0080) >>> 6) | ((ac11 & 0x0020) >>> 5);  // A1 A2 A4
+        int b = ((ac11 & 0x0010) >>> 2) | ((ac11 & 0x0008) >>> 2) | ((ac11 & 0x0002) >>> 1);  // B1 B2 B4
+        int c = ((ac11 & 0x0400) >>> 8) | ((ac11 & 0x0100) >>> 7) | ((ac11 & 0x0040) >>> 6);  // C1 C2 C4
+        int d = ((ac11 & 0x0004) >>> 1) | (ac11 & 0x0001);                                    // XX D2 D4
+
+        return modecDecode(a, b, c, d);
+    }
+
+    /*
+     * Method to return altitude given the raw coded 11 bits
+     *
+     * Bit D1 and the X bit are already removed
+     *
+     * @param ac11 an int representing the coded altitude
+     * @param rvsm a boolean representing whether 25 foot resolution is being used
+     * @return an int representing the altitude in feet or metres
+     */
+    public static int computeAltitude(int ac11, boolean rvsm) {
+        if (rvsm == true) {
+            return (ac11 * 25) - 1000;
+        } else {
+            // 100 foot resolution C1 A1 C2 | A2 C4 A4 B1 | B2 D2 B4 D4
+
+            int a = ((ac11 & 0x0200) >>> 7) | ((ac11 & 0x0080) >>> 6) | ((ac11 & 0x0020) >>> 5);  // A1 A2 A4
+            int b = ((ac11 & 0x0010) >>> 2) | ((ac11 & 0x0008) >>> 2) | ((ac11 & 0x0002) >>> 1);  // B1 B2 B4
+            int c = ((ac11 & 0x0400) >>> 8) | ((ac11 & 0x0100) >>> 7) | ((ac11 & 0x0040) >>> 6);  // C1 C2 C4
+            int d = ((ac11 & 0x0004) >>> 1) | (ac11 & 0x0001);                                    // XX D2 D4
+
+            return modecDecode(a, b, c, d);
+        }
+    }
+
+    /*
+     * Method to convert octal data into an altitude with 100 foot resolution.
+     *
+     * The aviation industry uses mostly 25 foot resolution, but many legacy
+     * transponders are still in use. These will be Mode-S only typically, and
+     * not ADS-B that are transmitting position.
+     *
+     * Invalid codes are C1 C2 C4 bits: 000, 101, 111, or D4 == 1
+     *
+     * @param a an integer representing the A-bits
+     * @param b an integer representing the B-bits
+     * @param c an integer representing the C-bits
+     * @param d an integer representing the D-bits
+     * @return an int representing the altitude in feet with 100 foot resolution
+     */
+    private static int modecDecode(int a, int b, int c, int d) {
+        int alt;
+        int dab = (grayToBinary((d << 6) + (a << 3) + b) * 500) - 1000;
+
+        if ((dab & 0x01) == 0) {
+            alt = switch (c) {
+                case 4 -> dab + 200;
+                case 6 -> dab + 100;
+                case 2 -> dab;
+                case 3 -> dab - 100;
+                case 1 -> dab - 200;
+                default -> -9999;       // case 0, 5, 7 illegal value
+            };
+        } else {
+            alt = switch (c) {
+                case 4 -> dab - 200;
+                case 6 -> dab - 100;
+                case 2 -> dab;
+                case 3 -> dab + 100;
+                case 1 -> dab + 200;
+                default -> -9999;       // case 0, 5, 7 illegal value
+            };
+        }
+
+        return alt;
+    }
+
+    /*
+     * Method to calculate 100 altitude from Mode-C transponder type reply
+     * 
+     * B[i] = XOR(B[i+1], G[i]) to convert Gray to binary
+     *
+     * @param g an integer representing a gray code
+     * @return an integer representing the binary value of the given gray code
+     */
+    private static int grayToBinary(int g) {
+        int val = g & 0x80;
+
+        val = val | ((g & 0x40) ^ ((val & 0x80) >>> 1));
+        val = val | ((g & 0x20) ^ ((val & 0x40) >>> 1));
+        val = val | ((g & 0x10) ^ ((val & 0x20) >>> 1));
+        val = val | ((g & 0x08) ^ ((val & 0x10) >>> 1));
+        val = val | ((g & 0x04) ^ ((val & 0x08) >>> 1));
+        val = val | ((g & 0x02) ^ ((val & 0x04) >>> 1));
+        val = val | ((g & 0x01) ^ ((val & 0x02) >>> 1));
+
+        return val;
+    }
+}
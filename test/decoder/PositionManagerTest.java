@@ -0,0 +1,122 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package decoder;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * The receiver relative decode, which works out the zone from bins
+ * precomputed for the receiver, against the general relative decode in
+ * CPR. The receivers sit either side of NL band edges, where the
+ * aircraft can be in a band with a different number of zones, and in
+ * the southern and western hemispheres, where the bins are negative.
+ */
+public class PositionManagerTest implements IConstants {
+
+    private static final int FRAMES = 20000;
+    private static final double BAND_EDGE = 48.16039128;        // NL 34 to 33
+    private static final double FIRST_EDGE = 10.47047130;       // NL 59 to 58
+    //
+    private final CPR cpr = new CPR();
+    private final double[] latlon = new double[2];
+
+    /*
+     * Either side of a band edge, north and south
+     */
+    private static final float[][] EDGES = {
+        {(float) (BAND_EDGE - 0.005), 11.5f},
+        {(float) (BAND_EDGE + 0.005), 11.5f},
+        {(float) (-BAND_EDGE - 0.005), -70.0f},
+        {(float) (-BAND_EDGE + 0.005), -70.0f},
+        {(float) (FIRST_EDGE - 0.005), -66.9f},
+        {(float) (FIRST_EDGE + 0.005), -66.9f},
+        {(float) (-FIRST_EDGE - 0.005), 140.0f},
+        {(float) (-FIRST_EDGE + 0.005), 140.0f}
+    };
+
+    /*
+     * Well inside a band, in each hemisphere
+     */
+    private static final float[][] RECEIVERS = {
+        {-34.6f, -58.4f},                                       // Buenos Aires
+        {40.6f, -73.8f},                                        // New York
+        {-17.0f, -179.9f},                                      // near the date line
+        {0.05f, -0.05f}                                         // near the origin
+    };
+
+    @Test
+    public void airborneFrames() {
+        Random rand = new Random(25L);
+
+        for (float[] rx : EDGES) {
+            assertTrue(check(rx, rand, false, 2.5) > 0, "no band changes at " + rx[0]);
+        }
+
+        for (float[] rx : RECEIVERS) {
+            check(rx, rand, false, 2.5);
+        }
+    }
+
+    @Test
+    public void surfaceFrames() {
+        Random rand = new Random(2525L);
+
+        for (float[] rx : EDGES) {
+            assertTrue(check(rx, rand, true, 0.5) > 0, "no band changes at " + rx[0]);
+        }
+
+        for (float[] rx : RECEIVERS) {
+            check(rx, rand, true, 0.5);
+        }
+    }
+
+    /*
+     * Aircraft within spread degrees of the receiver latitude, which is
+     * inside half a zone, so the decode has a single right answer.
+     * Returns the number of aircraft in a different NL band than the
+     * receiver.
+     */
+    private int check(float[] rx, Random rand, boolean surface, double spread) {
+        LatLon rxll = new LatLon(rx[0], rx[1]);
+        PositionManager pm = new PositionManager(rxll, 250, null, null);
+        int bandChanges = 0;
+
+        for (int i = 0; i < FRAMES; i++) {
+            double lat = rx[0] + (rand.nextDouble() * 2.0 - 1.0) * spread;
+            double lon = rx[1] + (rand.nextDouble() * 2.0 - 1.0) * spread;
+            boolean fflag = rand.nextBoolean();
+            int[] frame = CPREncoder.encode(lat, lon, fflag, surface);
+            String where = String.format("rx %.5f %.5f ac %.6f %.6f %s %s",
+                    rx[0], rx[1], lat, lon, (fflag == ODD) ? "odd" : "even", (surface == true) ? "surface" : "airborne");
+
+            lon -= Math.floor((lon + 180.0) / 360.0) * 360.0;
+
+            assertTrue(pm.decodeReceiverRelative(frame[0], frame[1], fflag, surface), where);
+
+            double span = (surface == true) ? 90.0 : 360.0;
+            double dlat = span / ((fflag == ODD) ? 59.0 : 60.0);
+
+            assertEquals(lat, pm.latlon[0], dlat / 131072.0, where);
+            assertEquals(0.0, CPRTest.lonError(lon, pm.latlon[1]),
+                    CPREncoder.zoneWidth(pm.latlon[0], fflag, surface) / 131072.0 + 1.0E-9, where);
+
+            /*
+             * Same answer as the general decode from the receiver
+             */
+            assertTrue(cpr.decodeCPRrelative(rxll.getLat(), rxll.getLon(),
+                    frame[0], frame[1], fflag, surface, latlon), where);
+            assertEquals(latlon[0], pm.latlon[0], 1.0E-9, where);
+            assertEquals(0.0, CPRTest.lonError(latlon[1], pm.latlon[1]), 1.0E-9, where);
+
+            if (cpr.cprNLFunction(pm.latlon[0]) != cpr.cprNLFunction(rxll.getLat())) {
+                bandChanges++;
+            }
+        }
+
+        return bandChanges;
+    }
+}
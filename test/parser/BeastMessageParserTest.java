@@ -0,0 +1,189 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * The eight bytes at a time escape scan must find the same frames as the
+ * byte at a time state machine it replaced (ScalarBeastParser), with an
+ * <esc> at every offset in a word, in the tail bytes, and split across
+ * buffers.
+ */
+public class BeastMessageParserTest {
+
+    /*
+     * Each frame as a String, so two lists can be compared and printed
+     */
+    private static final class Frames implements IFrameConsumer {
+
+        final List<String> list = new ArrayList<>();
+
+        @Override
+        public void frame(int type, int signalLevel, long mlat, long data0, long data1) {
+            list.add(String.format("%02x %02x %012x %014x %014x", type, signalLevel, mlat, data0, data1));
+        }
+    }
+
+    private static int scan(byte[] bytes, int start, int stop) {
+        for (int i = start; i < stop; i++) {
+            if (bytes[i] == BeastStream.ESCAPE) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /*
+     * Parse a stream in pieces of the given sizes, the last one repeated
+     */
+    private static List<String> parseNew(byte[] stream, int... pieces) {
+        BeastMessageParser bmp = new BeastMessageParser();
+        Frames frames = new Frames();
+        int i = 0;
+
+        for (int p = 0; i < stream.length; p++) {
+            int n = Math.min(pieces[Math.min(p, pieces.length - 1)], stream.length - i);
+
+            bmp.parse(stream, i, n, frames);
+            i += n;
+        }
+
+        return frames.list;
+    }
+
+    private static List<String> parseOld(byte[] stream) {
+        ScalarBeastParser sbp = new ScalarBeastParser();
+        Frames frames = new Frames();
+
+        sbp.parse(stream, 0, stream.length, frames);
+
+        return frames.list;
+    }
+
+    @Test
+    public void escapeAtEveryOffset() {
+        byte[] bytes = new byte[40];
+
+        for (int length = 0; length <= 24; length++) {
+            for (int start = 0; start <= 8; start++) {
+                int stop = start + length;
+
+                for (int at = -1; at < bytes.length; at++) {
+                    Arrays.fill(bytes, (byte) 0x1B);
+
+                    if (at >= 0) {
+                        bytes[at] = BeastStream.ESCAPE;
+                    }
+
+                    assertEquals(scan(bytes, start, stop), BeastMessageParser.indexOfEscape(bytes, start, stop),
+                            "length " + length + " start " + start + " esc at " + at);
+
+                    /*
+                     * Again with the array ending at the stop, so the
+                     * tail can't be read as a word
+                     */
+                    byte[] tail = Arrays.copyOf(bytes, stop);
+
+                    assertEquals(scan(tail, start, stop), BeastMessageParser.indexOfEscape(tail, start, stop),
+                            "at the end, length " + length + " start " + start + " esc at " + at);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void escapeScanOnRandomBytes() {
+        Random rand = new Random(15L);
+        byte[] bytes = new byte[64];
+
+        for (int n = 0; n < 200000; n++) {
+            for (int i = 0; i < bytes.length; i++) {
+                /*
+                 * Mostly bytes one bit from <esc>, which would catch a
+                 * false hit from the borrow in the zero byte test
+                 */
+                bytes[i] = (byte) ((rand.nextInt(4) == 0) ? (BeastStream.ESCAPE ^ (1 << rand.nextInt(8))) : rand.nextInt(256));
+            }
+
+            int start = rand.nextInt(bytes.length + 1);
+            int stop = start + rand.nextInt(bytes.length - start + 1);
+
+            assertEquals(scan(bytes, start, stop), BeastMessageParser.indexOfEscape(bytes, start, stop));
+        }
+    }
+
+    @Test
+    public void sameFramesAsScalar() {
+        Random rand = new Random(1015L);
+
+        for (double escapes : new double[]{0.0, 0.01, 0.1, 0.5, 1.0}) {
+            for (int n = 0; n < 50; n++) {
+                byte[] stream = BeastStream.make(rand, 200, escapes, true);
+                List<String> expect = parseOld(stream);
+
+                assertEquals(expect, parseNew(stream, stream.length), "whole, escapes " + escapes);
+                assertEquals(expect, parseNew(stream, 1 + rand.nextInt(64)), "pieces, escapes " + escapes);
+            }
+        }
+    }
+
+    /*
+     * Every split point, including between the two bytes of a doubled
+     * escape, and every piece size up to two words
+     */
+    @Test
+    public void splitAcrossBuffers() {
+        Random rand = new Random(2015L);
+        byte[] stream = BeastStream.make(rand, 12, 0.25, false);
+        List<String> expect = parseOld(stream);
+
+        assertEquals(11, expect.size());        // the first frame is skipped
+
+        for (int split = 0; split <= stream.length; split++) {
+            assertEquals(expect, parseNew(stream, split, stream.length), "split at " + split);
+        }
+
+        for (int piece = 1; piece <= 16; piece++) {
+            assertEquals(expect, parseNew(stream, piece), "pieces of " + piece);
+        }
+    }
+
+    /*
+     * A frame made only of doubled escapes, offset so the pairs straddle
+     * each word boundary in turn
+     */
+    @Test
+    public void doubledEscapesAcrossWords() {
+        for (int pad = 0; pad < 8; pad++) {
+            byte[] stream = new byte[pad + 2 * (2 + 42)];
+            int i = pad;
+
+            for (int f = 0; f < 2; f++) {
+                stream[i++] = BeastStream.ESCAPE;
+                stream[i++] = (byte) BeastMessageParser.LONG;
+
+                for (int b = 0; b < 21; b++) {
+                    stream[i++] = BeastStream.ESCAPE;
+                    stream[i++] = BeastStream.ESCAPE;
+                }
+            }
+
+            List<String> expect = parseOld(stream);
+
+            assertEquals(1, expect.size());
+            assertEquals(expect, parseNew(stream, stream.length), "pad " + pad);
+
+            for (int piece = 1; piece <= 9; piece++) {
+                assertEquals(expect, parseNew(stream, piece), "pad " + pad + " pieces of " + piece);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/*
+ * Builds Beast binary streams for the parser tests and benchmarks.
+ *
+ * The frames are filled with random bytes, and a given share of them are
+ * <esc>, so there are doubled escapes all through the MLAT counter, the
+ * signal level and the payload. Some streams also have noise between the
+ * frames, truncated frames, and unknown frame types.
+ */
+final class BeastStream {
+
+    static final int ESCAPE = 0x1A;
+
+    private BeastStream() {
+    }
+
+    /**
+     * Make a stream of frames
+     *
+     * @param rand the Random to draw from, seeded by the caller
+     * @param frames the number of frames
+     * @param escapes the chance of any frame byte being an <esc>, 0 to 1
+     * @param damage a boolean which adds noise, truncated and unknown frames
+     * @return the stream
+     */
+    static byte[] make(Random rand, int frames, double escapes, boolean damage) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int n = 0; n < frames; n++) {
+            if ((damage == true) && (rand.nextInt(8) == 0)) {
+                int noise = rand.nextInt(12);
+
+                for (int i = 0; i < noise; i++) {
+                    int b = rand.nextInt(256);
+                    out.write((b == ESCAPE) ? 0 : b);
+                }
+            }
+
+            int type;
+
+            switch (rand.nextInt(8)) {
+                case 0 -> type = BeastMessageParser.MODEAC;
+                case 1, 2, 3 -> type = BeastMessageParser.SHORT;
+                default -> type = BeastMessageParser.LONG;
+            }
+
+            if ((damage == true) && (rand.nextInt(32) == 0)) {
+                type = 0x34;                        // a status frame the parser skips
+            }
+
+            int length = 7 + ((type == BeastMessageParser.MODEAC) ? 2 : (type == BeastMessageParser.SHORT) ? 7 : 14);
+
+            if ((damage == true) && (rand.nextInt(32) == 0)) {
+                length = rand.nextInt(length);      // cut short by the next frame
+            }
+
+            out.write(ESCAPE);
+            out.write(type);
+
+            for (int i = 0; i < length; i++) {
+                int b = (rand.nextDouble() < escapes) ? ESCAPE : rand.nextInt(256);
+
+                out.write(b);
+
+                if (b == ESCAPE) {
+                    out.write(ESCAPE);
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+}
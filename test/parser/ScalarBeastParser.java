@@ -0,0 +1,165 @@
+/*
+ * Public Domain (p) 2024 Steve Sampson, K5OKC
+ */
+package parser;
+
+/*
+ * The byte at a time Beast parser that BeastMessageParser replaced, kept
+ * as the reference for its tests and benchmarks.
+ *
+ * This is used to parse the Mode-S Beast binary data.
+ * There are only three frame formats in the binary protocol:
+ *
+ * <esc> "1" : 6 byte MLAT counter, 1 byte signal level, 2 byte Mode-AC
+ * <esc> "2" : 6 byte MLAT counter, 1 byte signal level, 7 byte Mode-S short frame
+ * <esc> "3" : 6 byte MLAT counter, 1 byte signal level, 14 byte Mode-S long frame
+ *
+ * (<esc><esc>: true 0x1A
+ *
+ * <esc> is 0x1A, and "1", "2" and "3" are 0x31, 0x32 and 0x33 ASCII
+ *
+ * The parser is a byte at a time state machine, so a frame split across
+ * two reads just carries on where it left off. Nothing is copied or
+ * allocated per frame. The MLAT counter is passed along with the frame.
+ */
+final class ScalarBeastParser {
+
+    private static final int ESCAPE = 0x1A;
+    //
+    private static final int HEADERLENGTH = 7;  // 6 byte MLAT + 1 byte signal
+    //
+    private static final int STATE_SYNC = 0;    // looking for <esc>
+    private static final int STATE_TYPE = 1;    // saw <esc>, expecting frame type
+    private static final int STATE_BODY = 2;    // reading MLAT, signal, payload
+
+    private int state;
+    private boolean escapePending;
+    private boolean sawFirstPacket;
+    //
+    private int frameType;
+    private int frameLength;        // header + payload bytes for this type
+    private int index;              // bytes of this frame read so far
+    private int signalLevel;
+    private long mlat;
+    private long data0;
+    private long data1;
+
+    ScalarBeastParser() {
+        state = STATE_SYNC;
+        escapePending = false;
+        sawFirstPacket = false;
+    }
+
+    /**
+     * Scans a byte array for Mode-S Beast messages, and hands each complete
+     * frame to the consumer. Any partial frame at the end of the array is
+     * kept in the parser state and completed by the next call.
+     *
+     * @param bytes an array of raw bytes
+     * @param offset the offset of the first byte to scan
+     * @param bytesLength the number of bytes to scan
+     * @param consumer the frame consumer
+     */
+    public void parse(byte[] bytes, int offset, int bytesLength, IFrameConsumer consumer) {
+        int end = offset + bytesLength;
+
+        for (int i = offset; i < end; i++) {
+            int ch = bytes[i] & 0xFF;
+
+            switch (state) {
+                case STATE_SYNC -> {
+                    if (ch == ESCAPE) {
+                        state = STATE_TYPE;
+                    }
+                }
+                case STATE_TYPE -> {
+                    if (ch == ESCAPE) {
+                        state = STATE_SYNC;     // <esc><esc> is data, not a frame start
+                    } else {
+                        startFrame(ch);
+                    }
+                }
+                default -> {
+                    if (escapePending == true) {
+                        escapePending = false;
+
+                        if (ch != ESCAPE) {
+                            /*
+                             * A lone <esc> inside a frame is the start of
+                             * the next frame, so this one was truncated.
+                             */
+                            startFrame(ch);
+                            continue;
+                        }
+                    } else if (ch == ESCAPE) {
+                        escapePending = true;
+                        continue;
+                    }
+
+                    addByte(ch);
+
+                    if (index == frameLength) {
+                        state = STATE_SYNC;
+
+                        /*
+                         * The first frame after startup is probably
+                         * missing bytes, so skip it.
+                         */
+                        if (sawFirstPacket == true) {
+                            consumer.frame(frameType, signalLevel, mlat, data0, data1);
+                        }
+
+                        sawFirstPacket = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Set up the state for a new frame given its type byte
+     */
+    private void startFrame(int type) {
+        switch (type) {
+            case BeastMessageParser.MODEAC -> {  // Mode-A 2-byte Code is Octal in each nibble
+                frameLength = HEADERLENGTH + 2;
+            }
+            case BeastMessageParser.SHORT -> {  // Short Mode-S 7 bytes (56 bits)
+                frameLength = HEADERLENGTH + 7;
+            }
+            case BeastMessageParser.LONG -> {  // Long Mode-S 14 bytes (112 bits)
+                frameLength = HEADERLENGTH + 14;
+            }
+            default -> {    // status or unknown frame, resync
+                state = STATE_SYNC;
+                return;
+            }
+        }
+
+        frameType = type;
+        index = 0;
+        mlat = 0L;
+        data0 = 0L;
+        data1 = 0L;
+        signalLevel = 0;
+        escapePending = false;
+        state = STATE_BODY;
+    }
+
+    /*
+     * Shift one unstuffed byte into the frame
+     */
+    private void addByte(int ch) {
+        if (index < 6) {
+            mlat = (mlat << 8) | ch;
+        } else if (index == 6) {
+            signalLevel = ch;
+        } else if (index < (HEADERLENGTH + 7)) {
+            data0 = (data0 << 8) | ch;
+        } else {
+            data1 = (data1 << 8) | ch;
+        }
+
+        index++;
+    }
+}